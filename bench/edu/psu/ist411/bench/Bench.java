@@ -0,0 +1,125 @@
+/*
+ * Copyright 2018 Group 5.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.psu.ist411.bench;
+
+import edu.psu.ist411.framework.metrics.Histogram;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
+
+/**
+ * Minimal closed-loop benchmark runner.
+ *
+ * Each of N threads gets its own {@link Op} and calls it in a tight loop,
+ * first for a warmup period and then for a measured period. Throughput is
+ * the number of calls completed while measuring; latency is sampled on
+ * every {@link #SAMPLE_EVERY}th call so the timer itself doesn't dominate
+ * cheap operations.
+ *
+ * @author Tyler Suehr
+ * @author Win Ton
+ * @author Steven Weber
+ * @author David Wong
+ */
+public final class Bench {
+    /** One in this many calls is individually timed. */
+    private static final int SAMPLE_EVERY = 32;
+
+    /** Defeats dead-code elimination of results. */
+    private static volatile long sSink;
+
+    private Bench() {}
+
+    /**
+     * Operation under test, one instance per thread.
+     */
+    public interface Op {
+        /**
+         * Performs one operation.
+         * @return Anything derived from the result, consumed by the runner.
+         */
+        long run();
+    }
+
+    /**
+     * Runs the benchmark and prints one line of results.
+     *
+     * @param name Label to print.
+     * @param threads Number of threads.
+     * @param warmupMillis Warmup duration.
+     * @param measureMillis Measured duration.
+     * @param ops Creates the {@link Op} for a given thread index.
+     * @return Operations per second across all threads.
+     */
+    public static double run(final String name, final int threads, final long warmupMillis,
+            final long measureMillis, final IntFunction<Op> ops) throws InterruptedException {
+        final Histogram latency = new Histogram();
+        final LongAdder total = new LongAdder();
+        final CyclicBarrier start = new CyclicBarrier(threads);
+        final Thread[] workers = new Thread[threads];
+        final long[] measuredNanos = new long[threads];
+
+        for (int t = 0; t < threads; t++) {
+            final int index = t;
+            final Op op = ops.apply(t);
+            workers[t] = new Thread(() -> {
+                long sink = 0;
+                try {
+                    start.await();
+                } catch (Exception ex) {
+                    return;
+                }
+                final long warmEnd = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(warmupMillis);
+                while (System.nanoTime() < warmEnd) {
+                    for (int i = 0; i < SAMPLE_EVERY; i++) {
+                        sink += op.run();
+                    }
+                }
+
+                final long begin = System.nanoTime();
+                final long end = begin + TimeUnit.MILLISECONDS.toNanos(measureMillis);
+                long count = 0;
+                long now;
+                while ((now = System.nanoTime()) < end) {
+                    sink += op.run();
+                    latency.record(System.nanoTime() - now);
+                    for (int i = 1; i < SAMPLE_EVERY; i++) {
+                        sink += op.run();
+                    }
+                    count += SAMPLE_EVERY;
+                }
+                measuredNanos[index] = System.nanoTime() - begin;
+                total.add(count);
+                sSink += sink;
+            }, name + "-" + t);
+            workers[t].start();
+        }
+        for (Thread w : workers) {
+            w.join();
+        }
+
+        long nanos = 0;
+        for (long n : measuredNanos) {
+            nanos = Math.max(nanos, n);
+        }
+        final double opsPerSec = total.sum() / (nanos / 1e9);
+        System.out.printf("%-44s threads=%-3d %,14.0f ops/s  %s%n",
+                name, threads, opsPerSec, latency.summary());
+        return opsPerSec;
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2018 Group 5.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.psu.ist411.bench;
+
+import edu.psu.ist411.framework.domain_layer.AbstractChannelManager;
+import edu.psu.ist411.framework.domain_layer.ChannelImpl;
+import edu.psu.ist411.framework.domain_layer.ChannelManagerFactory;
+import edu.psu.ist411.framework.domain_layer.IChannel;
+import edu.psu.ist411.framework.domain_layer.UseCaseSchedulerImpl;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Measures {@link AbstractChannelManager} operations under contention.
+ *
+ * For every manager in {@link #MANAGERS} and every thread count from 1 up
+ * to the maximum (doubling), this runs:
+ * (1) {@code get} on a manager holding {@link #SHARED} channels.
+ * (2) A read/write mix of {@code get} with {@code add}/{@code remove} of a
+ *     channel owned by the thread, at each ratio in {@link #READ_PERCENT}.
+ * (3) {@code relocate} of a thread-owned channel back and forth between
+ *     two managers of the same kind.
+ *
+ * The deadlocking manager only ever relocates from a single thread, which
+ * measures its cost without two relocations crossing each other.
+ *
+ * Usage: {@code ChannelManagerBench [measureMillis] [maxThreads]}
+ *
+ * @author Tyler Suehr
+ * @author Win Ton
+ * @author Steven Weber
+ * @author David Wong
+ */
+public final class ChannelManagerBench {
+    /** Number of channels every thread reads from. */
+    private static final int SHARED = 64;
+    /** Read percentages used for the mixed runs. */
+    private static final int[] READ_PERCENT = {90, 50};
+    /** Managers that are safe to relocate from many threads at once. */
+    private static final Map<String, Supplier<AbstractChannelManager>> MANAGERS = new LinkedHashMap<>();
+    static {
+        MANAGERS.put("good", ChannelManagerFactory::newGoodThreadSafe);
+    }
+
+    private ChannelManagerBench() {}
+
+    public static void main(String[] args) throws InterruptedException {
+        final long measure = args.length > 0 ? Long.parseLong(args[0]) : 1000;
+        final int maxThreads = args.length > 1 ? Integer.parseInt(args[1])
+                : Runtime.getRuntime().availableProcessors();
+        final long warmup = Math.max(measure / 2, 100);
+
+        for (Map.Entry<String, Supplier<AbstractChannelManager>> e : MANAGERS.entrySet()) {
+            final String name = e.getKey();
+            final Supplier<AbstractChannelManager> factory = e.getValue();
+            for (int threads = 1; threads <= maxThreads; threads *= 2) {
+                runGet(name, factory, threads, warmup, measure);
+                for (int read : READ_PERCENT) {
+                    runMixed(name, factory, threads, read, warmup, measure);
+                }
+                runRelocate(name, factory, threads, warmup, measure);
+            }
+        }
+
+        // Single pair only: two threads relocating in opposite
+        // directions would deadlock this manager.
+        final Supplier<AbstractChannelManager> bad = ChannelManagerFactory::newBadThreadSafe;
+        runGet("bad", bad, 1, warmup, measure);
+        runRelocate("bad (single pair)", bad, 1, warmup, measure);
+    }
+
+    private static void runGet(final String name, final Supplier<AbstractChannelManager> factory,
+            final int threads, final long warmup, final long measure) throws InterruptedException {
+        final AbstractChannelManager m = populated(factory);
+        Bench.run(name + " get", threads, warmup, measure, t -> {
+            final Xorshift rnd = new Xorshift(t);
+            return () -> m.get((byte) rnd.next(SHARED)) != null ? 1 : 0;
+        });
+    }
+
+    private static void runMixed(final String name, final Supplier<AbstractChannelManager> factory,
+            final int threads, final int readPercent, final long warmup, final long measure)
+            throws InterruptedException {
+        final AbstractChannelManager m = populated(factory);
+        Bench.run(name + " get/add/remove " + readPercent + "% read", threads, warmup, measure, t -> {
+            final Xorshift rnd = new Xorshift(t);
+            final IChannel own = channel(SHARED + t);
+            final boolean[] added = {false};
+            return () -> {
+                if (rnd.next(100) < readPercent) {
+                    return m.get((byte) rnd.next(SHARED)) != null ? 1 : 0;
+                }
+                if (added[0]) {
+                    m.remove(own);
+                } else {
+                    m.add(own);
+                }
+                added[0] = !added[0];
+                return 1;
+            };
+        });
+    }
+
+    private static void runRelocate(final String name, final Supplier<AbstractChannelManager> factory,
+            final int threads, final long warmup, final long measure) throws InterruptedException {
+        final AbstractChannelManager a = factory.get();
+        final AbstractChannelManager b = factory.get();
+        Bench.run(name + " relocate", threads, warmup, measure, t -> {
+            final IChannel own = channel(SHARED + t);
+            a.add(own);
+            final boolean[] inA = {true};
+            return () -> {
+                if (inA[0]) {
+                    a.relocate(b, own);
+                } else {
+                    b.relocate(a, own);
+                }
+                inA[0] = !inA[0];
+                return 1;
+            };
+        });
+    }
+
+    private static AbstractChannelManager populated(final Supplier<AbstractChannelManager> factory) {
+        final AbstractChannelManager m = factory.get();
+        for (int i = 0; i < SHARED; i++) {
+            m.add(channel(i));
+        }
+        return m;
+    }
+
+    private static IChannel channel(final int id) {
+        // The scheduler creates its pool lazily, so this is cheap.
+        return new ChannelImpl((byte) id, new UseCaseSchedulerImpl());
+    }
+
+    /** Per-thread random source cheap enough not to skew results. */
+    private static final class Xorshift {
+        private long mState;
+
+        Xorshift(final int seed) {
+            mState = 0x9E3779B97F4A7C15L * (seed + 1);
+        }
+
+        int next(final int bound) {
+            mState ^= mState << 13;
+            mState ^= mState >>> 7;
+            mState ^= mState << 17;
+            return (int) ((mState >>> 33) % bound);
+        }
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2018 Group 5.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.psu.ist411.bench;
+
+import edu.psu.ist411.framework.domain_layer.ChannelImpl;
+import edu.psu.ist411.framework.domain_layer.UseCase;
+import edu.psu.ist411.framework.domain_layer.UseCaseSchedulerImpl;
+import edu.psu.ist411.framework.ui_layer.AbstractSchedulerPresenter;
+import edu.psu.ist411.framework.ui_layer.IView;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Checks that {@link UseCaseSchedulerImpl#execute} allocates nothing per
+ * call once warmed up, and measures what a presenter's {@code schedule}
+ * path allocates on top of it.
+ *
+ * Submits a use case that does no work, keeping only a few in flight so
+ * the pool never rejects, and reads the submitting thread's allocated
+ * bytes before and after. The allocations of the use case itself are
+ * kept out of it by reusing one instance per slot and one callback.
+ *
+ * The presenter path isn't pooled: every call allocates the callback
+ * wrapper, the cancellable task and its envelope, and an entry in the
+ * presenter's in-flight set, so that {@code detach} can cancel it.
+ * Recycling those would let a late cancel hit someone else's use case.
+ * It's held to {@link #SCHEDULE_BUDGET} bytes per call so it doesn't grow
+ * unnoticed.
+ *
+ * Exits with status 1 if {@code execute} allocated more than
+ * {@link #TOLERANCE} bytes per call on average, or {@code schedule} more
+ * than its budget.
+ *
+ * Usage: {@code DispatchAllocationCheck [calls]}
+ *
+ * @author Tyler Suehr
+ * @author Win Ton
+ * @author Steven Weber
+ * @author David Wong
+ */
+public final class DispatchAllocationCheck {
+    /** Most use cases in flight at once; below the pool's capacity. */
+    private static final int IN_FLIGHT = 4;
+    /** Bytes per call allowed for noise (e.g. safepoint bookkeeping). */
+    private static final double TOLERANCE = 1.0;
+    /** Bytes per call the presenter's schedule path may allocate. */
+    private static final double SCHEDULE_BUDGET = 256.0;
+    /** Channel the presenter schedules on. */
+    private static final byte CHANNEL = 1;
+
+    private DispatchAllocationCheck() {}
+
+    public static void main(String[] args) throws InterruptedException {
+        // Must be set before UseCase is loaded.
+        System.setProperty("ist411.usecase.log", "false");
+        final int calls = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+
+        final com.sun.management.ThreadMXBean mx =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        final long self = Thread.currentThread().getId();
+        final UseCaseSchedulerImpl scheduler = new UseCaseSchedulerImpl();
+        final AtomicInteger inFlight = new AtomicInteger();
+        final Noop[] slots = new Noop[IN_FLIGHT];
+        for (int i = 0; i < IN_FLIGHT; i++) {
+            slots[i] = new Noop(inFlight);
+        }
+        final UseCase.Callback<Integer> callback = new UseCase.Callback<Integer>() {
+            @Override
+            public void onSuccess(Integer response) {}
+
+            @Override
+            public void onFailure(Exception ex) {}
+        };
+        final Integer request = 0;
+
+        final double execute = measure(mx, self, "execute", calls, slots, inFlight,
+                noop -> scheduler.execute(noop, request, callback));
+        scheduler.stopExecution();
+
+        final UseCaseSchedulerImpl channel = new UseCaseSchedulerImpl(CHANNEL);
+        final CheckPresenter presenter = new CheckPresenter(channel);
+        final double schedule = measure(mx, self, "schedule", calls, slots, inFlight,
+                noop -> presenter.submit(noop, request, callback));
+        presenter.release();
+        channel.stopExecution();
+
+        boolean ok = true;
+        if (execute > TOLERANCE) {
+            System.out.println("FAIL: dispatch path allocates");
+            ok = false;
+        }
+        if (schedule > SCHEDULE_BUDGET) {
+            System.out.printf("FAIL: schedule path allocates over %.0f bytes/call%n", SCHEDULE_BUDGET);
+            ok = false;
+        }
+        if (!ok) {
+            System.exit(1);
+        }
+        System.out.println("OK");
+    }
+
+    /**
+     * Warms up a dispatch path, then measures it.
+     * @return Bytes allocated by the submitter per call.
+     */
+    private static double measure(final com.sun.management.ThreadMXBean mx, final long self,
+            final String name, final int calls, final Noop[] slots, final AtomicInteger inFlight,
+            final Dispatch dispatch) {
+        // Warm up so the pool threads exist and everything is compiled.
+        submit(dispatch, slots, inFlight, calls);
+
+        final long before = mx.getThreadAllocatedBytes(self);
+        final long rejected = submit(dispatch, slots, inFlight, calls);
+        final long bytes = mx.getThreadAllocatedBytes(self) - before;
+
+        final double perCall = (double) bytes / calls;
+        System.out.printf("%s: %,d calls, %,d bytes allocated by submitter (%.3f/call), %,d rejected%n",
+                name, calls, bytes, perCall, rejected);
+        return perCall;
+    }
+
+    private static long submit(final Dispatch dispatch, final Noop[] slots,
+            final AtomicInteger inFlight, final int calls) {
+        long rejected = 0;
+        int next = 0;
+        for (int i = 0; i < calls; i++) {
+            // Wait for a slot; a slot's use case is idle once it's counted down.
+            while (inFlight.get() >= IN_FLIGHT) {
+                // Spin; the pool drains quickly.
+            }
+            final Noop noop = slots[next];
+            next = (next + 1) % IN_FLIGHT;
+            while (noop.mBusy) {
+                // Its previous run hasn't finished yet.
+            }
+            noop.mBusy = true;
+            inFlight.incrementAndGet();
+            try {
+                dispatch.dispatch(noop);
+            } catch (RejectedExecutionException ex) {
+                noop.mBusy = false;
+                inFlight.decrementAndGet();
+                rejected++;
+            }
+        }
+        while (inFlight.get() > 0) {
+            // Let the last ones finish.
+        }
+        return rejected;
+    }
+
+    /** One way of handing a use case to a scheduler. */
+    private interface Dispatch {
+        void dispatch(Noop noop);
+    }
+
+    /** Exposes scheduling on a channel backed by the scheduler under test. */
+    private static final class CheckPresenter extends AbstractSchedulerPresenter<IView> {
+        CheckPresenter(final UseCaseSchedulerImpl scheduler) {
+            getChannelManager().add(new ChannelImpl(CHANNEL, scheduler));
+            attach(msg -> {});
+        }
+
+        void submit(final Noop noop, final Integer request, final UseCase.Callback<Integer> callback) {
+            scheduleOn(CHANNEL, noop, request, callback);
+        }
+    }
+
+    /** Use case that passes its request straight back. */
+    private static final class Noop extends UseCase<Integer, Integer> {
+        private final AtomicInteger mInFlight;
+        volatile boolean mBusy;
+
+        Noop(final AtomicInteger inFlight) {
+            mInFlight = inFlight;
+        }
+
+        @Override
+        protected void onExecute() {
+            pass(getRequest());
+            mBusy = false;
+            mInFlight.decrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2018 Group 5.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.psu.ist411.bench;
+
+import edu.psu.ist411.framework.domain_layer.FairSharePool;
+import edu.psu.ist411.framework.domain_layer.IUseCaseScheduler;
+import edu.psu.ist411.framework.domain_layer.UseCase;
+import edu.psu.ist411.framework.metrics.Histogram;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongConsumer;
+
+/**
+ * Shows whether a bulk channel with a deep backlog can push up the latency
+ * of an interactive channel sharing the same workers.
+ *
+ * A bulk producer keeps its channel's queue full of long use cases while
+ * the interactive channel schedules short ones at a fixed rate, timed
+ * from when each was due. This runs once with both channels feeding one
+ * FIFO queue in front of the workers, and once with a
+ * {@link FairSharePool} weighting the interactive channel above bulk,
+ * then prints each pool's per-channel metrics.
+ *
+ * Usage: {@code FairShareBench [measureMillis] [interactiveWeight] [bulkWeight]}
+ *
+ * @author Tyler Suehr
+ * @author Win Ton
+ * @author Steven Weber
+ * @author David Wong
+ */
+public final class FairShareBench {
+    /** Workers shared by both channels. */
+    private static final int WORKERS = 2;
+    /** Run time of one bulk use case. */
+    private static final long BULK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    /** Run time of one interactive use case. */
+    private static final long INTERACTIVE_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    /** Interactive use cases per second. */
+    private static final int INTERACTIVE_RATE = 500;
+
+    private FairShareBench() {}
+
+    public static void main(String[] args) throws InterruptedException {
+        System.setProperty("ist411.usecase.log", "false");
+        final long measure = args.length > 0 ? Long.parseLong(args[0]) : 3000;
+        final int interactiveWeight = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        final int bulkWeight = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+
+        // One lane for both channels is a plain FIFO in front of the workers.
+        final FairSharePool fifo = new FairSharePool(WORKERS);
+        final IUseCaseScheduler shared = fifo.scheduler((byte) 0, 1);
+        run("fifo", shared, shared, measure);
+        fifo.shutdown();
+
+        final FairSharePool pool = new FairSharePool(WORKERS);
+        final IUseCaseScheduler interactive = pool.scheduler((byte) 0, interactiveWeight);
+        final IUseCaseScheduler bulk = pool.scheduler((byte) 1, bulkWeight);
+        run("fair " + interactiveWeight + ":" + bulkWeight, interactive, bulk, measure);
+        System.out.println("  interactive: " + interactive.getMetrics());
+        System.out.println("  bulk:        " + bulk.getMetrics());
+        pool.shutdown();
+    }
+
+    private static void run(final String name, final IUseCaseScheduler interactive,
+            final IUseCaseScheduler bulk, final long measureMillis) throws InterruptedException {
+        final Histogram latency = new Histogram();
+        final LongAdder bulkDone = new LongAdder();
+        final long start = System.nanoTime();
+        final long end = start + TimeUnit.MILLISECONDS.toNanos(measureMillis);
+
+        final Thread flood = new Thread(() -> {
+            final UseCase.Callback<Long> counted = callback(due -> bulkDone.increment());
+            while (System.nanoTime() < end) {
+                try {
+                    bulk.execute(new Spin(BULK_NANOS), 0L, counted);
+                } catch (RejectedExecutionException ex) {
+                    LockSupport.parkNanos(100_000);
+                }
+            }
+        }, "bulk-producer");
+        flood.start();
+
+        final UseCase.Callback<Long> timed = callback(due -> latency.record(System.nanoTime() - due));
+        final long interval = TimeUnit.SECONDS.toNanos(1) / INTERACTIVE_RATE;
+        long rejected = 0;
+        for (long due = start; due < end; due += interval) {
+            final long wait = due - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            try {
+                interactive.execute(new Spin(INTERACTIVE_NANOS), due, timed);
+            } catch (RejectedExecutionException ex) {
+                rejected++;
+            }
+        }
+        flood.join();
+        final double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%-10s interactive rejected=%d %s  bulk=%,.0f/s%n",
+                name, rejected, latency.summary(), bulkDone.sum() / seconds);
+    }
+
+    private static UseCase.Callback<Long> callback(final LongConsumer onSuccess) {
+        return new UseCase.Callback<Long>() {
+            @Override
+            public void onSuccess(Long due) {
+                onSuccess.accept(due);
+            }
+
+            @Override
+            public void onFailure(Exception ex) {}
+        };
+    }
+
+    /** Use case that spins for a while and passes its request back. */
+    private static final class Spin extends UseCase<Long, Long> {
+        private final long mNanos;
+
+        Spin(final long nanos) {
+            mNanos = nanos;
+        }
+
+        @Override
+        protected void onExecute() {
+            final long until = System.nanoTime() + mNanos;
+            while (System.nanoTime() < until) {
+                // Simulated business logic.
+            }
+            pass(getRequest());
+        }
+    }
+}
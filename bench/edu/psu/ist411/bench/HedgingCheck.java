@@ -0,0 +1,177 @@
+/*
+ * Copyright 2018 Group 5.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.psu.ist411.bench;
+
+import edu.psu.ist411.HedgedUserRepository;
+import edu.psu.ist411.InMemoryUserRepository;
+import edu.psu.ist411.MockSlowUserRepository;
+import edu.psu.ist411.MockUser;
+import edu.psu.ist411.MockUserRepository;
+import edu.psu.ist411.framework.data_layer.IRepoCallbacks;
+import edu.psu.ist411.framework.metrics.Histogram;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Checks {@link HedgedUserRepository} against a
+ * {@link MockSlowUserRepository} with a long latency tail.
+ *
+ * Checks that: a lookup slower than the timeout fails with a
+ * {@link TimeoutException} near the timeout; hedging at the 90th
+ * percentile cuts the 99th percentile latency far below the slow
+ * delegate's; and after a spell of uniformly slow lookups, the hedge delay
+ * comes back down once the delegate speeds up, so old latencies age out.
+ * The process exits with status 1 if any check fails.
+ *
+ * Usage: {@code HedgingCheck}
+ *
+ * @author Tyler Suehr
+ * @author Win Ton
+ * @author Steven Weber
+ * @author David Wong
+ */
+public final class HedgingCheck {
+    /** Lookups in flight at once. */
+    private static final int WAVE = 50;
+    private static final long FAST_MILLIS = 1;
+    private static final long SLOW_MILLIS = 200;
+    /** Share of lookups that take {@link #SLOW_MILLIS}. */
+    private static final double SLOW_CHANCE = 0.05;
+
+    private HedgingCheck() {}
+
+    public static void main(String[] args) throws InterruptedException {
+        System.setProperty("ist411.usecase.log", "false");
+        final InMemoryUserRepository store = new InMemoryUserRepository();
+        final MockUser user = new MockUser();
+        user.setId("u0");
+        store.save(user);
+        boolean ok = true;
+
+        final HedgedUserRepository timed = new HedgedUserRepository(
+                new MockSlowUserRepository(store, SLOW_MILLIS, SLOW_MILLIS, 1), 50, TimeUnit.MILLISECONDS);
+        final Histogram timeouts = new Histogram();
+        final int timedOut = lookups(timed, 1, timeouts);
+        ok &= check("times out", timedOut == WAVE
+                && timeouts.percentile(99) < TimeUnit.MILLISECONDS.toNanos(SLOW_MILLIS / 2));
+
+        final MockUserRepository tail = new MockSlowUserRepository(store, FAST_MILLIS, SLOW_MILLIS, SLOW_CHANCE);
+        final Histogram plain = new Histogram();
+        lookups(new HedgedUserRepository(tail, 1, TimeUnit.SECONDS), 20, plain);
+        final HedgedUserRepository hedged = new HedgedUserRepository(tail, 1, TimeUnit.SECONDS, 0.9);
+        // Warm up the percentile, then measure.
+        lookups(hedged, 20, new Histogram());
+        final Histogram hedging = new Histogram();
+        lookups(hedged, 20, hedging);
+        System.out.printf("unhedged %s%nhedged   %s%n", plain.summary(), hedging.summary());
+        ok &= check("hedging cuts the tail", hedging.percentile(99) < plain.percentile(99) / 4);
+
+        // Slow for long enough to fill the histogram, then fast again.
+        final Switch delegate = new Switch(new MockSlowUserRepository(store, 20, 20, 0));
+        final HedgedUserRepository aging = new HedgedUserRepository(delegate, 1, TimeUnit.SECONDS, 0.9);
+        lookups(aging, 40, new Histogram());
+        delegate.mTarget = tail;
+        lookups(aging, 60, new Histogram());
+        final Histogram recovered = new Histogram();
+        lookups(aging, 20, recovered);
+        System.out.printf("recovered %s%n", recovered.summary());
+        ok &= check("old latencies age out", recovered.percentile(99) < TimeUnit.MILLISECONDS.toNanos(15));
+
+        if (!ok) {
+            System.out.println("FAILED");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Looks up a user in waves of {@link #WAVE} concurrent lookups.
+     * @return Number of lookups that timed out.
+     */
+    private static int lookups(final MockUserRepository repo, final int waves, final Histogram latency)
+            throws InterruptedException {
+        final AtomicInteger timedOut = new AtomicInteger();
+        for (int w = 0; w < waves; w++) {
+            final CountDownLatch done = new CountDownLatch(WAVE);
+            for (int i = 0; i < WAVE; i++) {
+                final long start = System.nanoTime();
+                repo.findById("u0", new IRepoCallbacks.ISingle<MockUser>() {
+                    @Override
+                    public void onAvailable(MockUser value) {
+                        finish();
+                    }
+
+                    @Override
+                    public void onNotAvailable(Exception ex) {
+                        if (ex instanceof TimeoutException) { timedOut.incrementAndGet(); }
+                        finish();
+                    }
+
+                    private void finish() {
+                        synchronized (latency) {
+                            latency.record(System.nanoTime() - start);
+                        }
+                        done.countDown();
+                    }
+                });
+            }
+            done.await();
+        }
+        return timedOut.get();
+    }
+
+    private static boolean check(final String name, final boolean passed) {
+        System.out.printf("  %-24s %s%n", name, passed ? "ok" : "FAILED");
+        return passed;
+    }
+
+    /** Passes lookups to whichever repository is current. */
+    private static final class Switch implements MockUserRepository {
+        volatile MockUserRepository mTarget;
+
+        Switch(final MockUserRepository target) {
+            mTarget = target;
+        }
+
+        @Override
+        public void save(final MockUser user) {
+            mTarget.save(user);
+        }
+
+        @Override
+        public void delete(final MockUser user) {
+            mTarget.delete(user);
+        }
+
+        @Override
+        public void findById(final String userId, final IRepoCallbacks.ISingle<MockUser> callback) {
+            mTarget.findById(userId, callback);
+        }
+
+        @Override
+        public void findByLastName(final String lastName, final IRepoCallbacks.IList<MockUser> callback) {
+            mTarget.findByLastName(lastName, callback);
+        }
+
+        @Override
+        public void findByLastNamePrefix(final String prefix,
+                final IRepoCallbacks.IStream<MockUser> callback) {
+            mTarget.findByLastNamePrefix(prefix, callback);
+        }
+    }
+}
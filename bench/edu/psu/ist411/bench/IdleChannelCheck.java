@@ -0,0 +1,165 @@
+/*
+ * Copyright 2018 Group 5.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.psu.ist411.bench;
+
+import edu.psu.ist411.framework.domain_layer.ChannelSweeper;
+import edu.psu.ist411.framework.domain_layer.IChannel;
+import edu.psu.ist411.framework.domain_layer.UseCase;
+import edu.psu.ist411.framework.ui_layer.AbstractSchedulerPresenter;
+import edu.psu.ist411.framework.ui_layer.IView;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks that channels created on demand are evicted once idle and
+ * recreated on their next use.
+ *
+ * Creates {@link #IDLE} channels through {@code scheduleOrCreateOn}, runs
+ * one use case on each and leaves them alone, while one more channel is
+ * kept busy. After a few TTLs the idle channels and their worker threads
+ * must be gone while the busy and default channels remain, and scheduling
+ * on an evicted ID must work again. A reference to an idle channel taken
+ * before eviction must be rejected while its ID has no channel, without
+ * starting a thread, and reach the new channel once there is one. The
+ * process exits with status 1 if any of that fails.
+ *
+ * Usage: {@code IdleChannelCheck [ttlMillis]}
+ *
+ * @author Tyler Suehr
+ * @author Win Ton
+ * @author Steven Weber
+ * @author David Wong
+ */
+public final class IdleChannelCheck {
+    /** Number of channels left idle, IDs 1 to this. */
+    private static final int IDLE = 100;
+    /** Channel kept busy throughout. */
+    private static final byte BUSY = (byte) (IDLE + 1);
+    /** Idle channel also used through a reference taken before eviction. */
+    private static final byte STALE = 1;
+    private static final UseCase.Callback<CountDownLatch> NO_CALLBACK = new UseCase.Callback<CountDownLatch>() {
+        @Override
+        public void onSuccess(CountDownLatch response) {}
+
+        @Override
+        public void onFailure(Exception ex) {}
+    };
+
+    private IdleChannelCheck() {}
+
+    public static void main(String[] args) throws InterruptedException {
+        System.setProperty("ist411.usecase.log", "false");
+        final long ttl = args.length > 0 ? Long.parseLong(args[0]) : 200;
+        System.setProperty(ChannelSweeper.TTL_PROPERTY, Long.toString(ttl));
+
+        final CheckPresenter presenter = new CheckPresenter();
+        final CountDownLatch ran = new CountDownLatch(IDLE);
+        for (int id = 1; id <= IDLE; id++) {
+            presenter.run((byte) id, ran);
+        }
+        ran.await();
+        final int before = workerThreads();
+        final IChannel stale = presenter.getChannelManager().get(STALE);
+
+        final long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ttl * 4);
+        while (System.nanoTime() < end) {
+            presenter.run(BUSY, new CountDownLatch(1));
+            Thread.sleep(Math.max(1, ttl / 10));
+        }
+        // Stopped pools take a moment to let their threads go.
+        Thread.sleep(100);
+        final int channels = presenter.getChannelManager().getChannels().size();
+        final int after = workerThreads();
+        final boolean busyKept = presenter.getChannelManager().get(BUSY) != null;
+
+        // Nothing holds its ID now, so a stale reference must be turned away.
+        boolean staleRejected = false;
+        try {
+            stale.getScheduler().execute(new Echo(), new CountDownLatch(1), NO_CALLBACK);
+        } catch (RejectedExecutionException ex) {
+            staleRejected = true;
+        }
+        staleRejected &= workerThreads() == after;
+
+        final CountDownLatch again = new CountDownLatch(1);
+        presenter.run(STALE, again);
+        final boolean recreated = again.await(5, TimeUnit.SECONDS);
+
+        // Now it must reach the recreated channel.
+        final CountDownLatch forwarded = new CountDownLatch(1);
+        stale.getScheduler().execute(new Echo(), forwarded, new UseCase.Callback<CountDownLatch>() {
+            @Override
+            public void onSuccess(CountDownLatch response) {
+                response.countDown();
+            }
+
+            @Override
+            public void onFailure(Exception ex) {}
+        });
+        final boolean staleForwarded = forwarded.await(5, TimeUnit.SECONDS);
+
+        System.out.printf("ttl=%dms evicted=%d channels=%d (was %d) worker threads=%d (was %d) busy kept=%b recreated=%b"
+                + " stale rejected=%b stale forwarded=%b%n",
+                ttl, ChannelSweeper.shared().getEvicted(), channels, IDLE + 2, after, before, busyKept, recreated,
+                staleRejected, staleForwarded);
+        if (ChannelSweeper.shared().getEvicted() != IDLE || channels != 2 || !busyKept || !recreated
+                || !staleRejected || !staleForwarded) {
+            System.out.println("FAILED");
+            System.exit(1);
+        }
+    }
+
+    /** Counts threads belonging to on-demand channels' pools. */
+    private static int workerThreads() {
+        int count = 0;
+        for (Thread t : Thread.getAllStackTraces().keySet()) {
+            if (t.getName().startsWith("channel-") && !t.getName().startsWith("channel-0-")
+                    && t.getName().contains("-worker")) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /** Use case that passes its request straight back. */
+    private static final class Echo extends UseCase<CountDownLatch, CountDownLatch> {
+        @Override
+        protected void onExecute() {
+            pass(getRequest());
+        }
+    }
+
+    /** Exposes scheduling on channels created on demand. */
+    private static final class CheckPresenter extends AbstractSchedulerPresenter<IView> {
+        CheckPresenter() {
+            attach(msg -> {});
+        }
+
+        void run(final byte channelId, final CountDownLatch latch) {
+            scheduleOrCreateOn(channelId, new Echo(), latch, new UseCase.Callback<CountDownLatch>() {
+                @Override
+                public void onSuccess(CountDownLatch response) {
+                    response.countDown();
+                }
+
+                @Override
+                public void onFailure(Exception ex) {}
+            });
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2018 Group 5.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.psu.ist411.bench;
+
+import edu.psu.ist411.InMemoryUserRepository;
+import edu.psu.ist411.MockFindUserByIdTask;
+import edu.psu.ist411.MockUser;
+import edu.psu.ist411.framework.domain_layer.MemoizingScheduler;
+import edu.psu.ist411.framework.domain_layer.UseCase;
+import edu.psu.ist411.framework.domain_layer.UseCaseCache;
+import edu.psu.ist411.framework.domain_layer.UseCaseSchedulerImpl;
+import edu.psu.ist411.framework.metrics.Histogram;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks {@link MemoizingScheduler} with the memoized
+ * {@link MockFindUserByIdTask} and measures what a hit saves.
+ *
+ * Looks up {@link #USERS} users twice each, timing misses and hits, then
+ * checks that: hits are served on the calling thread; changing a served
+ * user doesn't change the next hit; saving a user makes the next lookup
+ * see the change; the cache never holds more than its
+ * size; and entries expire after the TTL. The process exits with status 1
+ * if any check fails.
+ *
+ * Usage: {@code MemoizationCheck}
+ *
+ * @author Tyler Suehr
+ * @author Win Ton
+ * @author Steven Weber
+ * @author David Wong
+ */
+public final class MemoizationCheck {
+    private static final int USERS = 200;
+    private static final int CACHE_SIZE = 100;
+    private static final long TTL_MILLIS = 300;
+
+    private MemoizationCheck() {}
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("ist411.usecase.log", "false");
+        System.setProperty(UseCaseCache.SIZE_PROPERTY, Integer.toString(CACHE_SIZE));
+        System.setProperty(UseCaseCache.TTL_PROPERTY, Long.toString(TTL_MILLIS));
+        final UseCaseCache cache = UseCaseCache.shared();
+
+        final InMemoryUserRepository repo = new InMemoryUserRepository(cache::invalidate);
+        for (int i = 0; i < USERS; i++) {
+            repo.save(user("u" + i, "Last" + i));
+        }
+        final MemoizingScheduler scheduler = new MemoizingScheduler(new UseCaseSchedulerImpl((byte) 1));
+        boolean ok = true;
+
+        // Half the users, so every second lookup is a hit.
+        final Histogram miss = new Histogram();
+        final Histogram hit = new Histogram();
+        for (int round = 0; round < 20; round++) {
+            cache.invalidateAll();
+            for (int i = 0; i < CACHE_SIZE; i++) {
+                find(scheduler, repo, "u" + i, miss);
+                find(scheduler, repo, "u" + i, hit);
+            }
+        }
+        System.out.printf("miss %s%nhit  %s%n", miss.summary(), hit.summary());
+
+        final Thread[] servedOn = new Thread[1];
+        scheduler.execute(new MockFindUserByIdTask(repo), "u0", new UseCase.Callback<MockUser>() {
+            @Override
+            public void onSuccess(MockUser response) {
+                servedOn[0] = Thread.currentThread();
+            }
+
+            @Override
+            public void onFailure(Exception ex) {}
+        });
+        ok &= check("hit served on calling thread", servedOn[0] == Thread.currentThread());
+
+        find(scheduler, repo, "u1", new Histogram()).setLastName("Mutated");
+        ok &= check("hits are copies", "Last1".equals(find(scheduler, repo, "u1", new Histogram()).getLastName()));
+
+        repo.save(user("u0", "Changed"));
+        ok &= check("save invalidates", "Changed".equals(find(scheduler, repo, "u0", new Histogram()).getLastName()));
+
+        for (int i = 0; i < USERS; i++) {
+            find(scheduler, repo, "u" + i, new Histogram());
+        }
+        ok &= check("size bounded at " + CACHE_SIZE, cache.size() == CACHE_SIZE);
+
+        final long misses = cache.getMisses();
+        find(scheduler, repo, "u" + (USERS - 1), new Histogram());
+        final boolean servedBefore = cache.getMisses() == misses;
+        Thread.sleep(TTL_MILLIS + 50);
+        find(scheduler, repo, "u" + (USERS - 1), new Histogram());
+        ok &= check("expires after TTL", servedBefore && cache.getMisses() == misses + 1);
+
+        System.out.printf("hits=%,d misses=%,d%n", cache.getHits(), cache.getMisses());
+        scheduler.stopExecution();
+        if (!ok) {
+            System.out.println("FAILED");
+            System.exit(1);
+        }
+    }
+
+    private static MockUser find(final MemoizingScheduler scheduler, final InMemoryUserRepository repo,
+            final String id, final Histogram latency) throws Exception {
+        final CompletableFuture<MockUser> result = new CompletableFuture<>();
+        final long start = System.nanoTime();
+        scheduler.execute(new MockFindUserByIdTask(repo), id, new UseCase.Callback<MockUser>() {
+            @Override
+            public void onSuccess(MockUser response) {
+                result.complete(response);
+            }
+
+            @Override
+            public void onFailure(Exception ex) {
+                result.completeExceptionally(ex);
+            }
+        });
+        final MockUser user = result.get(5, TimeUnit.SECONDS);
+        latency.record(System.nanoTime() - start);
+        return user;
+    }
+
+    private static boolean check(final String name, final boolean passed) {
+        System.out.printf("  %-28s %s%n", name, passed ? "ok" : "FAILED");
+        return passed;
+    }
+
+    private static MockUser user(final String id, final String lastName) {
+        final MockUser user = new MockUser();
+        user.setId(id);
+        user.setLastName(lastName);
+        return user;
+    }
+}
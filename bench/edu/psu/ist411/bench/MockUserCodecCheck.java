@@ -0,0 +1,193 @@
+/*
+ * Copyright 2018 Group 5.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.psu.ist411.bench;
+
+import edu.psu.ist411.MockUser;
+import edu.psu.ist411.MockUserCodec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Random;
+
+/**
+ * Checks that {@link MockUserCodec} round-trips users and measures its
+ * throughput.
+ *
+ * Every sample string, including ones with multi-byte characters,
+ * surrogate pairs and unpaired surrogates, is encoded into heap and direct
+ * buffers. Its bytes must equal {@link String#getBytes} in UTF-8, and both
+ * {@link MockUserCodec#decode} and {@link MockUserCodec.Reader} must give
+ * back what decoding those bytes as a {@link String} gives. A field whose
+ * length cuts a character in half must decode the same from both kinds of
+ * buffer, and so must malformed UTF-8: stray continuation bytes, invalid
+ * lead bytes, lead bytes with bad continuations, and {@link #FUZZ} random
+ * byte strings. Then {@code users} users are encoded and decoded through a
+ * direct buffer and the rate is printed. The process exits with status 1
+ * if any check fails.
+ *
+ * Usage: {@code MockUserCodecCheck [users]}
+ *
+ * @author Tyler Suehr
+ * @author Win Ton
+ * @author Steven Weber
+ * @author David Wong
+ */
+public final class MockUserCodecCheck {
+    private static final String[] SAMPLES = {
+        null, "", "plain", "Zoë", "日本語", "😀 smile",
+        "\ud83d", "a\ude00b", "\ude00\ud83d", "x\ud83d😀",
+    };
+
+    /** Malformed UTF-8, each of which must decode to some U+FFFD. */
+    private static final byte[][] MALFORMED = {
+        { (byte) 0x80 }, { 'a', (byte) 0xBF, 'b' }, { (byte) 0xC0, (byte) 0xAF },
+        { (byte) 0xF8, 'x' }, { (byte) 0xC3, 'x' }, { (byte) 0xE6, (byte) 0x97, 'x' },
+        { (byte) 0xE0, (byte) 0x80, (byte) 0x80 }, { (byte) 0xED, (byte) 0xA0, (byte) 0x80 },
+        { (byte) 0xF4, (byte) 0x90, (byte) 0x80, (byte) 0x80 }, { (byte) 0xF0, (byte) 0x9F, (byte) 0x98 },
+    };
+    /** Random byte strings decoded both ways. */
+    private static final int FUZZ = 100_000;
+
+    private static boolean sFailed;
+
+    private MockUserCodecCheck() {}
+
+    public static void main(String[] args) {
+        System.setProperty("ist411.usecase.log", "false");
+        final int users = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+
+        boolean heap = true;
+        boolean direct = true;
+        for (String s : SAMPLES) {
+            heap &= roundTrips(s, ByteBuffer.allocate(256));
+            direct &= roundTrips(s, ByteBuffer.allocateDirect(256));
+        }
+        check("round trip, heap", heap);
+        check("round trip, direct", direct);
+        check("cut-off character", cutOff("Zoë", 3) && cutOff("日", 2)
+                && cutOff("😀", 3));
+        boolean malformed = true;
+        for (byte[] bytes : MALFORMED) {
+            final String s = decodeBoth(bytes);
+            malformed &= s != null && s.indexOf('\uFFFD') >= 0;
+        }
+        check("malformed input", malformed);
+        final Random random = new Random(42);
+        boolean fuzzed = true;
+        for (int i = 0; i < FUZZ && fuzzed; i++) {
+            final byte[] bytes = new byte[random.nextInt(12)];
+            random.nextBytes(bytes);
+            fuzzed = decodeBoth(bytes) != null;
+        }
+        check("random bytes", fuzzed);
+
+        // Throughput: encode then decode, over and over, through one buffer.
+        final MockUser user = user("user-12345", "Françoise", "日本");
+        final ByteBuffer buf = ByteBuffer.allocateDirect(MockUserCodec.sizeOf(user));
+        int sink = 0;
+        for (int warm = 0; warm < 2; warm++) {
+            final long start = System.nanoTime();
+            for (int i = 0; i < users; i++) {
+                buf.clear();
+                MockUserCodec.encode(user, buf);
+                buf.flip();
+                sink += MockUserCodec.decode(buf).getId().length();
+            }
+            final long nanos = System.nanoTime() - start;
+            if (warm == 1) {
+                System.out.printf("%,d users encoded and decoded in %.1f ms (%,.0f/s) [%d]%n",
+                        users, nanos / 1e6, users * 1e9 / nanos, sink);
+            }
+        }
+
+        if (sFailed) {
+            System.out.println("FAILED");
+            System.exit(1);
+        }
+    }
+
+    /** Encodes the string as every field of a user and reads it back. */
+    private static boolean roundTrips(final String s, final ByteBuffer buf) {
+        final MockUser user = user(s, s, s);
+        MockUserCodec.encode(user, buf);
+        if (buf.position() != MockUserCodec.sizeOf(user)) { return false; }
+
+        final String expected = s == null ? null : new String(s.getBytes(StandardCharsets.UTF_8),
+                StandardCharsets.UTF_8);
+        if (s != null) {
+            final byte[] written = new byte[buf.getInt(1)];
+            for (int i = 0; i < written.length; i++) {
+                written[i] = buf.get(5 + i);
+            }
+            if (!Arrays.equals(written, s.getBytes(StandardCharsets.UTF_8))) { return false; }
+        }
+
+        buf.flip();
+        final MockUserCodec.Reader reader = new MockUserCodec.Reader().wrap(buf, 0);
+        final MockUser decoded = MockUserCodec.decode(buf);
+        return Objects.equals(decoded.getId(), expected)
+                && Objects.equals(decoded.getFirstName(), expected)
+                && Objects.equals(decoded.getLastName(), expected)
+                && Objects.equals(reader.getLastName(), expected)
+                && reader.length() == buf.limit();
+    }
+
+    /**
+     * Shortens the ID's length to {@code len} bytes, cutting off part of a
+     * character, and checks heap and direct buffers decode it the same.
+     */
+    private static boolean cutOff(final String s, final int len) {
+        final MockUser user = user(s, null, null);
+        final ByteBuffer heap = ByteBuffer.allocate(MockUserCodec.sizeOf(user));
+        final ByteBuffer direct = ByteBuffer.allocateDirect(MockUserCodec.sizeOf(user));
+        MockUserCodec.encode(user, heap);
+        MockUserCodec.encode(user, direct);
+        heap.putInt(1, len);
+        direct.putInt(1, len);
+        final String fromHeap = new MockUserCodec.Reader().wrap(heap, 0).getId();
+        final String fromDirect = new MockUserCodec.Reader().wrap(direct, 0).getId();
+        return fromHeap.equals(fromDirect);
+    }
+
+    /**
+     * Decodes raw bytes as an ID from heap and direct buffers.
+     * @return The ID, or null if the two differ.
+     */
+    private static String decodeBoth(final byte[] bytes) {
+        final ByteBuffer heap = ByteBuffer.allocate(1 + 4 + bytes.length + 4 + 4);
+        final ByteBuffer direct = ByteBuffer.allocateDirect(heap.capacity());
+        for (ByteBuffer buf : new ByteBuffer[] { heap, direct }) {
+            buf.put(MockUserCodec.VERSION).putInt(bytes.length).put(bytes).putInt(-1).putInt(-1);
+        }
+        final String fromHeap = new MockUserCodec.Reader().wrap(heap, 0).getId();
+        final String fromDirect = new MockUserCodec.Reader().wrap(direct, 0).getId();
+        return fromHeap.equals(fromDirect) ? fromDirect : null;
+    }
+
+    private static MockUser user(final String id, final String first, final String last) {
+        final MockUser user = new MockUser();
+        user.setId(id);
+        user.setFirstName(first);
+        user.setLastName(last);
+        return user;
+    }
+
+    private static void check(final String name, final boolean passed) {
+        System.out.printf("%-20s %s%n", name, passed ? "ok" : "FAILED");
+        if (!passed) { sFailed = true; }
+    }
+}
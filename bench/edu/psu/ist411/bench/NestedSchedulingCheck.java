@@ -0,0 +1,160 @@
+/*
+ * Copyright 2018 Group 5.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.psu.ist411.bench;
+
+import edu.psu.ist411.framework.domain_layer.UseCase;
+import edu.psu.ist411.framework.domain_layer.UseCaseSchedulerImpl;
+import edu.psu.ist411.framework.domain_layer.UseCaseSchedulerImpl.NestedPolicy;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reproduces thread-starvation deadlock from nested scheduling and checks
+ * each {@link NestedPolicy} against it.
+ *
+ * The pool's core threads are started up front, then several parent use
+ * cases are scheduled at once. Each waits at a barrier until every parent
+ * is running (or the timeout passes), then schedules a child on the same
+ * scheduler and blocks until the child has completed. With
+ * {@link NestedPolicy#QUEUE} the parents hold every core thread and the
+ * children sit in the queue behind them, so the parents time out. The
+ * other policies must never time out.
+ *
+ * Exits with status 1 if QUEUE didn't starve, or another policy did.
+ *
+ * Usage: {@code NestedSchedulingCheck [parents] [timeoutMillis]}
+ *
+ * @author Tyler Suehr
+ * @author Win Ton
+ * @author Steven Weber
+ * @author David Wong
+ */
+public final class NestedSchedulingCheck {
+    private NestedSchedulingCheck() {}
+
+    public static void main(String[] args) throws InterruptedException {
+        System.setProperty("ist411.usecase.log", "false");
+        final int parents = args.length > 0 ? Integer.parseInt(args[0]) : 2;
+        final long timeout = args.length > 1 ? Long.parseLong(args[1]) : 1000;
+
+        boolean failed = false;
+        for (NestedPolicy policy : NestedPolicy.values()) {
+            final UseCaseSchedulerImpl scheduler = new UseCaseSchedulerImpl((byte) 1, policy);
+            // Started now, so no child can get a core thread of its own.
+            scheduler.prewarm();
+            final Outcome outcome = new Outcome(parents);
+            final CyclicBarrier running = new CyclicBarrier(parents);
+            for (int i = 0; i < parents; i++) {
+                scheduler.execute(new Parent(scheduler, running, timeout), null, outcome);
+            }
+            outcome.done.await(timeout * 2, TimeUnit.MILLISECONDS);
+            scheduler.stopExecution();
+
+            final boolean starved = outcome.starved.get() > 0;
+            System.out.printf("%-10s parents=%d completed=%d rejected=%d starved=%d%s%n",
+                    policy, parents, outcome.completed.get(), outcome.rejected.get(),
+                    outcome.starved.get(), starved && policy == NestedPolicy.QUEUE ? "  (reproduced)" : "");
+            failed |= policy == NestedPolicy.QUEUE ? !starved : starved;
+        }
+        if (failed) {
+            System.out.println("FAIL: QUEUE didn't starve, or another policy did");
+            System.exit(1);
+        }
+        System.out.println("OK");
+    }
+
+    /** Counts how each parent ended up. */
+    private static final class Outcome implements UseCase.Callback<String> {
+        final CountDownLatch done;
+        final AtomicInteger completed = new AtomicInteger();
+        final AtomicInteger rejected = new AtomicInteger();
+        final AtomicInteger starved = new AtomicInteger();
+
+        Outcome(final int parents) {
+            done = new CountDownLatch(parents);
+        }
+
+        @Override
+        public void onSuccess(String response) {
+            completed.incrementAndGet();
+            done.countDown();
+        }
+
+        @Override
+        public void onFailure(Exception ex) {
+            (ex instanceof RejectedExecutionException ? rejected : starved).incrementAndGet();
+            done.countDown();
+        }
+    }
+
+    /** Schedules a child on the same scheduler and waits for it. */
+    private static final class Parent extends UseCase<Void, String> {
+        private final UseCaseSchedulerImpl mScheduler;
+        private final CyclicBarrier mRunning;
+        private final long mTimeout;
+
+        Parent(final UseCaseSchedulerImpl scheduler, final CyclicBarrier running, final long timeout) {
+            mScheduler = scheduler;
+            mRunning = running;
+            mTimeout = timeout;
+        }
+
+        @Override
+        protected void onExecute() {
+            final CountDownLatch child = new CountDownLatch(1);
+            try {
+                try {
+                    // More parents than core threads never all meet; go on anyway.
+                    mRunning.await(mTimeout, TimeUnit.MILLISECONDS);
+                } catch (BrokenBarrierException | TimeoutException ex) {
+                    // Carry on scheduling the child.
+                }
+                mScheduler.execute(new Child(), null, new UseCase.Callback<String>() {
+                    @Override
+                    public void onSuccess(String response) {
+                        child.countDown();
+                    }
+
+                    @Override
+                    public void onFailure(Exception ex) {}
+                });
+                if (child.await(mTimeout, TimeUnit.MILLISECONDS)) {
+                    pass("done");
+                } else {
+                    fail(new IllegalStateException("Child never ran"));
+                }
+            } catch (RejectedExecutionException ex) {
+                fail(ex);
+            } catch (InterruptedException ex) {
+                fail(ex);
+            }
+        }
+    }
+
+    /** Passes straight away. */
+    private static final class Child extends UseCase<Void, String> {
+        @Override
+        protected void onExecute() {
+            pass("child");
+        }
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright 2018 Group 5.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.psu.ist411.bench;
+
+import edu.psu.ist411.framework.domain_layer.AbstractChannelManager;
+import edu.psu.ist411.framework.domain_layer.ChannelImpl;
+import edu.psu.ist411.framework.domain_layer.ChannelManagerFactory;
+import edu.psu.ist411.framework.domain_layer.ChannelRebalancer;
+import edu.psu.ist411.framework.domain_layer.EventLoopScheduler;
+import edu.psu.ist411.framework.domain_layer.IChannel;
+import edu.psu.ist411.framework.domain_layer.UseCase;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Checks that moving channels between managers under load neither loses
+ * nor reorders use cases.
+ *
+ * All channels start on one manager, each backed by an
+ * {@link EventLoopScheduler} so its use cases complete in submission order.
+ * Producers look a channel up by ID across all managers, then submit a use
+ * case carrying that channel's next sequence number; a few channels get
+ * most of the traffic. Each channel's callback expects exactly the next
+ * sequence number, so anything lost, repeated or reordered is counted.
+ *
+ * Two phases run back to back: one where a thread moves hot channels with
+ * {@link AbstractChannelManager#relocate}, which removes a channel before
+ * adding it elsewhere, and one where a {@link ChannelRebalancer} moves them
+ * with {@link AbstractChannelManager#migrate}. Lookups that find the channel
+ * in no manager are counted as misses. The process exits with status 1 if
+ * the rebalancer phase misses a lookup or loses or reorders a callback.
+ *
+ * Usage: {@code RebalanceStressCheck [millisPerPhase] [producers]}
+ *
+ * @author Tyler Suehr
+ * @author Win Ton
+ * @author Steven Weber
+ * @author David Wong
+ */
+public final class RebalanceStressCheck {
+    /** Number of managers. */
+    private static final int MANAGERS = 4;
+    /** Number of channels, IDs 1 to this. */
+    private static final int CHANNELS = 32;
+    /** Channels 1 to this get {@link #HOT_PERCENT} of the traffic. */
+    private static final int HOT = 8;
+    private static final int HOT_PERCENT = 90;
+    /** Simulated work per use case. */
+    private static final long WORK_NANOS = TimeUnit.MICROSECONDS.toNanos(5);
+
+    private RebalanceStressCheck() {}
+
+    public static void main(String[] args) throws InterruptedException {
+        System.setProperty("ist411.usecase.log", "false");
+        final long millis = args.length > 0 ? Long.parseLong(args[0]) : 2000;
+        final int producers = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+
+        run("relocate", millis, producers);
+        final Result r = run("rebalance", millis, producers);
+        if (r.missed.sum() > 0 || r.broken() > 0) {
+            System.out.println("FAILED: rebalancing lost or reordered work");
+            System.exit(1);
+        }
+    }
+
+    private static Result run(final String mode, final long millis, final int producers)
+            throws InterruptedException {
+        final List<AbstractChannelManager> managers = new ArrayList<>();
+        for (int i = 0; i < MANAGERS; i++) {
+            managers.add(ChannelManagerFactory.newGoodThreadSafe());
+        }
+        final Result r = new Result();
+        for (int id = 1; id <= CHANNELS; id++) {
+            managers.get(0).add(new ChannelImpl((byte) id, new EventLoopScheduler((byte) id,
+                    EventLoopScheduler.WaitStrategy.PARK)));
+        }
+
+        final ChannelRebalancer rebalancer = new ChannelRebalancer(managers,
+                new ChannelRebalancer.ThresholdPolicy(1.5, 4));
+        final Thread mover = new Thread(() -> relocateHot(managers, r), "relocator");
+        mover.setDaemon(true);
+        if (mode.equals("rebalance")) {
+            rebalancer.start(1, TimeUnit.MILLISECONDS);
+        } else {
+            mover.start();
+        }
+
+        final long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+        final Thread[] threads = new Thread[producers];
+        for (int t = 0; t < producers; t++) {
+            threads[t] = new Thread(() -> produce(managers, r, end), "producer-" + t);
+            threads[t].start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        rebalancer.stop();
+        mover.interrupt();
+        mover.join();
+
+        // Every accepted use case must call back before the channels stop.
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (r.delivered.sum() < r.accepted.sum() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        final int[] spread = new int[MANAGERS];
+        for (int i = 0; i < MANAGERS; i++) {
+            for (IChannel c : managers.get(i).getChannels()) {
+                spread[i]++;
+                c.getScheduler().stopExecution();
+            }
+        }
+        System.out.printf("%-9s accepted=%,d delivered=%,d lost=%,d out-of-order=%,d missed=%,d moves=%,d channels=%s%n",
+                mode, r.accepted.sum(), r.delivered.sum(), r.accepted.sum() - r.delivered.sum(),
+                r.outOfOrder.sum(), r.missed.sum(), mode.equals("rebalance") ? rebalancer.getMoves() : r.moves.sum(),
+                Arrays.toString(spread));
+        return r;
+    }
+
+    private static void produce(final List<AbstractChannelManager> managers, final Result r, final long end) {
+        final ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        while (System.nanoTime() < end) {
+            final int id = rnd.nextInt(100) < HOT_PERCENT ? 1 + rnd.nextInt(HOT) : 1 + rnd.nextInt(CHANNELS);
+            IChannel channel = null;
+            for (AbstractChannelManager m : managers) {
+                if ((channel = m.get((byte) id)) != null) { break; }
+            }
+            if (channel == null) {
+                r.missed.increment();
+                continue;
+            }
+            // Numbering and submitting together keeps each channel's
+            // submission order equal to its sequence order.
+            synchronized (r.sequences[id]) {
+                try {
+                    channel.getScheduler().execute(new Work(), r.sequences[id].next, r.sequences[id]);
+                    r.sequences[id].next++;
+                    r.accepted.increment();
+                } catch (RejectedExecutionException ex) {
+                    // Not counted either way.
+                }
+            }
+        }
+    }
+
+    private static void relocateHot(final List<AbstractChannelManager> managers, final Result r) {
+        final ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        while (!Thread.currentThread().isInterrupted()) {
+            final byte id = (byte) (1 + rnd.nextInt(HOT));
+            for (AbstractChannelManager m : managers) {
+                final IChannel c = m.get(id);
+                if (c != null) {
+                    m.relocate(managers.get(rnd.nextInt(MANAGERS)), c);
+                    r.moves.increment();
+                    break;
+                }
+            }
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException ex) {
+                return;
+            }
+        }
+    }
+
+    private static final class Result {
+        final Sequence[] sequences = new Sequence[CHANNELS + 1];
+        final LongAdder accepted = new LongAdder();
+        final LongAdder delivered = new LongAdder();
+        final LongAdder outOfOrder = new LongAdder();
+        final LongAdder missed = new LongAdder();
+        final LongAdder moves = new LongAdder();
+
+        Result() {
+            for (int i = 0; i < sequences.length; i++) {
+                sequences[i] = new Sequence(this);
+            }
+        }
+
+        long broken() {
+            return outOfOrder.sum() + accepted.sum() - delivered.sum();
+        }
+    }
+
+    /** Per-channel numbering and the callback that checks it. */
+    private static final class Sequence implements UseCase.Callback<Long> {
+        private final Result mResult;
+        /** Next number to hand out, guarded by this. */
+        long next;
+        /** Next number expected back, only touched by the channel's loop. */
+        private long mExpected;
+
+        Sequence(final Result result) {
+            mResult = result;
+        }
+
+        @Override
+        public void onSuccess(Long seq) {
+            if (seq != mExpected) {
+                mResult.outOfOrder.increment();
+            }
+            mExpected = seq + 1;
+            mResult.delivered.increment();
+        }
+
+        @Override
+        public void onFailure(Exception ex) {
+            mResult.outOfOrder.increment();
+        }
+    }
+
+    /** Use case that spins briefly and passes its request back. */
+    private static final class Work extends UseCase<Long, Long> {
+        @Override
+        protected void onExecute() {
+            final long until = System.nanoTime() + WORK_NANOS;
+            while (System.nanoTime() < until) {
+                // Simulated business logic.
+            }
+            pass(getRequest());
+        }
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2018 Group 5.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.psu.ist411.bench;
+
+import edu.psu.ist411.framework.domain_layer.ChannelImpl;
+import edu.psu.ist411.framework.domain_layer.EventLoopScheduler;
+import edu.psu.ist411.framework.domain_layer.IUseCaseScheduler;
+import edu.psu.ist411.framework.domain_layer.RingBufferScheduler;
+import edu.psu.ist411.framework.domain_layer.UseCase;
+import edu.psu.ist411.framework.domain_layer.UseCaseSchedulerImpl;
+import edu.psu.ist411.framework.metrics.Histogram;
+import edu.psu.ist411.framework.ui_layer.AbstractSchedulerPresenter;
+import edu.psu.ist411.framework.ui_layer.IView;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Measures the time from {@link AbstractSchedulerPresenter} scheduling a
+ * use case to its {@link UseCase.Callback#onSuccess} being invoked.
+ *
+ * Load is open-loop: submissions follow a fixed schedule at the requested
+ * rate whether or not earlier ones have finished, and each latency is
+ * measured from when the submission was <i>due</i> rather than when it was
+ * actually made. A stalled scheduler therefore shows up as latency instead
+ * of silently slowing the load down (coordinated omission).
+ *
+ * Completions that arrive before one scheduled earlier are counted as
+ * reordered, which shows which schedulers keep a channel's order.
+ *
+ * Usage: {@code ScheduleLatencyBench [measureMillis] [rate,rate,...] [workMicros]}
+ *
+ * @author Tyler Suehr
+ * @author Win Ton
+ * @author Steven Weber
+ * @author David Wong
+ */
+public final class ScheduleLatencyBench {
+    /** Channel used by the benchmark presenter. */
+    private static final byte CHANNEL = (byte) 1;
+    /** Schedulers to compare. */
+    private static final Map<String, Supplier<IUseCaseScheduler>> SCHEDULERS = new LinkedHashMap<>();
+    static {
+        SCHEDULERS.put("thread-pool", UseCaseSchedulerImpl::new);
+        SCHEDULERS.put("loop-park", () -> new EventLoopScheduler(CHANNEL, EventLoopScheduler.WaitStrategy.PARK));
+        SCHEDULERS.put("loop-yield", () -> new EventLoopScheduler(CHANNEL, EventLoopScheduler.WaitStrategy.YIELD));
+        SCHEDULERS.put("loop-spin", () -> new EventLoopScheduler(CHANNEL, EventLoopScheduler.WaitStrategy.BUSY_SPIN));
+        SCHEDULERS.put("ring-park", () -> new RingBufferScheduler(CHANNEL, 1024, EventLoopScheduler.WaitStrategy.PARK));
+    }
+
+    private ScheduleLatencyBench() {}
+
+    public static void main(String[] args) throws InterruptedException {
+        final long measure = args.length > 0 ? Long.parseLong(args[0]) : 2000;
+        final String[] rates = (args.length > 1 ? args[1] : "1000,10000,100000").split(",");
+        final long workNanos = TimeUnit.MICROSECONDS.toNanos(args.length > 2 ? Long.parseLong(args[2]) : 0);
+
+        // UseCase.pass() logs every success; keep that cost but not the noise.
+        final PrintStream out = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {}
+        }));
+        try {
+            for (Map.Entry<String, Supplier<IUseCaseScheduler>> e : SCHEDULERS.entrySet()) {
+                for (String rate : rates) {
+                    final Result r = run(e.getValue().get(), Integer.parseInt(rate.trim()), measure, workNanos);
+                    out.printf("%-14s rate=%,9d/s  sent=%,d rejected=%,d failed=%,d reordered=%,d  %s%n",
+                            e.getKey(), Integer.parseInt(rate.trim()), r.sent, r.rejected,
+                            r.failed.sum(), r.reordered.sum(), r.latency.summary());
+                }
+            }
+        } finally {
+            System.setOut(out);
+        }
+    }
+
+    private static Result run(final IUseCaseScheduler scheduler, final int rate,
+            final long measureMillis, final long workNanos) throws InterruptedException {
+        final BenchPresenter presenter = new BenchPresenter(scheduler);
+        final Result r = new Result();
+        final long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+        final long start = System.nanoTime();
+        final long end = start + TimeUnit.MILLISECONDS.toNanos(measureMillis);
+
+        for (long due = start; due < end; due += interval) {
+            long now;
+            while ((now = System.nanoTime()) < due) {
+                if (due - now > 50_000) {
+                    LockSupport.parkNanos(due - now - 50_000);
+                }
+            }
+            r.sent++;
+            try {
+                presenter.submit(new Work(workNanos), due, r);
+            } catch (RejectedExecutionException ex) {
+                r.rejected++;
+            }
+        }
+
+        // Give stragglers a moment, then stop the pool.
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (r.rejected + r.failed.sum() + r.latency.count() < r.sent && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        scheduler.stopExecution();
+        return r;
+    }
+
+    private static final class Result implements UseCase.Callback<Long> {
+        final Histogram latency = new Histogram();
+        final LongAdder failed = new LongAdder();
+        final LongAdder reordered = new LongAdder();
+        final AtomicLong lastDue = new AtomicLong(Long.MIN_VALUE);
+        long sent;
+        long rejected;
+
+        @Override
+        public void onSuccess(Long due) {
+            latency.record(System.nanoTime() - due);
+            if (lastDue.getAndAccumulate(due, Math::max) > due) {
+                reordered.increment();
+            }
+        }
+
+        @Override
+        public void onFailure(Exception ex) {
+            failed.increment();
+        }
+    }
+
+    /** Use case that spins for a while and passes its request back. */
+    private static final class Work extends UseCase<Long, Long> {
+        private final long mWorkNanos;
+
+        Work(final long workNanos) {
+            mWorkNanos = workNanos;
+        }
+
+        @Override
+        protected void onExecute() {
+            final long until = System.nanoTime() + mWorkNanos;
+            while (mWorkNanos > 0 && System.nanoTime() < until) {
+                // Simulated business logic.
+            }
+            pass(getRequest());
+        }
+    }
+
+    /** Exposes scheduling on a channel backed by the scheduler under test. */
+    private static final class BenchPresenter extends AbstractSchedulerPresenter<IView> {
+        BenchPresenter(final IUseCaseScheduler scheduler) {
+            getChannelManager().add(new ChannelImpl(CHANNEL, scheduler));
+            attach(msg -> {});
+        }
+
+        void submit(final Work work, final long due, final Result result) {
+            scheduleOn(CHANNEL, work, due, result);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2018 Group 5.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.psu.ist411.bench;
+
+import edu.psu.ist411.framework.domain_layer.EventLoopScheduler;
+import edu.psu.ist411.framework.domain_layer.IUseCaseScheduler;
+import edu.psu.ist411.framework.domain_layer.RingBufferScheduler;
+import edu.psu.ist411.framework.domain_layer.UseCase;
+import edu.psu.ist411.framework.domain_layer.UseCaseSchedulerImpl;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Measures how many tiny use cases per second one channel's scheduler can
+ * sustain.
+ *
+ * Producer threads call {@link IUseCaseScheduler#execute} in a closed
+ * loop with a use case that passes straight away. A rejected call is
+ * retried, so the rate reported is of use cases accepted, and the number
+ * actually completed is printed next to it.
+ *
+ * Usage: {@code SchedulerThroughputBench [measureMillis] [producers]}
+ *
+ * @author Tyler Suehr
+ * @author Win Ton
+ * @author Steven Weber
+ * @author David Wong
+ */
+public final class SchedulerThroughputBench {
+    /** Schedulers to compare. */
+    private static final Map<String, Supplier<IUseCaseScheduler>> SCHEDULERS = new LinkedHashMap<>();
+    static {
+        SCHEDULERS.put("thread-pool", UseCaseSchedulerImpl::new);
+        SCHEDULERS.put("loop-yield", () -> new EventLoopScheduler((byte) 1, EventLoopScheduler.WaitStrategy.YIELD));
+        SCHEDULERS.put("ring-yield", () -> new RingBufferScheduler((byte) 1, 1024, EventLoopScheduler.WaitStrategy.YIELD));
+    }
+
+    private SchedulerThroughputBench() {}
+
+    public static void main(String[] args) throws InterruptedException {
+        // Must be set before UseCase is loaded.
+        System.setProperty("ist411.usecase.log", "false");
+        final long measure = args.length > 0 ? Long.parseLong(args[0]) : 2000;
+        final int producers = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+        final long warmup = Math.max(measure / 2, 100);
+
+        for (Map.Entry<String, Supplier<IUseCaseScheduler>> e : SCHEDULERS.entrySet()) {
+            final IUseCaseScheduler scheduler = e.getValue().get();
+            final LongAdder done = new LongAdder();
+            final UseCase.Callback<Integer> callback = new UseCase.Callback<Integer>() {
+                @Override
+                public void onSuccess(Integer response) {
+                    done.increment();
+                }
+
+                @Override
+                public void onFailure(Exception ex) {}
+            };
+            final Integer request = 0;
+            Bench.run(e.getKey() + " execute", producers, warmup, measure, t -> {
+                final Noop noop = new Noop();
+                return () -> {
+                    while (true) {
+                        try {
+                            scheduler.execute(noop, request, callback);
+                            return 1;
+                        } catch (RejectedExecutionException ex) {
+                            Thread.yield();
+                        }
+                    }
+                };
+            });
+            scheduler.stopExecution();
+            System.out.printf("%-44s completed=%,d%n", "", done.sum());
+        }
+    }
+
+    /** Use case that passes its request straight back. */
+    private static final class Noop extends UseCase<Integer, Integer> {
+        @Override
+        protected void onExecute() {
+            pass(getRequest());
+        }
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2018 Group 5.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.psu.ist411.bench;
+
+import edu.psu.ist411.framework.domain_layer.AbstractChannelManager;
+import edu.psu.ist411.framework.domain_layer.ChannelImpl;
+import edu.psu.ist411.framework.domain_layer.ChannelManagerFactory;
+import edu.psu.ist411.framework.domain_layer.ChannelTopology;
+import edu.psu.ist411.framework.domain_layer.EventLoopScheduler;
+import edu.psu.ist411.framework.domain_layer.IChannel;
+import edu.psu.ist411.framework.domain_layer.IUseCaseScheduler;
+import edu.psu.ist411.framework.domain_layer.RingBufferScheduler;
+import edu.psu.ist411.framework.domain_layer.UseCase;
+import edu.psu.ist411.framework.domain_layer.UseCaseSchedulerImpl;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks that {@link ChannelTopology} restores managers and channels as
+ * they were saved, and measures how quickly they're ready.
+ *
+ * Builds {@link #MANAGERS} managers with {@link #CHANNELS} channels each,
+ * cycling through the scheduler kinds and their settings, saves them and
+ * restores them. Every restored channel must have the same ID, scheduler
+ * class and settings. It then compares the time to run one use case on
+ * every channel for freshly built (cold) and restored (prewarmed)
+ * schedulers. The process exits with status 1 on any mismatch.
+ *
+ * Usage: {@code TopologyRestoreCheck}
+ *
+ * @author Tyler Suehr
+ * @author Win Ton
+ * @author Steven Weber
+ * @author David Wong
+ */
+public final class TopologyRestoreCheck {
+    private static final int MANAGERS = 4;
+    private static final int CHANNELS = 32;
+
+    private TopologyRestoreCheck() {}
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        System.setProperty("ist411.usecase.log", "false");
+        final Map<String, AbstractChannelManager> original = build();
+        final Path file = Files.createTempFile("topology", ".bin");
+        try {
+            final int written = ChannelTopology.save(original, file);
+
+            // The first restore also pays for class loading; time a second.
+            final long t0 = System.nanoTime();
+            stop(ChannelTopology.restore(file));
+            final long firstNanos = System.nanoTime() - t0;
+            final long t1 = System.nanoTime();
+            final Map<String, AbstractChannelManager> restored = ChannelTopology.restore(file);
+            final long restoreNanos = System.nanoTime() - t1;
+
+            final int mismatches = compare(original, restored);
+            final long coldNanos = firstRun(original);
+            final long warmNanos = firstRun(restored);
+            System.out.printf("channels=%d file=%d bytes restore=%.2fms (first %.2fms) mismatches=%d%n",
+                    written, Files.size(file), restoreNanos / 1e6, firstNanos / 1e6, mismatches);
+            System.out.printf("first use case on every channel: cold=%.2fms restored=%.2fms%n",
+                    coldNanos / 1e6, warmNanos / 1e6);
+            stop(original);
+            stop(restored);
+            if (written != MANAGERS * CHANNELS || mismatches > 0) {
+                System.out.println("FAILED");
+                System.exit(1);
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static Map<String, AbstractChannelManager> build() {
+        final Map<String, AbstractChannelManager> managers = new LinkedHashMap<>();
+        for (int m = 0; m < MANAGERS; m++) {
+            final AbstractChannelManager manager = ChannelManagerFactory.newGoodThreadSafe();
+            for (int i = 0; i < CHANNELS; i++) {
+                final byte id = (byte) (m * CHANNELS + i + 1);
+                manager.add(new ChannelImpl(id, scheduler(id, i), i % 5 == 0));
+            }
+            managers.put("presenter-" + m, manager);
+        }
+        return managers;
+    }
+
+    private static IUseCaseScheduler scheduler(final byte id, final int i) {
+        final EventLoopScheduler.WaitStrategy[] waits = EventLoopScheduler.WaitStrategy.values();
+        switch (i % 3) {
+            case 0:
+                return new UseCaseSchedulerImpl(id, UseCaseSchedulerImpl.NestedPolicy.values()[
+                        i % UseCaseSchedulerImpl.NestedPolicy.values().length]);
+            case 1:
+                // Busy-spinning loops would each take a core for the whole run.
+                return new EventLoopScheduler(id, waits[i % 2]);
+            default:
+                return new RingBufferScheduler(id, 64 << (i % 4), waits[i % 2]);
+        }
+    }
+
+    private static int compare(final Map<String, AbstractChannelManager> a,
+            final Map<String, AbstractChannelManager> b) {
+        int mismatches = 0;
+        if (!a.keySet().equals(b.keySet())) {
+            return a.size() + b.size();
+        }
+        for (String name : a.keySet()) {
+            for (IChannel c : a.get(name).getChannels()) {
+                final IChannel r = b.get(name).get(c.getId());
+                if (r == null || !describe(c).equals(describe(r))) {
+                    mismatches++;
+                }
+            }
+            mismatches += Math.abs(a.get(name).getChannels().size() - b.get(name).getChannels().size());
+        }
+        return mismatches;
+    }
+
+    private static String describe(final IChannel c) {
+        final IUseCaseScheduler s = ((ChannelImpl) c).getBackingScheduler();
+        String settings = "";
+        if (s instanceof UseCaseSchedulerImpl) {
+            settings = ((UseCaseSchedulerImpl) s).getNestedPolicy().name();
+        } else if (s instanceof EventLoopScheduler) {
+            settings = ((EventLoopScheduler) s).getWaitStrategy().name();
+        } else if (s instanceof RingBufferScheduler) {
+            settings = ((RingBufferScheduler) s).getWaitStrategy() + "/" + ((RingBufferScheduler) s).getCapacity();
+        }
+        return c.getId() + " " + s.getClass().getSimpleName() + " " + settings
+                + " " + ((ChannelImpl) c).isEvictable();
+    }
+
+    /** Time until one use case has run on every channel. */
+    private static long firstRun(final Map<String, AbstractChannelManager> managers)
+            throws InterruptedException {
+        final List<IChannel> channels = new ArrayList<>();
+        for (AbstractChannelManager m : managers.values()) {
+            channels.addAll(m.getChannels());
+        }
+        final CountDownLatch done = new CountDownLatch(channels.size());
+        final long start = System.nanoTime();
+        for (IChannel c : channels) {
+            c.getScheduler().execute(new Echo(), done, new UseCase.Callback<CountDownLatch>() {
+                @Override
+                public void onSuccess(CountDownLatch response) {
+                    response.countDown();
+                }
+
+                @Override
+                public void onFailure(Exception ex) {}
+            });
+        }
+        done.await(10, TimeUnit.SECONDS);
+        return System.nanoTime() - start;
+    }
+
+    private static void stop(final Map<String, AbstractChannelManager> managers) {
+        for (AbstractChannelManager m : managers.values()) {
+            for (IChannel c : m.getChannels()) {
+                c.getScheduler().stopExecution();
+            }
+        }
+    }
+
+    /** Use case that passes its request straight back. */
+    private static final class Echo extends UseCase<CountDownLatch, CountDownLatch> {
+        @Override
+        protected void onExecute() {
+            pass(getRequest());
+        }
+    }
+}
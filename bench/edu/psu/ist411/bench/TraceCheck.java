@@ -0,0 +1,154 @@
+/*
+ * Copyright 2018 Group 5.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.psu.ist411.bench;
+
+import edu.psu.ist411.InMemoryUserRepository;
+import edu.psu.ist411.MockFindUserByIdTask;
+import edu.psu.ist411.MockSlowUserRepository;
+import edu.psu.ist411.MockUser;
+import edu.psu.ist411.framework.domain_layer.UseCase;
+import edu.psu.ist411.framework.domain_layer.UseCaseCache;
+import edu.psu.ist411.framework.metrics.TraceContext;
+import edu.psu.ist411.framework.ui_layer.AbstractSchedulerPresenter;
+import edu.psu.ist411.framework.ui_layer.IView;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Checks that a sampled {@link TraceContext} follows a user lookup from
+ * the presenter, to a pool worker, to the thread a slow repository calls
+ * back on, and into the {@link UseCase.Callback}.
+ *
+ * With every request sampled, each lookup must reach its callback with
+ * its own trace current, and that trace must have a "queued", a use case
+ * and a "repository" span, ended on the worker and the repository's
+ * thread. With none sampled, callbacks must see no trace and nothing is
+ * exported. The process exits with status 1 if any check fails.
+ *
+ * Usage: {@code TraceCheck [lookups]}
+ *
+ * @author Tyler Suehr
+ * @author Win Ton
+ * @author Steven Weber
+ * @author David Wong
+ */
+public final class TraceCheck {
+    private TraceCheck() {}
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("ist411.usecase.log", "false");
+        final int lookups = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+        final InMemoryUserRepository store = new InMemoryUserRepository();
+        for (int i = 0; i < lookups; i++) {
+            final MockUser user = new MockUser();
+            user.setId("u" + i);
+            store.save(user);
+        }
+        // Fast lookups take 1 ms on the repository's own threads.
+        final MockSlowUserRepository repo = new MockSlowUserRepository(store, 1, 1, 0);
+        final LongAdder exported = new LongAdder();
+        TraceContext.setExporter((trace, span) -> exported.increment());
+        final CheckPresenter presenter = new CheckPresenter();
+        boolean ok = true;
+
+        TraceContext.setSampleRate(1);
+        int traced = 0;
+        int complete = 0;
+        TraceContext example = null;
+        for (int i = 0; i < lookups; i++) {
+            // Memoized lookups would skip the worker and the repository.
+            UseCaseCache.shared().invalidateAll();
+            final TraceContext trace = presenter.find(repo, "u" + i);
+            if (trace == null) { continue; }
+            traced++;
+            if (hasSpans(trace.getSpans())) { complete++; }
+            example = trace;
+        }
+        ok &= check("callbacks see their trace", traced == lookups);
+        ok &= check("every hop recorded", complete == lookups);
+        if (example != null) {
+            System.out.println("  " + example);
+            for (TraceContext.Span span : example.getSpans()) {
+                System.out.println("    " + span);
+            }
+        }
+
+        TraceContext.setSampleRate(0);
+        final long before = exported.sum();
+        int leaked = 0;
+        for (int i = 0; i < lookups; i++) {
+            UseCaseCache.shared().invalidateAll();
+            if (presenter.find(repo, "u" + i) != null) { leaked++; }
+        }
+        ok &= check("unsampled has no trace", leaked == 0 && exported.sum() == before);
+
+        presenter.release();
+        if (!ok) {
+            System.out.println("FAILED");
+            System.exit(1);
+        }
+    }
+
+    /** True if the spans cover the worker and the repository's thread. */
+    private static boolean hasSpans(final List<TraceContext.Span> spans) {
+        boolean queued = false;
+        boolean ran = false;
+        boolean repository = false;
+        for (TraceContext.Span span : spans) {
+            switch (span.getName()) {
+                case "queued": queued = span.getThread().contains("-worker-"); break;
+                case "repository": repository = span.getThread().startsWith("slow-repo"); break;
+                default: ran |= span.getName().equals(MockFindUserByIdTask.class.getSimpleName());
+            }
+        }
+        return queued && ran && repository;
+    }
+
+    private static boolean check(final String name, final boolean passed) {
+        System.out.printf("  %-28s %s%n", name, passed ? "ok" : "FAILED");
+        return passed;
+    }
+
+    /** Schedules lookups on the default channel like a real presenter. */
+    private static final class CheckPresenter extends AbstractSchedulerPresenter<IView> {
+        CheckPresenter() {
+            attach(msg -> {});
+        }
+
+        /** Looks a user up and returns the trace its callback saw. */
+        TraceContext find(final MockSlowUserRepository repo, final String id) throws Exception {
+            final CompletableFuture<TraceContext> seen = new CompletableFuture<>();
+            schedule(new MockFindUserByIdTask(repo), id, new UseCase.Callback<MockUser>() {
+                @Override
+                public void onSuccess(MockUser response) {
+                    seen.complete(TraceContext.current());
+                }
+
+                @Override
+                public void onFailure(Exception ex) {
+                    seen.completeExceptionally(ex);
+                }
+            });
+            final TraceContext trace = seen.get(5, TimeUnit.SECONDS);
+            // The use case span ends just after the callback returns.
+            Thread.sleep(5);
+            return trace;
+        }
+    }
+}
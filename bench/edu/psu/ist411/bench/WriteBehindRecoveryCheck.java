@@ -0,0 +1,227 @@
+/*
+ * Copyright 2018 Group 5.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.psu.ist411.bench;
+
+import edu.psu.ist411.MockUser;
+import edu.psu.ist411.WriteBehindUserRepository;
+import edu.psu.ist411.framework.data_layer.IRepoCallbacks;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Checks that {@link WriteBehindUserRepository} replays its log, survives
+ * a record torn by a crash, and keeps appending after it.
+ *
+ * Saves {@link #USERS} users {@link #ROUNDS} times each, enough to make
+ * the log compact, and deletes every tenth one. Then the log is reopened,
+ * half a record is appended as a crash would leave it, and the log is
+ * reopened again: the torn tail must be cut off, and a user saved after
+ * that must be found on the next reopen along with all the others.
+ *
+ * Then, on a second log, compaction is made to fail by putting a directory
+ * where its temporary file goes: writes must still succeed, and once the
+ * directory is gone compaction must be retried. Last, threads keep saving
+ * while the repository is closed: each save must either be rejected or be
+ * found on reopen. The process exits with status 1 if any of that fails.
+ *
+ * @author Tyler Suehr
+ * @author Win Ton
+ * @author Steven Weber
+ * @author David Wong
+ */
+public final class WriteBehindRecoveryCheck {
+    private static final int USERS = 200;
+    private static final int ROUNDS = 10;
+    /** Threads saving while the repository is closed. */
+    private static final int RACERS = 4;
+
+    private static boolean sFailed;
+
+    private WriteBehindRecoveryCheck() {}
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        System.setProperty("ist411.usecase.log", "false");
+        final File dir = Files.createTempDirectory("write-behind").toFile();
+        final File log = new File(dir, "users.log");
+        try {
+            try (WriteBehindUserRepository repo = new WriteBehindUserRepository(log)) {
+                saveRounds(repo);
+            }
+            final long compacted = log.length();
+            // Every record is at least 19 bytes, so this is below the uncompacted log.
+            check("log compacted", compacted < (long) USERS * ROUNDS * 19);
+
+            try (WriteBehindUserRepository repo = new WriteBehindUserRepository(log)) {
+                check("replayed", matches(repo, USERS));
+            }
+
+            // Half a save record: the op byte and a string length, no string.
+            final long whole = log.length();
+            try (FileChannel ch = FileChannel.open(log.toPath(), StandardOpenOption.APPEND)) {
+                ch.write(ByteBuffer.wrap(new byte[] { 1, 0, 8, 'u', 's' }));
+            }
+            try (WriteBehindUserRepository repo = new WriteBehindUserRepository(log)) {
+                check("torn tail cut off", log.length() == whole);
+                check("replayed past torn tail", matches(repo, USERS));
+                repo.save(user(USERS, ROUNDS - 1));
+            }
+            try (WriteBehindUserRepository repo = new WriteBehindUserRepository(log)) {
+                check("appended after recovery", matches(repo, USERS + 1));
+            }
+            log.delete();
+
+            checkCompactionFailure(log);
+            log.delete();
+            checkCloseRace(log);
+        } finally {
+            log.delete();
+            new File(log.getPath() + ".compact").delete();
+            dir.delete();
+        }
+        if (sFailed) {
+            System.out.println("FAILED");
+            System.exit(1);
+        }
+    }
+
+    /** Makes compaction fail, then succeed once the cause is gone. */
+    private static void checkCompactionFailure(final File log) throws IOException, InterruptedException {
+        final File blocker = new File(log.getPath() + ".compact");
+        blocker.mkdir();
+        final AtomicInteger reported = new AtomicInteger();
+        final Thread.UncaughtExceptionHandler previous = Thread.getDefaultUncaughtExceptionHandler();
+        Thread.setDefaultUncaughtExceptionHandler((t, ex) -> reported.incrementAndGet());
+        try (WriteBehindUserRepository repo = new WriteBehindUserRepository(log)) {
+            saveRounds(repo);
+            repo.flush();
+            final long uncompacted = log.length();
+            check("compaction failure noted", reported.get() > 0);
+            check("writes survive it", uncompacted >= (long) USERS * ROUNDS * 19);
+
+            blocker.delete();
+            saveRounds(repo);
+            repo.flush();
+            check("compaction retried", log.length() < uncompacted);
+        } finally {
+            Thread.setDefaultUncaughtExceptionHandler(previous);
+            blocker.delete();
+        }
+        try (WriteBehindUserRepository repo = new WriteBehindUserRepository(log)) {
+            check("replayed after retry", matches(repo, USERS));
+        }
+    }
+
+    /** Saves from several threads while closing; no accepted save may be lost. */
+    private static void checkCloseRace(final File log) throws IOException, InterruptedException {
+        final List<List<String>> accepted = new ArrayList<>();
+        final Thread[] racers = new Thread[RACERS];
+        try (WriteBehindUserRepository repo = new WriteBehindUserRepository(log)) {
+            for (int t = 0; t < RACERS; t++) {
+                final List<String> ids = new ArrayList<>();
+                accepted.add(ids);
+                final int racer = t;
+                racers[t] = new Thread(() -> {
+                    try {
+                        for (int i = 0; ; i++) {
+                            final MockUser user = new MockUser();
+                            user.setId("racer-" + racer + "-" + i);
+                            repo.save(user);
+                            ids.add(user.getId());
+                        }
+                    } catch (IllegalStateException ex) {
+                        // Closed; this save was rejected.
+                    }
+                });
+                racers[t].start();
+            }
+            Thread.sleep(50);
+        }
+        for (Thread racer : racers) {
+            racer.join();
+        }
+        final boolean[] ok = { true };
+        int saved = 0;
+        try (WriteBehindUserRepository repo = new WriteBehindUserRepository(log)) {
+            for (List<String> ids : accepted) {
+                saved += ids.size();
+                for (String id : ids) {
+                    repo.findById(id, new IRepoCallbacks.ISingle<MockUser>() {
+                        @Override
+                        public void onAvailable(MockUser value) {}
+
+                        @Override
+                        public void onNotAvailable(Exception ex) {
+                            ok[0] = false;
+                        }
+                    });
+                }
+            }
+        }
+        check("saves racing close kept", saved > 0 && ok[0]);
+    }
+
+    private static void saveRounds(final WriteBehindUserRepository repo) {
+        for (int round = 0; round < ROUNDS; round++) {
+            for (int i = 0; i < USERS; i++) {
+                repo.save(user(i, round));
+            }
+        }
+        for (int i = 0; i < USERS; i += 10) {
+            repo.delete(user(i, ROUNDS - 1));
+        }
+    }
+
+    /** Checks every user below {@code count} holds its last round, or is deleted. */
+    private static boolean matches(final WriteBehindUserRepository repo, final int count) {
+        final boolean[] ok = { true };
+        for (int i = 0; i < count; i++) {
+            final boolean deleted = i < USERS && i % 10 == 0;
+            final String last = "last-" + (ROUNDS - 1);
+            repo.findById("user-" + i, new IRepoCallbacks.ISingle<MockUser>() {
+                @Override
+                public void onAvailable(MockUser value) {
+                    if (deleted || !last.equals(value.getLastName())) { ok[0] = false; }
+                }
+
+                @Override
+                public void onNotAvailable(Exception ex) {
+                    if (!deleted) { ok[0] = false; }
+                }
+            });
+        }
+        return ok[0];
+    }
+
+    private static MockUser user(final int i, final int round) {
+        final MockUser user = new MockUser();
+        user.setId("user-" + i);
+        user.setFirstName(i % 2 == 0 ? null : "first-" + i);
+        user.setLastName("last-" + round);
+        return user;
+    }
+
+    private static void check(final String name, final boolean passed) {
+        System.out.printf("%-26s %s%n", name, passed ? "ok" : "FAILED");
+        if (!passed) { sFailed = true; }
+    }
+}
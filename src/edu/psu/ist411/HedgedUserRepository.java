@@ -0,0 +1,262 @@
+/*
+ * Copyright 2018 Group 5.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.psu.ist411;
+
+import edu.psu.ist411.framework.data_layer.IRepoCallbacks;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Wraps a {@link MockUserRepository} so that {@link #findById} is
+ * time-bounded and, optionally, hedged.
+ *
+ * Every lookup fails through {@link IRepoCallbacks.IError#onNotAvailable}
+ * with a {@link TimeoutException} if the delegate hasn't answered within
+ * the timeout. When hedging is on and a lookup is still outstanding after
+ * the configured latency percentile of recent lookups, a second identical
+ * request is sent and whichever answers first wins. Latencies age out:
+ * every {@link #HALF_LIFE} lookups the counts are halved, so the
+ * percentile follows the delegate when it speeds up or slows down.
+ *
+ * The caller's callback is invoked exactly once no matter how many of the
+ * timeout, the first request and the hedge race to complete.
+ *
+ * The timer thread only keeps time: hedge requests and timeout callbacks
+ * are handed to an executor, so a slow delegate or callback can't hold
+ * up the timers of other lookups. A lookup that completes removes its
+ * timers from the timer's queue, which therefore only holds the timers
+ * of lookups still outstanding.
+ *
+ * Writes and last name lookups pass straight through.
+ *
+ * @author Tyler Suehr
+ * @author Win Ton
+ * @author Steven Weber
+ * @author David Wong
+ */
+public class HedgedUserRepository implements MockUserRepository {
+    /** Fewer samples than this and we don't trust the percentile. */
+    private static final int MIN_SAMPLES = 32;
+    /** Lookups after which older latencies count half as much. */
+    private static final int HALF_LIFE = 512;
+
+    /** One timer thread shared by every instance. */
+    private static final ScheduledThreadPoolExecutor TIMER = newTimer();
+    /** Default executor for work the timer hands off, shared by every instance. */
+    private static final Executor WORKERS =
+            Executors.newCachedThreadPool(r -> {
+                final Thread t = new Thread(r, "hedged-repo-worker");
+                t.setDaemon(true);
+                return t;
+            });
+
+    /** Stores reference to the repository doing the real work. */
+    private final MockUserRepository mDelegate;
+    /** Runs hedge requests and timeout callbacks off the timer thread. */
+    private final Executor mExecutor;
+    private final long mTimeoutNanos;
+    /** Percentile after which to hedge, or 0 to never hedge. */
+    private final double mHedgePercentile;
+    /** Latency histogram, bucket {@code i} counts latencies in [2^i, 2^(i+1)) ns. */
+    private final AtomicLongArray mLatency = new AtomicLongArray(64);
+    /** Counts latencies recorded, to know when to age them. */
+    private final AtomicLong mSamples = new AtomicLong();
+
+    /** Create without hedging. */
+    public HedgedUserRepository(final MockUserRepository delegate, final long timeout, final TimeUnit unit) {
+        this(delegate, timeout, unit, 0);
+    }
+
+    /**
+     * Create with hedging.
+     * @param hedgePercentile Percentile in (0, 1), for example 0.95.
+     */
+    public HedgedUserRepository(final MockUserRepository delegate, final long timeout,
+            final TimeUnit unit, final double hedgePercentile) {
+        this(delegate, timeout, unit, hedgePercentile, WORKERS);
+    }
+
+    /**
+     * Create with hedging, on the given executor.
+     * @param hedgePercentile Percentile in (0, 1), for example 0.95.
+     * @param executor Runs hedge requests and timeout callbacks.
+     */
+    public HedgedUserRepository(final MockUserRepository delegate, final long timeout,
+            final TimeUnit unit, final double hedgePercentile, final Executor executor) {
+        if (hedgePercentile < 0 || hedgePercentile >= 1) {
+            throw new IllegalArgumentException("Percentile must be in [0, 1)!");
+        }
+        mDelegate = delegate;
+        mExecutor = executor;
+        mTimeoutNanos = unit.toNanos(timeout);
+        mHedgePercentile = hedgePercentile;
+    }
+
+    @Override
+    public void save(final MockUser user) {
+        mDelegate.save(user);
+    }
+
+    @Override
+    public void delete(final MockUser user) {
+        mDelegate.delete(user);
+    }
+
+    @Override
+    public void findById(final String userId, final IRepoCallbacks.ISingle<MockUser> callback) {
+        final Once once = new Once(callback);
+        once.timeout = TIMER.schedule(() -> handOff(() -> {
+            once.onTimeout(new TimeoutException("findById timed out: " + userId));
+        }, true), mTimeoutNanos, TimeUnit.NANOSECONDS);
+
+        final long hedgeAfter = hedgeDelayNanos();
+        if (hedgeAfter > 0 && hedgeAfter < mTimeoutNanos) {
+            once.hedge = TIMER.schedule(() -> {
+                if (!once.done.get()) {
+                    handOff(() -> mDelegate.findById(userId, once), false);
+                }
+            }, hedgeAfter, TimeUnit.NANOSECONDS);
+        }
+        mDelegate.findById(userId, once);
+    }
+
+    /**
+     * Runs the task on the executor. If the executor refuses, a required
+     * task runs here on the timer thread instead; an optional one is dropped.
+     */
+    private void handOff(final Runnable task, final boolean required) {
+        try {
+            mExecutor.execute(task);
+        } catch (RejectedExecutionException ex) {
+            // A lost hedge only costs latency, but a lost timeout hangs the caller.
+            if (required) { task.run(); }
+        }
+    }
+
+    @Override
+    public void findByLastName(final String lastName, final IRepoCallbacks.IList<MockUser> callback) {
+        mDelegate.findByLastName(lastName, callback);
+    }
+
+    @Override
+    public void findByLastNamePrefix(final String prefix, final IRepoCallbacks.IStream<MockUser> callback) {
+        mDelegate.findByLastNamePrefix(prefix, callback);
+    }
+
+    private void record(final long nanos) {
+        mLatency.incrementAndGet(64 - Long.numberOfLeadingZeros(Math.max(nanos, 1)) - 1);
+        if (mSamples.incrementAndGet() % HALF_LIFE == 0) {
+            // Each bucket is halved atomically; a concurrent record isn't lost.
+            for (int i = 0; i < mLatency.length(); i++) {
+                mLatency.getAndUpdate(i, n -> n >> 1);
+            }
+        }
+    }
+
+    /** @return Hedge delay, or 0 if hedging is off or not warmed up. */
+    private long hedgeDelayNanos() {
+        if (mHedgePercentile == 0) { return 0; }
+        long total = 0;
+        for (int i = 0; i < mLatency.length(); i++) {
+            total += mLatency.get(i);
+        }
+        if (total < MIN_SAMPLES) { return 0; }
+        final long rank = (long) Math.ceil(total * mHedgePercentile);
+        long seen = 0;
+        for (int i = 0; i < mLatency.length(); i++) {
+            seen += mLatency.get(i);
+            if (seen >= rank) {
+                return 1L << (i + 1);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Creates the timer. Cancelled timers are removed right away, or every
+     * lookup would leave its timeout queued until it expired.
+     * @return {@link ScheduledThreadPoolExecutor}
+     */
+    private static ScheduledThreadPoolExecutor newTimer() {
+        final ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, r -> {
+            final Thread t = new Thread(r, "hedged-repo-timer");
+            t.setDaemon(true);
+            return t;
+        });
+        timer.setRemoveOnCancelPolicy(true);
+        return timer;
+    }
+
+    /**
+     * Callback shared by the original request, the hedge and the timeout.
+     * Only the first to arrive reaches the caller.
+     */
+    private final class Once implements IRepoCallbacks.ISingle<MockUser> {
+        final AtomicBoolean done = new AtomicBoolean();
+        final IRepoCallbacks.ISingle<MockUser> callback;
+        final long start = System.nanoTime();
+        volatile ScheduledFuture<?> timeout;
+        volatile ScheduledFuture<?> hedge;
+
+        Once(final IRepoCallbacks.ISingle<MockUser> callback) {
+            this.callback = callback;
+        }
+
+        @Override
+        public void onAvailable(MockUser value) {
+            if (finish()) {
+                record(System.nanoTime() - start);
+                callback.onAvailable(value);
+            }
+        }
+
+        @Override
+        public void onNotAvailable(Exception ex) {
+            if (finish()) {
+                record(System.nanoTime() - start);
+                callback.onNotAvailable(ex);
+            }
+        }
+
+        void onTimeout(final TimeoutException ex) {
+            if (finish()) {
+                // It took at least the timeout; leaving it out would skew the percentile low.
+                record(mTimeoutNanos);
+                callback.onNotAvailable(ex);
+            }
+        }
+
+        private boolean finish() {
+            if (!done.compareAndSet(false, true)) { return false; }
+            cancel(timeout);
+            cancel(hedge);
+            return true;
+        }
+
+        private void cancel(final ScheduledFuture<?> f) {
+            if (f != null) { f.cancel(false); }
+        }
+    }
+}
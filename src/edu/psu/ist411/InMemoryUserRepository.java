@@ -0,0 +1,275 @@
+/*
+ * Copyright 2018 Group 5.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.psu.ist411;
+
+import edu.psu.ist411.framework.data_layer.IRepoCallbacks;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Thread-safe in-memory implementation of {@link MockUserRepository}.
+ *
+ * Users are held in a concurrent primary index on ID and a sorted secondary
+ * index on last name, which serves both exact and prefix lookups. Writers
+ * update both indexes under one write lock, so a reader never sees a user
+ * in one index but not the other. Lookups by ID don't lock at all.
+ *
+ * Users are copied on the way in and out because {@link MockUser} is
+ * mutable.
+ *
+ * Saving or deleting a user reports the keys it may have changed to an
+ * {@link IRepoCallbacks.IInvalidationListener}, e.g. one that drops
+ * memoized use case results.
+ *
+ * @author Tyler Suehr
+ * @author Win Ton
+ * @author Steven Weber
+ * @author David Wong
+ */
+public class InMemoryUserRepository implements MockUserRepository {
+    /** Number of users delivered per chunk when streaming. */
+    private static final int CHUNK_SIZE = 64;
+
+    /** Primary index, user ID to user. */
+    private final Map<String, MockUser> mById = new ConcurrentHashMap<>();
+    /** Secondary index, last name to user IDs. */
+    private final ConcurrentSkipListMap<String, Set<String>> mByLastName = new ConcurrentSkipListMap<>();
+    /** Guards changes that touch both indexes. */
+    private final ReadWriteLock mLock = new ReentrantReadWriteLock();
+    private final IRepoCallbacks.IInvalidationListener mInvalidation;
+
+    public InMemoryUserRepository() {
+        this(IRepoCallbacks.IInvalidationListener.NONE);
+    }
+
+    /**
+     * @param invalidation Told the ID and last names of every user saved
+     *                     or deleted.
+     */
+    public InMemoryUserRepository(final IRepoCallbacks.IInvalidationListener invalidation) {
+        mInvalidation = Objects.requireNonNull(invalidation);
+    }
+
+    @Override
+    public void save(final MockUser user) {
+        final MockUser copy = copy(user);
+        final MockUser old;
+        mLock.writeLock().lock();
+        try {
+            old = mById.put(copy.getId(), copy);
+            if (old != null) {
+                unindex(old);
+            }
+            index(copy);
+        } finally {
+            mLock.writeLock().unlock();
+        }
+        invalidate(copy, old);
+    }
+
+    @Override
+    public void delete(final MockUser user) {
+        final MockUser old;
+        mLock.writeLock().lock();
+        try {
+            old = mById.remove(user.getId());
+            if (old != null) {
+                unindex(old);
+            }
+        } finally {
+            mLock.writeLock().unlock();
+        }
+        invalidate(user, old);
+    }
+
+    @Override
+    public void findById(final String userId, final IRepoCallbacks.ISingle<MockUser> callback) {
+        final MockUser found = mById.get(userId);
+        if (found == null) {
+            callback.onNotAvailable(new NoSuchElementException("No user " + userId));
+        } else {
+            callback.onAvailable(copy(found));
+        }
+    }
+
+    @Override
+    public void findByLastName(final String lastName, final IRepoCallbacks.IList<MockUser> callback) {
+        final List<MockUser> found = new ArrayList<>();
+        mLock.readLock().lock();
+        try {
+            final Set<String> ids = mByLastName.get(lastName);
+            if (ids != null) {
+                for (String id : ids) {
+                    found.add(copy(mById.get(id)));
+                }
+            }
+        } finally {
+            mLock.readLock().unlock();
+        }
+        callback.onAvailable(found);
+    }
+
+    @Override
+    public void findByLastNamePrefix(final String prefix, final IRepoCallbacks.IStream<MockUser> callback) {
+        // Every key starting with the prefix sorts below prefix + MAX_VALUE.
+        final NavigableMap<String, Set<String>> range =
+                mByLastName.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+        new PrefixSubscription(range.values().iterator(), callback).start();
+    }
+
+    /**
+     * Reports the keys a lookup of the changed user may have used: its ID
+     * and its old and new last name. Done after the write, so a memoized
+     * use case that read the old user before it is never cached.
+     */
+    private void invalidate(final MockUser user, final MockUser old) {
+        mInvalidation.invalidate(user.getId());
+        mInvalidation.invalidate(user.getLastName());
+        if (old != null && !Objects.equals(old.getLastName(), user.getLastName())) {
+            mInvalidation.invalidate(old.getLastName());
+        }
+    }
+
+    /**
+     * Visits every user currently stored.
+     * @param action Action given a copy of each user.
+     */
+    public void forEach(final Consumer<MockUser> action) {
+        mById.values().forEach(u -> action.accept(copy(u)));
+    }
+
+    /**
+     * Gets the number of users currently stored.
+     * @return Number of users.
+     */
+    public int size() {
+        return mById.size();
+    }
+
+    private void index(final MockUser user) {
+        if (user.getLastName() != null) {
+            mByLastName.computeIfAbsent(user.getLastName(),
+                    k -> ConcurrentHashMap.newKeySet()).add(user.getId());
+        }
+    }
+
+    private void unindex(final MockUser user) {
+        if (user.getLastName() != null) {
+            final Set<String> ids = mByLastName.get(user.getLastName());
+            if (ids != null) {
+                ids.remove(user.getId());
+                if (ids.isEmpty()) {
+                    mByLastName.remove(user.getLastName());
+                }
+            }
+        }
+    }
+
+    static MockUser copy(final MockUser user) {
+        final MockUser c = new MockUser();
+        c.setId(user.getId());
+        c.setFirstName(user.getFirstName());
+        c.setLastName(user.getLastName());
+        return c;
+    }
+
+    /**
+     * Walks the secondary index lazily, one chunk per unit of demand.
+     * The walk is weakly consistent: each chunk is read under the read
+     * lock, but writes may land between chunks.
+     */
+    private final class PrefixSubscription implements IRepoCallbacks.ISubscription {
+        private final Iterator<Set<String>> mIds;
+        private final IRepoCallbacks.IStream<MockUser> mCallback;
+        private Iterator<String> mCurrent = Collections.emptyIterator();
+        private long mDemand;
+        private boolean mEmitting;
+        private volatile boolean mDone;
+
+        PrefixSubscription(final Iterator<Set<String>> ids, final IRepoCallbacks.IStream<MockUser> callback) {
+            mIds = ids;
+            mCallback = callback;
+        }
+
+        void start() {
+            mCallback.onSubscribe(this);
+        }
+
+        @Override
+        public synchronized void request(final int chunks) {
+            if (chunks <= 0 || mDone) { return; }
+            mDemand += chunks;
+
+            // The consumer usually requests more from inside onNext, so
+            // only the outermost call runs the loop.
+            if (mEmitting) { return; }
+            mEmitting = true;
+            try {
+                while (mDemand > 0 && !mDone) {
+                    final List<MockUser> chunk = nextChunk();
+                    if (chunk.isEmpty()) {
+                        mDone = true;
+                        mCallback.onComplete();
+                        return;
+                    }
+                    mDemand--;
+                    mCallback.onNext(chunk);
+                }
+            } finally {
+                mEmitting = false;
+            }
+        }
+
+        @Override
+        public void cancel() {
+            mDone = true;
+        }
+
+        private List<MockUser> nextChunk() {
+            final List<MockUser> chunk = new ArrayList<>(CHUNK_SIZE);
+            mLock.readLock().lock();
+            try {
+                while (chunk.size() < CHUNK_SIZE) {
+                    if (!mCurrent.hasNext()) {
+                        if (!mIds.hasNext()) { break; }
+                        mCurrent = mIds.next().iterator();
+                        continue;
+                    }
+                    final MockUser user = mById.get(mCurrent.next());
+                    if (user != null) {
+                        chunk.add(copy(user));
+                    }
+                }
+            } finally {
+                mLock.readLock().unlock();
+            }
+            return chunk;
+        }
+    }
+}
@@ -0,0 +1,285 @@
+/*
+ * Copyright 2018 Group 5.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.psu.ist411;
+
+import edu.psu.ist411.framework.domain_layer.AbstractChannelManager;
+import edu.psu.ist411.framework.domain_layer.ChannelManagerFactory;
+import edu.psu.ist411.framework.domain_layer.IChannel;
+import edu.psu.ist411.framework.metrics.Histogram;
+import edu.psu.ist411.framework.metrics.MetricsRegistry;
+import edu.psu.ist411.framework.ui_layer.AbstractSchedulerPresenter;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Stress driver for the framework, run via {@code Main stress [options]}.
+ *
+ * Creates N presenters through {@link MockIoC} and M worker threads. Each
+ * worker owns one channel and repeatedly picks an operation by weight:
+ * (1) relocate - moves its channel to another presenter's manager.
+ * (2) schedule - loads a mock user on a random presenter.
+ * (3) add - adds its channel to a random presenter's manager.
+ * (4) remove - removes its channel from whichever manager holds it.
+ *
+ * The calling thread checks for deadlocked threads while it runs. When it's
+ * done it prints per-operation throughput and latency, completed and
+ * rejected use cases, deadlocks and thread counts. The process exits with
+ * status 2 if a deadlock was found so scripts can fail a release on it.
+ *
+ * Options (all optional):
+ *   --presenters=4            Number of presenters.
+ *   --threads=8               Number of worker threads, at most 127.
+ *   --mix=relocate:1,schedule:8,add:1,remove:1
+ *   --manager=good            good or bad.
+ *   --duration=5000           Run time in milliseconds.
+ *   --users=1000              Users seeded into the repository.
+ *
+ * @author Tyler Suehr
+ * @author Win Ton
+ * @author Steven Weber
+ * @author David Wong
+ */
+public final class LoadGenerator {
+    private static final String[] OPS = {"relocate", "schedule", "add", "remove"};
+    private static final int RELOCATE = 0;
+    private static final int SCHEDULE = 1;
+    private static final int ADD = 2;
+
+    private final int mPresenters;
+    private final int mThreads;
+    private final int[] mWeights = new int[OPS.length];
+    private final Supplier<AbstractChannelManager> mManager;
+    private final String mManagerName;
+    private final long mDurationMillis;
+    private final int mUsers;
+
+    private final Histogram[] mLatency = new Histogram[OPS.length];
+    private final LongAdder mCompleted = new LongAdder();
+    private final LongAdder mFailed = new LongAdder();
+    private final LongAdder mRejected = new LongAdder();
+    private final LongAdder mErrors = new LongAdder();
+    private volatile boolean mRunning = true;
+
+    LoadGenerator(final String[] args) {
+        final Map<String, String> opts = new LinkedHashMap<>();
+        opts.put("presenters", "4");
+        opts.put("threads", "8");
+        opts.put("mix", "relocate:1,schedule:8,add:1,remove:1");
+        opts.put("manager", "good");
+        opts.put("duration", "5000");
+        opts.put("users", "1000");
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --key=value but got " + arg);
+            }
+            final String key = arg.substring(2, arg.indexOf('='));
+            if (!opts.containsKey(key)) {
+                throw new IllegalArgumentException("Unknown option: " + key);
+            }
+            opts.put(key, arg.substring(arg.indexOf('=') + 1));
+        }
+
+        mPresenters = Integer.parseInt(opts.get("presenters"));
+        mThreads = Integer.parseInt(opts.get("threads"));
+        if (mThreads < 1 || mThreads > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("Threads must be 1 to 127!");
+        }
+        mDurationMillis = Long.parseLong(opts.get("duration"));
+        mUsers = Integer.parseInt(opts.get("users"));
+        for (String part : opts.get("mix").split(",")) {
+            final String[] kv = part.split(":");
+            int op = -1;
+            for (int i = 0; i < OPS.length; i++) {
+                if (OPS[i].equals(kv[0].trim())) { op = i; }
+            }
+            if (op < 0) {
+                throw new IllegalArgumentException("Unknown operation: " + kv[0]);
+            }
+            mWeights[op] = Integer.parseInt(kv[1].trim());
+        }
+        mManagerName = opts.get("manager");
+        switch (mManagerName) {
+            case "good": mManager = ChannelManagerFactory::newGoodThreadSafe; break;
+            case "bad": mManager = ChannelManagerFactory::newBadThreadSafe; break;
+            default: throw new IllegalArgumentException("Unknown manager: " + mManagerName);
+        }
+        for (int i = 0; i < OPS.length; i++) {
+            mLatency[i] = new Histogram();
+        }
+    }
+
+    /**
+     * Runs the load and prints the results.
+     * @return true if a deadlock was detected.
+     */
+    boolean run() throws InterruptedException {
+        final ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+        final int threadsBefore = mx.getThreadCount();
+
+        for (int i = 0; i < mUsers; i++) {
+            final MockUser user = new MockUser();
+            user.setId("u" + i);
+            user.setLastName("Last" + i);
+            MockIoC.userRepository().save(user);
+        }
+
+        final AbstractSchedulerPresenter<?>[] presenters = new AbstractSchedulerPresenter<?>[mPresenters];
+        for (int i = 0; i < mPresenters; i++) {
+            presenters[i] = MockIoC.mockPresenter();
+            presenters[i].setChannelManager(mManager.get());
+            ((MockContract.IMockPresenter) presenters[i]).attach(new CountingView());
+            MetricsRegistry.register("presenter-" + i, presenters[i].getChannelManager());
+        }
+
+        // Use cases log every completion; keep the cost but drop the noise.
+        final PrintStream out = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {}
+        }));
+
+        final Thread[] workers = new Thread[mThreads];
+        for (int t = 0; t < mThreads; t++) {
+            final IChannel own = MockIoC.channel((byte) (t + 1));
+            workers[t] = new Thread(() -> work(presenters, own), "load-" + t);
+            workers[t].setDaemon(true);
+        }
+        final long start = System.nanoTime();
+        for (Thread w : workers) {
+            w.start();
+        }
+
+        long[] deadlocked = null;
+        final long end = start + TimeUnit.MILLISECONDS.toNanos(mDurationMillis);
+        while (System.nanoTime() < end) {
+            Thread.sleep(Math.min(250, Math.max(1, TimeUnit.NANOSECONDS.toMillis(end - System.nanoTime()))));
+            deadlocked = mx.findDeadlockedThreads();
+            if (deadlocked != null) { break; }
+        }
+        mRunning = false;
+        final long elapsed = System.nanoTime() - start;
+        final int peakThreads = mx.getPeakThreadCount();
+        final int liveThreads = mx.getThreadCount();
+        if (deadlocked == null) {
+            for (Thread w : workers) {
+                w.join(1000);
+            }
+        }
+        System.setOut(out);
+
+        final double seconds = elapsed / 1e9;
+        out.printf("Ran %.2fs with %d presenters, %d threads, manager=%s%n",
+                seconds, mPresenters, mThreads, mManagerName);
+        for (int i = 0; i < OPS.length; i++) {
+            if (mWeights[i] == 0) { continue; }
+            out.printf("  %-9s %,12.0f ops/s  %s%n", OPS[i], mLatency[i].count() / seconds, mLatency[i].summary());
+        }
+        out.printf("  use cases: completed=%,d failed=%,d rejected=%,d%n",
+                mCompleted.sum(), mFailed.sum(), mRejected.sum());
+        out.printf("  errors: %,d%n", mErrors.sum());
+        out.print(MetricsRegistry.dump());
+        out.printf("  threads: before=%d live=%d peak=%d%n", threadsBefore, liveThreads, peakThreads);
+        if (deadlocked != null) {
+            out.printf("  DEADLOCK detected between %d threads:%n", deadlocked.length);
+            for (ThreadInfo info : mx.getThreadInfo(deadlocked)) {
+                out.printf("    %s waiting on %s held by %s%n",
+                        info.getThreadName(), info.getLockName(), info.getLockOwnerName());
+            }
+        } else {
+            out.println("  deadlocks: none");
+        }
+        return deadlocked != null;
+    }
+
+    private void work(final AbstractSchedulerPresenter<?>[] presenters, final IChannel own) {
+        final ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        int total = 0;
+        for (int w : mWeights) {
+            total += w;
+        }
+        // Index of the presenter holding our channel, or -1.
+        int holder = -1;
+        while (mRunning) {
+            int pick = rnd.nextInt(total);
+            int op = 0;
+            while (pick >= mWeights[op]) {
+                pick -= mWeights[op++];
+            }
+
+            final long t0 = System.nanoTime();
+            try {
+                switch (op) {
+                    case RELOCATE:
+                        if (holder < 0) {
+                            holder = rnd.nextInt(presenters.length);
+                            presenters[holder].getChannelManager().add(own);
+                        }
+                        final int to = rnd.nextInt(presenters.length);
+                        presenters[holder].getChannelManager().relocate(
+                                presenters[to].getChannelManager(), own);
+                        holder = to;
+                        break;
+                    case SCHEDULE:
+                        final MockContract.IMockPresenter p = (MockContract.IMockPresenter)
+                                presenters[rnd.nextInt(presenters.length)];
+                        p.loadMockUser("u" + rnd.nextInt(Math.max(mUsers, 1)));
+                        break;
+                    case ADD:
+                        if (holder < 0) {
+                            holder = rnd.nextInt(presenters.length);
+                            presenters[holder].getChannelManager().add(own);
+                        }
+                        break;
+                    default: // remove
+                        if (holder >= 0) {
+                            presenters[holder].getChannelManager().remove(own);
+                            holder = -1;
+                        }
+                        break;
+                }
+            } catch (RejectedExecutionException ex) {
+                mRejected.increment();
+            } catch (RuntimeException ex) {
+                mErrors.increment();
+            }
+            mLatency[op].record(System.nanoTime() - t0);
+        }
+    }
+
+    /** View that only counts what it's shown. */
+    private final class CountingView implements MockContract.IMockView {
+        @Override
+        public void onMockUserReady(MockUser user) {
+            mCompleted.increment();
+        }
+
+        @Override
+        public void onShowMsg(String msg) {
+            mFailed.increment();
+        }
+    }
+}
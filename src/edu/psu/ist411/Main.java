@@ -19,6 +19,7 @@ package edu.psu.ist411;
 import edu.psu.ist411.framework.domain_layer.IChannel;
 import edu.psu.ist411.framework.domain_layer.ChannelManagerFactory;
 import edu.psu.ist411.framework.ui_layer.AbstractSchedulerPresenter;
+import java.util.Arrays;
 
 /**
  * Demonstrates a deadlock.
@@ -57,9 +58,20 @@ public class Main {
      *     will have already been acquired by the 2nd channel manager that is
      *     waiting for the lock acquired by the 1st presenter.
      *
+     * Passing {@code stress} as the first argument runs the
+     * {@link LoadGenerator} instead, with the remaining arguments as its
+     * options.
+     *
      * @param args
      */
-    public static void main(String[] args) {
+    public static void main(String[] args) throws InterruptedException {
+        if (args.length > 0 && "stress".equals(args[0])) {
+            final LoadGenerator load = new LoadGenerator(
+                    Arrays.copyOfRange(args, 1, args.length));
+            // Exit explicitly, deadlocked and pool threads would keep us alive.
+            System.exit(load.run() ? 2 : 0);
+        }
+
         // Create the 1st presenter we'll use to manipulate channels...
         final AbstractSchedulerPresenter p1 = MockIoC.mockPresenter();
         p1.setChannelManager(ChannelManagerFactory.newBadThreadSafe());
@@ -18,6 +18,7 @@ package edu.psu.ist411;
 
 import edu.psu.ist411.framework.ui_layer.IPresenter;
 import edu.psu.ist411.framework.ui_layer.IView;
+import java.util.List;
 
 /**
  * Demonstration of mock contract for MVP architecture.
@@ -30,6 +31,7 @@ import edu.psu.ist411.framework.ui_layer.IView;
 public interface MockContract {
     interface IMockPresenter extends IPresenter<IMockView> {
         void loadMockUser(String userId);
+        void loadMockUsers(List<String> userIds);
     }
 
     interface IMockView extends IView {
@@ -26,25 +26,36 @@ import edu.psu.ist411.framework.domain_layer.UseCase;
  * <i>Request: </i> Unique ID of the user.
  * <i>Response: </i> Business model of the user.
  *
+ * Memoized: repeat lookups of the same ID are served from
+ * {@link edu.psu.ist411.framework.domain_layer.UseCaseCache} until the
+ * repository saves or deletes that user. {@link MockUser} is mutable, so
+ * each caller gets its own copy.
+ *
  * @author Tyler Suehr
  * @author Win Ton
  * @author Steven Weber
  * @author David Wong
  */
-public class MockFindUserByIdTask extends UseCase<String, MockUser> {
+public class MockFindUserByIdTask extends UseCase<String, MockUser> implements UseCase.Memoizable<MockUser> {
     private final MockUserRepository mUserRepo;
 
     public MockFindUserByIdTask(final MockUserRepository userRepo) {
         mUserRepo = userRepo;
     }
 
+    @Override
+    public MockUser copyResponse(final MockUser response) {
+        return InMemoryUserRepository.copy(response);
+    }
+
     @Override
     protected void onExecute() {
         // Get the unique user ID from use case request.
         final String userId = getRequest();
 
         // Lookup the user's ID in the repository.
-        mUserRepo.findById(userId, new IRepoCallbacks.ISingle<MockUser>() {
+        // Traced, as the repository may call back on its own thread.
+        mUserRepo.findById(userId, IRepoCallbacks.traced(new IRepoCallbacks.ISingle<MockUser>() {
             @Override
             public void onAvailable(MockUser value) {
                 // Invoke successful callback.
@@ -56,6 +67,6 @@ public class MockFindUserByIdTask extends UseCase<String, MockUser> {
                 // Invoke failure callback.
                 fail(ex);
             }
-        });
+        }));
     }
 }
\ No newline at end of file
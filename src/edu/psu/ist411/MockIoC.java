@@ -19,6 +19,7 @@ package edu.psu.ist411;
 import edu.psu.ist411.framework.domain_layer.ChannelImpl;
 import edu.psu.ist411.framework.domain_layer.IChannel;
 import edu.psu.ist411.framework.domain_layer.IUseCaseScheduler;
+import edu.psu.ist411.framework.domain_layer.UseCaseCache;
 import edu.psu.ist411.framework.domain_layer.UseCaseSchedulerImpl;
 import edu.psu.ist411.framework.ui_layer.AbstractSchedulerPresenter;
 
@@ -33,21 +34,32 @@ import edu.psu.ist411.framework.ui_layer.AbstractSchedulerPresenter;
  * @author David Wong
  */
 public final class MockIoC {
+    /**
+     * Shared repository so every presenter sees the same users. Its
+     * changes drop the memoized lookups they affect.
+     */
+    private static final MockUserRepository USER_REPO =
+            new InMemoryUserRepository(UseCaseCache.shared()::invalidate);
+
     private MockIoC() {}
 
     static AbstractSchedulerPresenter mockPresenter() {
-        return new MockPresenterImpl(mockFindUserByIdTask());
+        return new MockPresenterImpl(mockFindUserByIdTask(), MockIoC::mockFindUserByIdTask);
     }
 
     static MockFindUserByIdTask mockFindUserByIdTask() {
-        return new MockFindUserByIdTask(null);
+        return new MockFindUserByIdTask(userRepository());
+    }
+
+    static MockUserRepository userRepository() {
+        return USER_REPO;
     }
 
     static IChannel channel(byte channelId) {
-        return new ChannelImpl(channelId, useCaseScheduler());
+        return new ChannelImpl(channelId, useCaseScheduler(channelId));
     }
 
-    static IUseCaseScheduler useCaseScheduler() {
-        return new UseCaseSchedulerImpl();
+    static IUseCaseScheduler useCaseScheduler(byte channelId) {
+        return new UseCaseSchedulerImpl(channelId);
     }
 }
\ No newline at end of file
@@ -16,8 +16,11 @@
 
 package edu.psu.ist411;
 
+import edu.psu.ist411.framework.domain_layer.BatchResult;
 import edu.psu.ist411.framework.domain_layer.UseCase;
 import edu.psu.ist411.framework.ui_layer.AbstractSchedulerPresenter;
+import java.util.List;
+import java.util.function.Supplier;
 
 /**
  * Demonstration of mock presenter using MVP architecture.
@@ -31,10 +34,12 @@ public class MockPresenterImpl
         extends AbstractSchedulerPresenter<MockContract.IMockView>
         implements MockContract.IMockPresenter {
     private final MockFindUserByIdTask mockFindUserByIdTask;
+    private final Supplier<MockFindUserByIdTask> mockFindUserByIdTasks;
 
     /** Dependency inject the business logic tasks. */
-    public MockPresenterImpl(final MockFindUserByIdTask task1) {
+    public MockPresenterImpl(final MockFindUserByIdTask task1, final Supplier<MockFindUserByIdTask> tasks1) {
         this.mockFindUserByIdTask = task1;
+        this.mockFindUserByIdTasks = tasks1;
     }
 
     @Override
@@ -54,4 +59,24 @@ public class MockPresenterImpl
             }
         });
     }
-}
\ No newline at end of file
+
+    @Override
+    public void loadMockUsers(List<String> userIds) {
+        // Schedule the whole list at once instead of once per user.
+        scheduleAll(mockFindUserByIdTasks, userIds, new UseCase.BatchCallback<String, MockUser>() {
+            @Override
+            public void onItem(String userId, MockUser foundUser) {
+                // Update the view as each user is found
+                getView().onMockUserReady(foundUser);
+            }
+
+            @Override
+            public void onComplete(BatchResult<String, MockUser> result) {
+                if (result.hasFailures()) {
+                    getView().onShowMsg(result.getFailureCount() + " of "
+                            + result.getRequests().size() + " users could not be loaded");
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2018 Group 5.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.psu.ist411;
+
+import edu.psu.ist411.framework.data_layer.IRepoCallbacks;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Demonstration of a slow data source with a long latency tail.
+ *
+ * Lookups by ID are answered asynchronously after a delay: usually
+ * {@code fastMillis}, but with probability {@code slowChance} they take
+ * {@code slowMillis} instead. Everything else is answered by the wrapped
+ * repository immediately.
+ *
+ * @author Tyler Suehr
+ * @author Win Ton
+ * @author Steven Weber
+ * @author David Wong
+ */
+public class MockSlowUserRepository implements MockUserRepository {
+    private static final ScheduledExecutorService DELAY =
+            Executors.newScheduledThreadPool(2, r -> {
+                final Thread t = new Thread(r, "slow-repo");
+                t.setDaemon(true);
+                return t;
+            });
+
+    private final MockUserRepository mDelegate;
+    private final long mFastMillis;
+    private final long mSlowMillis;
+    private final double mSlowChance;
+
+    public MockSlowUserRepository(final MockUserRepository delegate, final long fastMillis,
+            final long slowMillis, final double slowChance) {
+        mDelegate = delegate;
+        mFastMillis = fastMillis;
+        mSlowMillis = slowMillis;
+        mSlowChance = slowChance;
+    }
+
+    @Override
+    public void save(final MockUser user) {
+        mDelegate.save(user);
+    }
+
+    @Override
+    public void delete(final MockUser user) {
+        mDelegate.delete(user);
+    }
+
+    @Override
+    public void findById(final String userId, final IRepoCallbacks.ISingle<MockUser> callback) {
+        final long delay = ThreadLocalRandom.current().nextDouble() < mSlowChance
+                ? mSlowMillis : mFastMillis;
+        DELAY.schedule(() -> mDelegate.findById(userId, callback), delay, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void findByLastName(final String lastName, final IRepoCallbacks.IList<MockUser> callback) {
+        mDelegate.findByLastName(lastName, callback);
+    }
+
+    @Override
+    public void findByLastNamePrefix(final String prefix, final IRepoCallbacks.IStream<MockUser> callback) {
+        mDelegate.findByLastNamePrefix(prefix, callback);
+    }
+}
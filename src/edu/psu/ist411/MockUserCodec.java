@@ -0,0 +1,299 @@
+/*
+ * Copyright 2018 Group 5.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.psu.ist411;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Compact binary codec for {@link MockUser}.
+ *
+ * Layout of one encoded user:
+ * (1) Version byte, currently {@link #VERSION}.
+ * (2) ID, first name and last name, in that order. Each field is an int
+ *     byte length followed by that many bytes of UTF-8, or a length of -1
+ *     for null.
+ *
+ * Strings are encoded straight into the target buffer and decoded straight
+ * out of it, so no intermediate byte arrays are created. {@link Reader}
+ * reads single fields in place without building a {@link MockUser}.
+ * Like {@link String#getBytes(java.nio.charset.Charset)}, unpaired
+ * surrogates are encoded as '?', and malformed input decodes to U+FFFD.
+ *
+ * @author Tyler Suehr
+ * @author Win Ton
+ * @author Steven Weber
+ * @author David Wong
+ */
+public final class MockUserCodec {
+    /** Version written in the header of every encoded user. */
+    public static final byte VERSION = 1;
+    /** Length written for a null field. */
+    private static final int NULL = -1;
+
+    private MockUserCodec() {}
+
+    /**
+     * Gets the number of bytes needed to encode the given user.
+     * @param user {@link MockUser}.
+     * @return Encoded size in bytes.
+     */
+    public static int sizeOf(final MockUser user) {
+        return 1 + sizeOf(user.getId()) + sizeOf(user.getFirstName()) + sizeOf(user.getLastName());
+    }
+
+    /**
+     * Encodes the user at the buffer's position and advances it.
+     *
+     * @param user {@link MockUser} to encode.
+     * @param dst Buffer to write into.
+     *
+     * @throws BufferOverflowException if the buffer is too small.
+     */
+    public static void encode(final MockUser user, final ByteBuffer dst) {
+        if (dst.remaining() < sizeOf(user)) {
+            throw new BufferOverflowException();
+        }
+        dst.put(VERSION);
+        putString(dst, user.getId());
+        putString(dst, user.getFirstName());
+        putString(dst, user.getLastName());
+    }
+
+    /**
+     * Decodes a user at the buffer's position and advances it.
+     *
+     * @param src Buffer to read from.
+     * @return Decoded {@link MockUser}.
+     *
+     * @throws IllegalArgumentException if the version is not supported.
+     * @throws BufferUnderflowException if the buffer is truncated.
+     */
+    public static MockUser decode(final ByteBuffer src) {
+        checkVersion(src.get());
+        final MockUser user = new MockUser();
+        user.setId(getString(src));
+        user.setFirstName(getString(src));
+        user.setLastName(getString(src));
+        return user;
+    }
+
+    private static void checkVersion(final byte version) {
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported version: " + version);
+        }
+    }
+
+    private static int sizeOf(final String s) {
+        return 4 + (s == null ? 0 : utf8Length(s));
+    }
+
+    private static int utf8Length(final String s) {
+        int len = 0;
+        for (int i = 0; i < s.length(); i++) {
+            final char c = s.charAt(i);
+            if (c < 0x80) {
+                len += 1;
+            } else if (c < 0x800) {
+                len += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length()
+                    && Character.isLowSurrogate(s.charAt(i + 1))) {
+                len += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                len += 1;
+            } else {
+                len += 3;
+            }
+        }
+        return len;
+    }
+
+    private static void putString(final ByteBuffer dst, final String s) {
+        if (s == null) {
+            dst.putInt(NULL);
+            return;
+        }
+        dst.putInt(utf8Length(s));
+        for (int i = 0; i < s.length(); i++) {
+            final char c = s.charAt(i);
+            if (c < 0x80) {
+                dst.put((byte) c);
+            } else if (c < 0x800) {
+                dst.put((byte) (0xC0 | (c >> 6)));
+                dst.put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length()
+                    && Character.isLowSurrogate(s.charAt(i + 1))) {
+                final int cp = Character.toCodePoint(c, s.charAt(++i));
+                dst.put((byte) (0xF0 | (cp >> 18)));
+                dst.put((byte) (0x80 | ((cp >> 12) & 0x3F)));
+                dst.put((byte) (0x80 | ((cp >> 6) & 0x3F)));
+                dst.put((byte) (0x80 | (cp & 0x3F)));
+            } else if (Character.isSurrogate(c)) {
+                // Unpaired surrogates have no UTF-8 form.
+                dst.put((byte) '?');
+            } else {
+                dst.put((byte) (0xE0 | (c >> 12)));
+                dst.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                dst.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+    }
+
+    private static String getString(final ByteBuffer src) {
+        final int len = src.getInt();
+        if (len == NULL) { return null; }
+        if (len < 0 || len > src.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        final String s = decodeAt(src, src.position(), len);
+        src.position(src.position() + len);
+        return s;
+    }
+
+    /**
+     * Decodes {@code len} bytes of UTF-8 at an absolute index. Like
+     * {@link String}, each malformed sequence, such as a stray continuation
+     * byte, an invalid lead byte, or a lead byte without the continuation
+     * bytes it needs, decodes to one U+FFFD.
+     */
+    private static String decodeAt(final ByteBuffer src, final int index, final int len) {
+        if (src.hasArray()) {
+            // Heap buffers decode straight from the backing array.
+            return new String(src.array(), src.arrayOffset() + index, len, StandardCharsets.UTF_8);
+        }
+        final char[] chars = new char[len];
+        int n = 0;
+        int i = index;
+        final int end = index + len;
+        while (i < end) {
+            final int b = src.get(i++) & 0xFF;
+            if (b < 0x80) {
+                chars[n++] = (char) b;
+                continue;
+            }
+            // Bytes in the character, and the range of its second byte,
+            // which rules out overlong forms and code points past U+10FFFF.
+            final int size;
+            int lo = 0x80;
+            int hi = 0xBF;
+            if (b >= 0xC2 && b <= 0xDF) {
+                size = 2;
+            } else if (b >= 0xE0 && b <= 0xEF) {
+                size = 3;
+                if (b == 0xE0) { lo = 0xA0; }
+            } else if (b >= 0xF0 && b <= 0xF4) {
+                size = 4;
+                if (b == 0xF0) { lo = 0x90; } else if (b == 0xF4) { hi = 0x8F; }
+            } else {
+                // Continuation byte without a lead, or a lead never valid.
+                chars[n++] = '\uFFFD';
+                continue;
+            }
+            int cp = b & (0xFF >> (size + 1));
+            int k = 1;
+            while (k < size && i < end) {
+                final int c = src.get(i) & 0xFF;
+                if (k == 1 ? c < lo || c > hi : (c & 0xC0) != 0x80) {
+                    break;
+                }
+                cp = (cp << 6) | (c & 0x3F);
+                i++;
+                k++;
+            }
+            if (k < size || (size == 3 && Character.isSurrogate((char) cp))) {
+                // Malformed, an encoded surrogate, or cut off by the field's
+                // length: the bytes taken so far become one U+FFFD, and the
+                // next is read afresh.
+                chars[n++] = '\uFFFD';
+            } else if (size < 4) {
+                chars[n++] = (char) cp;
+            } else {
+                chars[n++] = Character.highSurrogate(cp);
+                chars[n++] = Character.lowSurrogate(cp);
+            }
+        }
+        return new String(chars, 0, n);
+    }
+
+    /**
+     * Flyweight view of one encoded user inside a buffer.
+     *
+     * A single reader can be re-pointed at many users with
+     * {@link #wrap(ByteBuffer, int)}. Each getter decodes just its own
+     * field; the buffer's position is never changed.
+     */
+    public static final class Reader {
+        private ByteBuffer mBuffer;
+        private int mOffset;
+
+        /**
+         * Points this reader at an encoded user.
+         *
+         * @param buffer Buffer holding the user.
+         * @param offset Absolute index of the version byte.
+         * @return This reader.
+         *
+         * @throws IllegalArgumentException if the version is not supported.
+         */
+        public Reader wrap(final ByteBuffer buffer, final int offset) {
+            checkVersion(buffer.get(offset));
+            mBuffer = buffer;
+            mOffset = offset;
+            return this;
+        }
+
+        public String getId() {
+            return field(0);
+        }
+
+        public String getFirstName() {
+            return field(1);
+        }
+
+        public String getLastName() {
+            return field(2);
+        }
+
+        /**
+         * Gets the number of bytes the wrapped user occupies, which is
+         * also the distance to the next user in a packed buffer.
+         * @return Encoded size in bytes.
+         */
+        public int length() {
+            return fieldIndex(3) - mOffset;
+        }
+
+        private String field(final int n) {
+            final int at = fieldIndex(n);
+            final int len = mBuffer.getInt(at);
+            return len == NULL ? null : decodeAt(mBuffer, at + 4, len);
+        }
+
+        /** Skips over the first {@code n} fields by their lengths. */
+        private int fieldIndex(final int n) {
+            int at = mOffset + 1;
+            for (int i = 0; i < n; i++) {
+                final int len = mBuffer.getInt(at);
+                at += 4 + (len == NULL ? 0 : len);
+            }
+            return at;
+        }
+    }
+}
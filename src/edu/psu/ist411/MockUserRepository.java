@@ -30,4 +30,6 @@ public interface MockUserRepository {
     void save(MockUser user);
     void delete(MockUser user);
     void findById(String userId, IRepoCallbacks.ISingle<MockUser> callback);
+    void findByLastName(String lastName, IRepoCallbacks.IList<MockUser> callback);
+    void findByLastNamePrefix(String prefix, IRepoCallbacks.IStream<MockUser> callback);
 }
\ No newline at end of file
@@ -0,0 +1,481 @@
+/*
+ * Copyright 2018 Group 5.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.psu.ist411;
+
+import edu.psu.ist411.framework.data_layer.IRepoCallbacks;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind implementation of {@link MockUserRepository} backed by an
+ * append-only log file.
+ *
+ * Calls to {@link #save(MockUser)} and {@link #delete(MockUser)} update the
+ * in-memory state immediately and enqueue a log record. A single writer
+ * thread drains the queue and group-commits it, meaning one write and one
+ * fsync per batch instead of per call. A batch closes when it reaches
+ * {@link #MAX_BATCH} records or {@link #MAX_DELAY_MS} has passed since the
+ * first record was taken.
+ *
+ * Reads are always served from an {@link InMemoryUserRepository}, so a
+ * client sees its own writes even before they have been committed to the
+ * log.
+ *
+ * When the log grows to several times the number of live users, the writer
+ * thread compacts it by writing a snapshot to a temporary file and moving
+ * it over the old log. Constructing the repository replays the log, and
+ * cuts off a record torn by a crash so new records follow the last whole
+ * one.
+ *
+ * If writing the log fails, every waiting {@link #flush()} throws the
+ * error and the repository rejects further writes; reads keep working.
+ * A failed compaction only leaves the old log in place, and is tried
+ * again after {@link #COMPACT_MIN} more records.
+ *
+ * @author Tyler Suehr
+ * @author Win Ton
+ * @author Steven Weber
+ * @author David Wong
+ */
+public class WriteBehindUserRepository implements MockUserRepository, AutoCloseable {
+    /** Largest number of records committed with one fsync. */
+    private static final int MAX_BATCH = 256;
+    /** Longest time a record waits for its batch to fill. */
+    private static final long MAX_DELAY_MS = 5;
+    /** Log is compacted once it holds this many records per live user. */
+    private static final int COMPACT_RATIO = 4;
+    /** Log is never compacted below this number of records. */
+    private static final int COMPACT_MIN = 1024;
+
+    private static final byte OP_FLUSH = 0;
+    private static final byte OP_SAVE = 1;
+    private static final byte OP_DELETE = 2;
+    /** Last record the writer takes; it stops once that is committed. */
+    private static final byte OP_CLOSE = 3;
+
+    /** Stores the current state, including writes not yet committed. */
+    private final InMemoryUserRepository mUsers;
+    /** Stores mutations waiting to be committed. */
+    private final BlockingQueue<Record> mPending = new ArrayBlockingQueue<>(MAX_BATCH * 16);
+    /** Stores reference to the log file. */
+    private final File mLogFile;
+    /** Stores reference to the writer thread. */
+    private final Thread mWriter;
+
+    private FileChannel mLog;
+    private long mLogRecords;
+    /** Log records at which a failed compaction is tried again. */
+    private long mCompactRetryAt;
+    /** True once closing; guarded by this, like every enqueue. */
+    private boolean mClosed;
+    /** Stores why the log can't be written, once it can't. */
+    private volatile IOException mFailure;
+
+    public WriteBehindUserRepository(final File logFile) throws IOException {
+        this(logFile, IRepoCallbacks.IInvalidationListener.NONE);
+    }
+
+    /**
+     * @param logFile Log to replay and append to.
+     * @param invalidation Told the keys of every user saved or deleted,
+     *                     see {@link InMemoryUserRepository}.
+     */
+    public WriteBehindUserRepository(final File logFile,
+            final IRepoCallbacks.IInvalidationListener invalidation) throws IOException {
+        mUsers = new InMemoryUserRepository(invalidation);
+        mLogFile = logFile;
+        final long end = replay();
+        if (mLogFile.exists() && mLogFile.length() > end) {
+            // Drop the torn tail, or the next record would be appended to it.
+            try (FileChannel ch = FileChannel.open(mLogFile.toPath(), StandardOpenOption.WRITE)) {
+                ch.truncate(end);
+                ch.force(true);
+            }
+        }
+        mLog = FileChannel.open(mLogFile.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        mWriter = new Thread(this::drain, "write-behind-" + logFile.getName());
+        mWriter.setDaemon(true);
+        mWriter.start();
+    }
+
+    @Override
+    public synchronized void save(final MockUser user) {
+        checkWritable();
+        // Locked so the map and the log see mutations in the same order.
+        mUsers.save(user);
+        enqueue(new Record(OP_SAVE, InMemoryUserRepository.copy(user)));
+    }
+
+    @Override
+    public synchronized void delete(final MockUser user) {
+        checkWritable();
+        mUsers.delete(user);
+        enqueue(new Record(OP_DELETE, InMemoryUserRepository.copy(user)));
+    }
+
+    @Override
+    public void findById(final String userId, final IRepoCallbacks.ISingle<MockUser> callback) {
+        mUsers.findById(userId, callback);
+    }
+
+    @Override
+    public void findByLastName(final String lastName, final IRepoCallbacks.IList<MockUser> callback) {
+        mUsers.findByLastName(lastName, callback);
+    }
+
+    @Override
+    public void findByLastNamePrefix(final String prefix, final IRepoCallbacks.IStream<MockUser> callback) {
+        mUsers.findByLastNamePrefix(prefix, callback);
+    }
+
+    /**
+     * Blocks until every mutation made before this call has been committed.
+     * @throws InterruptedException if interrupted while waiting.
+     * @throws UncheckedIOException if they couldn't be written to the log.
+     */
+    public void flush() throws InterruptedException {
+        final Record barrier = new Record(OP_FLUSH, null);
+        synchronized (this) {
+            checkOpen();
+            enqueue(barrier);
+        }
+        synchronized (barrier) {
+            while (!barrier.done) {
+                barrier.wait();
+            }
+        }
+        if (barrier.failure != null) {
+            throw new UncheckedIOException("Log write failed", barrier.failure);
+        }
+    }
+
+    /**
+     * Stops accepting mutations, commits the pending ones and stops the
+     * writer thread. If interrupted, still waits for that and keeps the
+     * interrupt, since the log can't be closed under the writer.
+     * @throws IOException if pending mutations couldn't be committed.
+     */
+    @Override
+    public void close() throws IOException {
+        final Record last = new Record(OP_CLOSE, null);
+        boolean interrupted = false;
+        synchronized (this) {
+            if (mClosed) { return; }
+            mClosed = true;
+            // Every record enqueued before this one was, under this lock.
+            while (true) {
+                try {
+                    mPending.put(last);
+                    break;
+                } catch (InterruptedException ex) {
+                    interrupted = true;
+                }
+            }
+        }
+        while (mWriter.isAlive()) {
+            try {
+                mWriter.join();
+            } catch (InterruptedException ex) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        mLog.close();
+        if (last.failure != null) {
+            throw last.failure;
+        }
+    }
+
+    /** Rejects mutations once closed or once the log has failed. */
+    private void checkWritable() {
+        checkOpen();
+        final IOException failure = mFailure;
+        if (failure != null) {
+            throw new UncheckedIOException("Log write failed, repository is read-only", failure);
+        }
+    }
+
+    private void checkOpen() {
+        if (mClosed) {
+            throw new IllegalStateException("Repository is closed!");
+        }
+    }
+
+    /** Queues a record; callers hold this, so none can follow close's. */
+    private void enqueue(final Record record) {
+        try {
+            // Blocking here is our back-pressure when the disk falls behind.
+            mPending.put(record);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Writer thread loop, one iteration per group commit, until the
+     * record queued by {@link #close()} has been committed.
+     */
+    private void drain() {
+        final List<Record> batch = new ArrayList<>(MAX_BATCH);
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(MAX_BATCH * 64);
+        final DataOutputStream out = new DataOutputStream(bytes);
+        boolean closing = false;
+        while (!closing) {
+            try {
+                batch.add(mPending.take());
+
+                // Keep filling the batch until it's full or too old.
+                final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(MAX_DELAY_MS);
+                while (batch.size() < MAX_BATCH && batch.get(batch.size() - 1).op != OP_CLOSE) {
+                    final long left = deadline - System.nanoTime();
+                    final Record next = left > 0
+                            ? mPending.poll(left, TimeUnit.NANOSECONDS)
+                            : mPending.poll();
+                    if (next == null) { break; }
+                    batch.add(next);
+                }
+            } catch (InterruptedException ex) {
+                // Only close stops the writer; commit what was taken.
+                if (batch.isEmpty()) { continue; }
+            }
+            closing = batch.get(batch.size() - 1).op == OP_CLOSE;
+
+            // Once the log has failed, keep failing records so no one waits.
+            IOException failure = mFailure;
+            if (failure == null) {
+                try {
+                    commit(batch, bytes, out);
+                } catch (IOException ex) {
+                    failure = ex;
+                    mFailure = ex;
+                }
+            }
+            for (Record r : batch) {
+                synchronized (r) {
+                    r.failure = failure;
+                    r.done = true;
+                    r.notifyAll();
+                }
+            }
+            batch.clear();
+
+            // The batch is durable whether or not this works.
+            if (failure == null && !closing && mLogRecords >= mCompactRetryAt
+                    && mLogRecords > COMPACT_MIN && mLogRecords > (long) COMPACT_RATIO * mUsers.size()) {
+                try {
+                    compact();
+                } catch (IOException ex) {
+                    mCompactRetryAt = mLogRecords + COMPACT_MIN;
+                    final Thread thread = Thread.currentThread();
+                    thread.getUncaughtExceptionHandler().uncaughtException(thread, ex);
+                }
+            }
+        }
+    }
+
+    /** Appends the batch's mutations to the log and forces them to disk. */
+    private void commit(final List<Record> batch, final ByteArrayOutputStream bytes,
+            final DataOutputStream out) throws IOException {
+        bytes.reset();
+        for (Record r : batch) {
+            if (r.op == OP_SAVE || r.op == OP_DELETE) {
+                write(out, r);
+                mLogRecords++;
+            }
+        }
+        if (bytes.size() > 0) {
+            final ByteBuffer buf = ByteBuffer.wrap(bytes.toByteArray());
+            while (buf.hasRemaining()) {
+                mLog.write(buf);
+            }
+            mLog.force(false);
+        }
+    }
+
+    /**
+     * Rewrites the log as one save record per live user. Runs on the
+     * writer thread, so no batch can be appended while it happens. If
+     * this fails the old log is kept, unless it can't even be reopened,
+     * in which case the next commit fails.
+     */
+    private void compact() throws IOException {
+        final File tmp = new File(mLogFile.getPath() + ".compact");
+        final long records;
+        try {
+            records = writeSnapshot(tmp);
+        } catch (IOException ex) {
+            tmp.delete();
+            throw ex;
+        }
+        mLog.close();
+        try {
+            Files.move(tmp.toPath(), mLogFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            mLogRecords = records;
+        } finally {
+            // Either the new log or, if the move failed, the old one.
+            mLog = FileChannel.open(mLogFile.toPath(),
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+    }
+
+    /**
+     * Writes one save record per live user to a file.
+     * @return Number of records written.
+     */
+    private long writeSnapshot(final File tmp) throws IOException {
+        final long[] records = new long[1];
+        final IOException[] failure = new IOException[1];
+        try (FileChannel ch = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                DataOutputStream out = new DataOutputStream(Channels.newOutputStream(ch))) {
+            mUsers.forEach(user -> {
+                try {
+                    write(out, new Record(OP_SAVE, user));
+                    records[0]++;
+                } catch (IOException ex) {
+                    failure[0] = ex;
+                }
+            });
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+            out.flush();
+            ch.force(true);
+        }
+        return records[0];
+    }
+
+    /**
+     * Rebuilds the in-memory state from the log file.
+     * @return Length of the log up to the end of its last whole record.
+     */
+    private long replay() throws IOException {
+        if (!mLogFile.exists()) { return 0; }
+        final CountingInputStream counted = new CountingInputStream(
+                new BufferedInputStream(Files.newInputStream(mLogFile.toPath())));
+        long end = 0;
+        try (DataInputStream in = new DataInputStream(counted)) {
+            while (true) {
+                final byte op;
+                final MockUser user;
+                try {
+                    op = in.readByte();
+                    user = new MockUser();
+                    user.setId(in.readUTF());
+                    user.setFirstName(readNullable(in));
+                    user.setLastName(readNullable(in));
+                } catch (EOFException ex) {
+                    // A torn record at the tail was never acknowledged.
+                    break;
+                }
+                if (op == OP_SAVE) {
+                    mUsers.save(user);
+                } else if (op == OP_DELETE) {
+                    mUsers.delete(user);
+                }
+                mLogRecords++;
+                end = counted.count;
+            }
+        }
+        return end;
+    }
+
+    private static void write(final DataOutputStream out, final Record r) throws IOException {
+        out.writeByte(r.op);
+        out.writeUTF(r.user.getId());
+        writeNullable(out, r.user.getFirstName());
+        writeNullable(out, r.user.getLastName());
+    }
+
+    private static void writeNullable(final DataOutputStream out, final String s) throws IOException {
+        out.writeBoolean(s != null);
+        if (s != null) { out.writeUTF(s); }
+    }
+
+    private static String readNullable(final DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    /** Counts the bytes read through it. */
+    private static final class CountingInputStream extends FilterInputStream {
+        long count;
+
+        CountingInputStream(final InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int b = super.read();
+            if (b >= 0) { count++; }
+            return b;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            final int n = super.read(b, off, len);
+            if (n > 0) { count += n; }
+            return n;
+        }
+
+        @Override
+        public long skip(final long n) throws IOException {
+            final long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+
+    /** Single mutation waiting in {@link #mPending}. */
+    private static final class Record {
+        final byte op;
+        final MockUser user;
+        /** True once written, or once writing it failed. */
+        boolean done;
+        /** Why it couldn't be written, or null. */
+        IOException failure;
+
+        Record(final byte op, final MockUser user) {
+            this.op = op;
+            this.user = user;
+        }
+    }
+}
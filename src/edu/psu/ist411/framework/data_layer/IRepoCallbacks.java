@@ -16,11 +16,15 @@
 
 package edu.psu.ist411.framework.data_layer;
 
+import edu.psu.ist411.framework.metrics.TraceContext;
 import java.util.List;
 
 /**
  * Defines callbacks for repository chain of command design pattern.
  *
+ * Repositories may call back on a thread of their own. Wrapping a callback
+ * with {@code traced} carries the caller's {@link TraceContext} across.
+ *
  * @author Tyler Suehr
  * @author Win Ton
  * @author Steven Weber
@@ -38,4 +42,111 @@ public interface IRepoCallbacks {
     interface IList<T> extends IError {
         void onAvailable(List<T> values);
     }
+
+    /**
+     * Told by a repository which keys its data changed under, e.g. a
+     * saved user's ID, so anything derived from them can be dropped.
+     * Called after the change is visible to readers.
+     */
+    interface IInvalidationListener {
+        IInvalidationListener NONE = key -> {};
+
+        void invalidate(Object key);
+    }
+
+    /**
+     * Makes the current trace, if sampled, current again while the
+     * callback runs, on whatever thread the repository calls back on, and
+     * records a "repository" span for the time until it does.
+     * @param callback {@link ISingle}.
+     * @return Wrapped callback, or the same one if there's no trace.
+     */
+    static <T> ISingle<T> traced(final ISingle<T> callback) {
+        final TraceContext.Handoff trace = TraceContext.capture();
+        if (trace == null) {
+            return callback;
+        }
+        return new ISingle<T>() {
+            @Override
+            public void onAvailable(T value) {
+                final TraceContext previous = trace.resume("repository");
+                try {
+                    callback.onAvailable(value);
+                } finally {
+                    TraceContext.set(previous);
+                }
+            }
+
+            @Override
+            public void onNotAvailable(Exception ex) {
+                final TraceContext previous = trace.resume("repository");
+                try {
+                    callback.onNotAvailable(ex);
+                } finally {
+                    TraceContext.set(previous);
+                }
+            }
+        };
+    }
+
+    /**
+     * Same as {@link #traced(ISingle)} for an {@link IList}.
+     * @param callback {@link IList}.
+     * @return Wrapped callback, or the same one if there's no trace.
+     */
+    static <T> IList<T> traced(final IList<T> callback) {
+        final TraceContext.Handoff trace = TraceContext.capture();
+        if (trace == null) {
+            return callback;
+        }
+        return new IList<T>() {
+            @Override
+            public void onAvailable(List<T> values) {
+                final TraceContext previous = trace.resume("repository");
+                try {
+                    callback.onAvailable(values);
+                } finally {
+                    TraceContext.set(previous);
+                }
+            }
+
+            @Override
+            public void onNotAvailable(Exception ex) {
+                final TraceContext previous = trace.resume("repository");
+                try {
+                    callback.onNotAvailable(ex);
+                } finally {
+                    TraceContext.set(previous);
+                }
+            }
+        };
+    }
+
+    /**
+     * Receives a large result in chunks instead of one materialized list.
+     *
+     * The repository calls {@link #onSubscribe(ISubscription)} first and
+     * then never calls {@link #onNext(List)} more times than the consumer
+     * has requested. It finishes with exactly one of {@link #onComplete()}
+     * or {@link #onNotAvailable(Exception)}.
+     */
+    interface IStream<T> extends IError {
+        void onSubscribe(ISubscription subscription);
+        void onNext(List<T> chunk);
+        void onComplete();
+    }
+
+    /**
+     * Demand handle given to an {@link IStream}.
+     */
+    interface ISubscription {
+        /**
+         * Allows the repository to deliver more chunks.
+         * @param chunks Number of additional chunks wanted.
+         */
+        void request(int chunks);
+
+        /** Stops delivery; no further chunks are sent. */
+        void cancel();
+    }
 }
\ No newline at end of file
@@ -16,8 +16,10 @@
 
 package edu.psu.ist411.framework.domain_layer;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 
@@ -31,6 +33,9 @@ import java.util.NoSuchElementException;
  * @author David Wong
  */
 public abstract class AbstractChannelManager {
+    /** Orders migrations between managers with equal identity hashes. */
+    private static final Object TIE_LOCK = new Object();
+
     /** Stores references to channels for this manager. */
     protected Map<Byte, IChannel> mChannels;
 
@@ -41,6 +46,66 @@ public abstract class AbstractChannelManager {
      */
     public abstract void relocate(AbstractChannelManager m, IChannel channel);
 
+    /**
+     * Moves a channel from this manager into another in one step, so it's
+     * never missing from both. Work queued on the channel isn't touched:
+     * it lives in the channel's scheduler, which moves with it, so nothing
+     * queued is lost or reordered.
+     *
+     * Both managers are locked, always in the same order whichever way
+     * the channel moves, so two opposite migrations can't deadlock.
+     *
+     * @param m Other {@link AbstractChannelManager}.
+     * @param channel {@link IChannel} in this manager.
+     * @return False if this manager doesn't hold the channel, or the other
+     *         already has a channel with its ID.
+     */
+    public final boolean migrate(final AbstractChannelManager m, final IChannel channel) {
+        if (m == this) {
+            return false;
+        }
+        final int mine = System.identityHashCode(this);
+        final int theirs = System.identityHashCode(m);
+        if (mine == theirs) {
+            synchronized (TIE_LOCK) {
+                return migrateOrdered(this, m, m, channel);
+            }
+        }
+        return mine < theirs
+                ? migrateOrdered(this, m, m, channel)
+                : migrateOrdered(m, this, m, channel);
+    }
+
+    private boolean migrateOrdered(final AbstractChannelManager first, final AbstractChannelManager second,
+            final AbstractChannelManager to, final IChannel channel) {
+        final ChannelLockEvent event = new ChannelLockEvent();
+        event.begin();
+        final boolean moved;
+        synchronized (first) {
+            synchronized (second) {
+                event.end();
+                moved = moveTo(to, channel);
+            }
+        }
+        event.commit("migrate", this, channel.getId());
+        return moved;
+    }
+
+    /** Moves the channel; the caller holds both managers' locks. */
+    private boolean moveTo(final AbstractChannelManager to, final IChannel channel) {
+        if (mChannels == null || mChannels.get(channel.getId()) != channel) {
+            return false;
+        }
+        if (to.mChannels == null) {
+            to.mChannels = new HashMap<>();
+        } else if (to.mChannels.containsKey(channel.getId())) {
+            return false;
+        }
+        to.mChannels.put(channel.getId(), channel);
+        mChannels.remove(channel.getId());
+        return true;
+    }
+
     /**
      * Gets a channel using the given channel ID.
      * @param channelId ID of the channel to find.
@@ -73,15 +138,33 @@ public abstract class AbstractChannelManager {
         return found;
     }
 
+    /**
+     * Gets a snapshot of the channels in this manager.
+     * @return List of {@link IChannel}, empty if there are none.
+     */
+    public final synchronized List<IChannel> getChannels() {
+        if (mChannels != null) {
+            return new ArrayList<>(mChannels.values());
+        }
+        return new ArrayList<>();
+    }
+
     /**
      * Adds a channel to this manager.
      * @param channel {@link IChannel}.
      */
-    public final synchronized void add(final IChannel channel) {
-        if (mChannels == null) {
-            mChannels = new HashMap<>();
+    public final void add(final IChannel channel) {
+        // Same as a synchronized method, but lets us time the wait.
+        final ChannelLockEvent event = new ChannelLockEvent();
+        event.begin();
+        synchronized (this) {
+            event.end();
+            if (mChannels == null) {
+                mChannels = new HashMap<>();
+            }
+            mChannels.put(channel.getId(), channel);
         }
-        mChannels.put(channel.getId(), channel);
+        event.commit("add", this, channel.getId());
     }
 
     /**
@@ -96,6 +179,30 @@ public abstract class AbstractChannelManager {
         return null;
     }
 
+    /**
+     * Adds a channel unless this manager already has one with its ID.
+     * @param channel {@link IChannel}.
+     * @return The channel now held under that ID, either this one or
+     *         the one that was already there.
+     */
+    public final synchronized IChannel addIfAbsent(final IChannel channel) {
+        if (mChannels == null) {
+            mChannels = new HashMap<>();
+        }
+        final IChannel existing = mChannels.putIfAbsent(channel.getId(), channel);
+        return existing != null ? existing : channel;
+    }
+
+    /**
+     * Removes a channel only if this manager still holds that very
+     * instance, not just one with the same ID.
+     * @param channel {@link IChannel}.
+     * @return True if it was removed.
+     */
+    public final synchronized boolean removeIfSame(final IChannel channel) {
+        return mChannels != null && mChannels.remove(channel.getId(), channel);
+    }
+
     /**
      * Removes a channel from this manager using its channel ID.
      * @param channelId ID of the channel to remove.
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2018 Group 5.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.psu.ist411.framework.domain_layer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of running one use case over many requests, in request order.
+ * Every request either has a response or an error, never both.
+ *
+ * @param <T> UseCase request.
+ * @param <V> UseCase response.
+ *
+ * @author Tyler Suehr
+ * @author Win Ton
+ * @author Steven Weber
+ * @author David Wong
+ */
+public final class BatchResult<T, V> {
+    private final List<T> mRequests;
+    private final Object[] mResponses;
+    private final Exception[] mErrors;
+    private final int mFailures;
+
+    BatchResult(final List<T> requests, final Object[] responses, final Exception[] errors) {
+        mRequests = Collections.unmodifiableList(requests);
+        mResponses = responses;
+        mErrors = errors;
+        int failures = 0;
+        for (Exception error : errors) {
+            if (error != null) { failures++; }
+        }
+        mFailures = failures;
+    }
+
+    public List<T> getRequests() {
+        return mRequests;
+    }
+
+    /**
+     * Gets the response to the request at an index.
+     * @param index Index in {@link #getRequests()}.
+     * @return Response, or null if that request failed.
+     */
+    @SuppressWarnings("unchecked")
+    public V getResponse(final int index) {
+        return (V) mResponses[index];
+    }
+
+    /**
+     * Gets why the request at an index failed.
+     * @param index Index in {@link #getRequests()}.
+     * @return Reason, or null if it succeeded.
+     */
+    public Exception getError(final int index) {
+        return mErrors[index];
+    }
+
+    /**
+     * Gets the responses of the requests that succeeded, in request order.
+     * @return List of responses.
+     */
+    public List<V> getSucceeded() {
+        final List<V> values = new ArrayList<>(mRequests.size() - mFailures);
+        for (int i = 0; i < mResponses.length; i++) {
+            if (mErrors[i] == null) { values.add(getResponse(i)); }
+        }
+        return values;
+    }
+
+    public int getFailureCount() {
+        return mFailures;
+    }
+
+    public boolean hasFailures() {
+        return mFailures > 0;
+    }
+
+    @Override
+    public String toString() {
+        return "BatchResult[requests=" + mRequests.size() + ", failures=" + mFailures + "]";
+    }
+
+    /**
+     * Reports a batch in which some requests failed, carrying the
+     * responses of the ones that didn't.
+     */
+    public static final class PartialFailureException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        private final BatchResult<?, ?> mResult;
+
+        public PartialFailureException(final BatchResult<?, ?> result) {
+            super(result.getFailureCount() + " of " + result.getRequests().size() + " requests failed",
+                    firstError(result));
+            mResult = result;
+        }
+
+        public BatchResult<?, ?> getResult() {
+            return mResult;
+        }
+
+        private static Exception firstError(final BatchResult<?, ?> result) {
+            for (Exception error : result.mErrors) {
+                if (error != null) { return error; }
+            }
+            return null;
+        }
+    }
+}
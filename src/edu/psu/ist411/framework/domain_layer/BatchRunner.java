@@ -0,0 +1,222 @@
+/*
+ * Copyright 2018 Group 5.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.psu.ist411.framework.domain_layer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs one use case over many requests by splitting them into chunks
+ * that a few runners work through, each runner executing as a single use
+ * case. The scheduler hands off once per runner instead of once per
+ * request, and no more than {@code parallelism} workers are kept busy, so
+ * a big batch doesn't overflow a small pool.
+ *
+ * A runner claims the next chunk from a shared cursor whenever it has
+ * finished one, so a slow chunk doesn't hold up the rest. Within a chunk
+ * requests run one after another on the runner's own use case instance,
+ * since a use case holds the request it's working on. A request that
+ * completes asynchronously pauses its runner, which carries on from the
+ * thread that completed it.
+ *
+ * A runner that fails instead of passing, e.g. because its scheduler
+ * dropped it, fails the rest of its chunk with the same error. Chunks no
+ * runner got to fail with it once every runner is done.
+ *
+ * @param <T> UseCase request.
+ * @param <V> UseCase response.
+ *
+ * @author Tyler Suehr
+ * @author Win Ton
+ * @author Steven Weber
+ * @author David Wong
+ */
+final class BatchRunner<T, V> {
+    private final List<T> mRequests;
+    private final UseCase.BatchCallback<T, V> mCallback;
+    private final int mChunkSize;
+    private final Object[] mResponses;
+    private final Exception[] mErrors;
+    /** Stores the first request not yet claimed by a runner. */
+    private final AtomicInteger mCursor = new AtomicInteger();
+    /** Stores the number of runners that haven't finished. */
+    private final AtomicInteger mRemaining;
+    private final List<Runner> mRunners = new ArrayList<>();
+    /** Stores why a runner was rejected or failed, if one was. */
+    private volatile Exception mFailure;
+
+    BatchRunner(final Supplier<? extends UseCase<T, V>> useCases, final List<T> requests,
+            final int chunkSize, final int parallelism, final UseCase.BatchCallback<T, V> callback) {
+        if (chunkSize < 1 || parallelism < 1) {
+            throw new IllegalArgumentException("Chunk size and parallelism must be at least 1!");
+        }
+        mRequests = new ArrayList<>(requests);
+        mCallback = callback;
+        mChunkSize = chunkSize;
+        mResponses = new Object[mRequests.size()];
+        mErrors = new Exception[mRequests.size()];
+        final int chunks = (mRequests.size() + chunkSize - 1) / chunkSize;
+        for (int i = 0; i < Math.min(chunks, parallelism); i++) {
+            mRunners.add(new Runner(useCases.get()));
+        }
+        mRemaining = new AtomicInteger(mRunners.size());
+    }
+
+    /**
+     * Executes the runners on the scheduler. If the scheduler rejects
+     * some, the others pick up their chunks; if it rejects all of them,
+     * every request fails with the rejection.
+     * @param scheduler {@link IUseCaseScheduler} to execute on.
+     */
+    void execute(final IUseCaseScheduler scheduler) {
+        if (mRunners.isEmpty()) {
+            mCallback.onComplete(new BatchResult<>(mRequests, mResponses, mErrors));
+            return;
+        }
+        for (Runner runner : mRunners) {
+            try {
+                scheduler.execute(runner, null, runner.mDone);
+            } catch (RejectedExecutionException ex) {
+                mFailure = ex;
+                runnerDone();
+            }
+        }
+    }
+
+    private void runnerDone() {
+        if (mRemaining.decrementAndGet() > 0) {
+            return;
+        }
+        // Left over if runners were rejected or failed before finishing.
+        final int from = mCursor.getAndSet(mRequests.size());
+        if (from < mRequests.size()) {
+            final Exception failure = mFailure != null
+                    ? mFailure : new IllegalStateException("Batch runner stopped early");
+            failRange(from, mRequests.size(), failure);
+        }
+        mCallback.onComplete(new BatchResult<>(mRequests, mResponses, mErrors));
+    }
+
+    private void failRange(final int from, final int to, final Exception ex) {
+        for (int i = from; i < to; i++) {
+            mErrors[i] = ex;
+            mCallback.onItemFailure(mRequests.get(i), ex);
+        }
+    }
+
+    /**
+     * Runs claimed chunks of requests as one use case, which passes once
+     * no chunks are left to claim.
+     */
+    private final class Runner extends UseCase<Void, Void> {
+        private static final int RUNNING = 0;
+        private static final int PAUSED = 1;
+        private static final int COMPLETED = 2;
+
+        private final UseCase<T, V> mUseCase;
+        /** Next request to run; advanced by whoever completes one. */
+        private volatile int mIndex;
+        /** End of the claimed chunk. */
+        private volatile int mEnd;
+        /** Says whether the current request completed within onExecute. */
+        private final AtomicInteger mState = new AtomicInteger();
+        /** Callback of the use case for each request. */
+        private final UseCase.Callback<V> mItem = new UseCase.Callback<V>() {
+            @Override
+            public void onSuccess(final V response) {
+                mResponses[mIndex] = response;
+                mCallback.onItem(mRequests.get(mIndex), response);
+                next();
+            }
+
+            @Override
+            public void onFailure(final Exception ex) {
+                mErrors[mIndex] = ex;
+                mCallback.onItemFailure(mRequests.get(mIndex), ex);
+                next();
+            }
+        };
+        /** Callback of this runner. */
+        private final UseCase.Callback<Void> mDone = new UseCase.Callback<Void>() {
+            @Override
+            public void onSuccess(final Void response) {
+                runnerDone();
+            }
+
+            @Override
+            public void onFailure(final Exception ex) {
+                // The runner never passes with work left, so it's all unfinished.
+                mFailure = ex;
+                failRange(mIndex, mEnd, ex);
+                runnerDone();
+            }
+        };
+
+        Runner(final UseCase<T, V> useCase) {
+            mUseCase = useCase;
+        }
+
+        @Override
+        protected void onExecute() {
+            drive();
+        }
+
+        /** Runs requests until one completes asynchronously or none are left. */
+        private void drive() {
+            while (true) {
+                if (mIndex == mEnd && !claim()) {
+                    pass(null);
+                    return;
+                }
+                mState.set(RUNNING);
+                mUseCase.setRequest(mRequests.get(mIndex));
+                mUseCase.setCallback(mItem);
+                try {
+                    mUseCase.onExecute();
+                } catch (RuntimeException ex) {
+                    // Same as failing, so the batch still completes.
+                    mItem.onFailure(ex);
+                }
+                if (mState.compareAndSet(RUNNING, PAUSED)) {
+                    // Still running; its completion resumes the runner.
+                    return;
+                }
+            }
+        }
+
+        /** @return False if there are no chunks left. */
+        private boolean claim() {
+            final int from = mCursor.getAndAdd(mChunkSize);
+            if (from >= mRequests.size()) {
+                return false;
+            }
+            mIndex = from;
+            mEnd = Math.min(from + mChunkSize, mRequests.size());
+            return true;
+        }
+
+        private void next() {
+            mIndex++;
+            if (!mState.compareAndSet(RUNNING, COMPLETED)) {
+                drive();
+            }
+        }
+    }
+}
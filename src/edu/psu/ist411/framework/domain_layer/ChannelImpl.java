@@ -16,9 +16,26 @@
 
 package edu.psu.ist411.framework.domain_layer;
 
+import edu.psu.ist411.framework.metrics.SchedulerMetrics;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
 /**
  * Basic implementation of {@link IChannel} with immutable properties.
  *
+ * Also tracks how long the channel has been idle, so a
+ * {@link ChannelSweeper} can reclaim channels that can be recreated on
+ * demand.
+ *
+ * An evictable channel is retired as it's removed from its manager. Its
+ * {@link #getScheduler()} guards the real scheduler: use cases scheduled
+ * through a reference taken before retirement are sent to whatever
+ * channel the manager now holds under the same ID, or rejected if it
+ * holds none, so they never restart the stopped scheduler.
+ *
  * @author Tyler Suehr
  * @author Win Ton
  * @author Steven Weber
@@ -29,10 +46,97 @@ public class ChannelImpl implements IChannel {
     private final IUseCaseScheduler mScheduler;
     /** Stores channel ID. */
     private final byte mId;
+    /** True if the channel may be dropped when idle and recreated later. */
+    private final boolean mEvictable;
+    /** Stores what {@link #getScheduler()} returns. */
+    private final IUseCaseScheduler mPublic;
+    /** Read-held while scheduling, write-held while retiring. */
+    private final ReentrantReadWriteLock mGate = new ReentrantReadWriteLock();
+    /** Stores the manager this channel was retired from, null while live. */
+    private volatile AbstractChannelManager mRetiredFrom;
+    /** Stores the submission count last seen by {@link #getIdleNanos()}. */
+    private long mLastSubmitted;
+    /** Stores when the channel was last seen doing anything. */
+    private long mIdleSince = System.nanoTime();
 
     public ChannelImpl(final byte id, final IUseCaseScheduler scheduler) {
+        this(id, scheduler, false);
+    }
+
+    /**
+     * @param id Channel ID.
+     * @param scheduler {@link IUseCaseScheduler} of the channel.
+     * @param evictable True if whoever holds the channel will recreate it
+     *        when it's missing, so a {@link ChannelSweeper} may evict it.
+     */
+    public ChannelImpl(final byte id, final IUseCaseScheduler scheduler, final boolean evictable) {
         mId = id;
         mScheduler = scheduler;
+        mEvictable = evictable;
+        mPublic = evictable ? new Guard() : scheduler;
+    }
+
+    public boolean isEvictable() {
+        return mEvictable;
+    }
+
+    public boolean isRetired() {
+        return mRetiredFrom != null;
+    }
+
+    /**
+     * Gets the scheduler use cases actually run on, which
+     * {@link #getScheduler()} wraps if this channel is evictable.
+     * @return {@link IUseCaseScheduler}.
+     */
+    public IUseCaseScheduler getBackingScheduler() {
+        return mScheduler;
+    }
+
+    /**
+     * Removes this channel from the manager and retires it, if it has
+     * been idle for at least the TTL. Nothing can be scheduled on it
+     * meanwhile, so a retired channel has nothing queued or running.
+     *
+     * @param manager Manager holding this channel.
+     * @param ttlNanos Shortest idle time to retire after.
+     * @return True if retired; its scheduler may then be stopped.
+     */
+    boolean retireIfIdle(final AbstractChannelManager manager, final long ttlNanos) {
+        if (!mEvictable || !mGate.writeLock().tryLock()) {
+            // Someone is scheduling on it right now, so it isn't idle.
+            return false;
+        }
+        try {
+            if (mRetiredFrom != null || getIdleNanos() < ttlNanos || !manager.removeIfSame(this)) {
+                return false;
+            }
+            mRetiredFrom = manager;
+            return true;
+        } finally {
+            mGate.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Gets how long this channel has had nothing submitted, queued or
+     * running. Activity is only noticed when this is called, so the result
+     * is as precise as the time between calls.
+     * @return Idle time in nanoseconds, 0 if busy or the scheduler isn't metered.
+     */
+    public synchronized long getIdleNanos() {
+        final SchedulerMetrics metrics = mScheduler.getMetrics();
+        if (metrics == null) {
+            return 0;
+        }
+        final long now = System.nanoTime();
+        final long submitted = metrics.getSubmitted();
+        if (submitted != mLastSubmitted || metrics.getQueueDepth() > 0 || metrics.getActiveThreads() > 0) {
+            mLastSubmitted = submitted;
+            mIdleSince = now;
+            return 0;
+        }
+        return now - mIdleSince;
     }
 
     @Override
@@ -47,6 +151,68 @@ public class ChannelImpl implements IChannel {
 
     @Override
     public IUseCaseScheduler getScheduler() {
-        return mScheduler;
+        return mPublic;
+    }
+
+    /**
+     * Finds the channel to use instead of this retired one.
+     * @throws RejectedExecutionException if the manager has none.
+     */
+    private IChannel successor() {
+        final IChannel next = mRetiredFrom.get(mId);
+        if (next == null || next == this) {
+            throw new RejectedExecutionException(this + " was evicted");
+        }
+        return next;
+    }
+
+    /**
+     * Schedules on the backing scheduler while this channel is live, and
+     * on its successor once retired.
+     */
+    private final class Guard implements IUseCaseScheduler {
+        @Override
+        public <T, V> void execute(UseCase<T, V> useCase, T request, UseCase.Callback<V> callback) {
+            final Lock lock = mGate.readLock();
+            lock.lock();
+            try {
+                if (mRetiredFrom == null) {
+                    mScheduler.execute(useCase, request, callback);
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+            successor().getScheduler().execute(useCase, request, callback);
+        }
+
+        @Override
+        public <T, V> Future<?> submit(UseCase<T, V> useCase, T request, UseCase.Callback<V> callback) {
+            final Lock lock = mGate.readLock();
+            lock.lock();
+            try {
+                if (mRetiredFrom == null) {
+                    return mScheduler.submit(useCase, request, callback);
+                }
+            } finally {
+                lock.unlock();
+            }
+            return successor().getScheduler().submit(useCase, request, callback);
+        }
+
+        @Override
+        public List<Runnable> stopExecution() {
+            return mScheduler.stopExecution();
+        }
+
+        @Override
+        public void prewarm() {
+            mScheduler.prewarm();
+        }
+
+        @Override
+        public SchedulerMetrics getMetrics() {
+            return mScheduler.getMetrics();
+        }
     }
 }
\ No newline at end of file
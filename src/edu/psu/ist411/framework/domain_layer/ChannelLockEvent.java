@@ -0,0 +1,66 @@
+/*
+ * Copyright 2018 Group 5.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.psu.ist411.framework.domain_layer;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * Flight Recorder event for time spent waiting to enter a lock of an
+ * {@link AbstractChannelManager}. The event's duration is the wait, and
+ * like {@code jdk.JavaMonitorEnter} only waits over a threshold are kept.
+ *
+ * Like any JFR event, creating one and calling {@code begin}, {@code end}
+ * and {@code shouldCommit} costs nothing when recording is off.
+ *
+ * @author Tyler Suehr
+ * @author Win Ton
+ * @author Steven Weber
+ * @author David Wong
+ */
+@Name("edu.psu.ist411.ChannelLockWait")
+@Label("Channel Manager Lock Wait")
+@Category({"IST 411", "Framework"})
+@Description("Time spent blocked entering a channel manager lock")
+@Threshold("10 ms")
+final class ChannelLockEvent extends Event {
+    @Label("Operation")
+    String operation;
+
+    @Label("Manager")
+    String manager;
+
+    @Label("Channel ID")
+    byte channelId;
+
+    /**
+     * Commits this event if it passed the recording's threshold.
+     * Call after {@link #end()}, outside the lock.
+     */
+    void commit(final String operation, final AbstractChannelManager manager, final byte channelId) {
+        if (shouldCommit()) {
+            this.operation = operation;
+            this.manager = manager.getClass().getSimpleName();
+            this.channelId = channelId;
+            commit();
+        }
+    }
+}
@@ -57,18 +57,30 @@ public abstract class ChannelManagerFactory {
     private static final class RetardedChannelManager
             extends AbstractChannelManager {
         @Override
-        public synchronized void relocate(AbstractChannelManager m, IChannel channel) {
-            // Do nothing, we have no channels :).
-            if (mChannels == null) { return; }
+        public void relocate(AbstractChannelManager m, IChannel channel) {
+            // Equivalent to a synchronized method, but timed.
+            final ChannelLockEvent event = new ChannelLockEvent();
+            event.begin();
+            try {
+                synchronized (this) {
+                    event.end();
 
-            // Tough luck if we don't have the channel.
-            final IChannel found = mChannels.remove(channel.getId());
-            if (found == null) {
-                throw new IllegalArgumentException("Not a valid channel!");
-            }
+                    // Do nothing, we have no channels :).
+                    if (mChannels == null) { return; }
 
-            // This is what causes the deadlock!
-            m.add(found);
+                    // Tough luck if we don't have the channel.
+                    final IChannel found = mChannels.remove(channel.getId());
+                    if (found == null) {
+                        throw new IllegalArgumentException("Not a valid channel!");
+                    }
+
+                    // This is what causes the deadlock!
+                    m.add(found);
+                }
+            } finally {
+                // Out of the monitor, however we left it.
+                event.commit("relocate", this, channel.getId());
+            }
         }
     }
 
@@ -95,9 +107,13 @@ public abstract class ChannelManagerFactory {
             // Importantly, we also do as LITTLE logic as possible in the
             // synchronized block for increased efficiency.
             final IChannel found;
+            final ChannelLockEvent event = new ChannelLockEvent();
+            event.begin();
             synchronized (LOCK) {
+                event.end();
                 found = mChannels.remove(channel.getId());
             }
+            event.commit("relocate", this, channel.getId());
 
             // Tough luck if we don't have the channel.
             if (found == null) {
@@ -0,0 +1,259 @@
+/*
+ * Copyright 2018 Group 5.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.psu.ist411.framework.domain_layer;
+
+import edu.psu.ist411.framework.metrics.SchedulerMetrics;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Moves channels between {@link AbstractChannelManager}s to even out their
+ * load.
+ *
+ * A manager's load is the sum over its channels of queued use cases plus
+ * busy threads, read from each scheduler's {@link SchedulerMetrics}. Every
+ * round samples all managers, asks the {@link Policy} for a move and makes
+ * it with {@link AbstractChannelManager#migrate}, repeating up to
+ * {@link #MAX_MOVES} times per round.
+ *
+ * Shared channels (including every presenter's default channel) are never
+ * moved: they belong to several managers at once.
+ *
+ * @author Tyler Suehr
+ * @author Win Ton
+ * @author Steven Weber
+ * @author David Wong
+ */
+public final class ChannelRebalancer {
+    /** Most migrations made in one round. */
+    private static final int MAX_MOVES = 4;
+
+    private final List<AbstractChannelManager> mManagers;
+    private final Policy mPolicy;
+    private final LongAdder mMoves = new LongAdder();
+    private final LongAdder mRounds = new LongAdder();
+    private Thread mThread;
+
+    /**
+     * Decides which channel to move, if any, given the current loads.
+     */
+    public interface Policy {
+        /**
+         * @param loads Load of each manager, in the rebalancer's order.
+         * @return Move to make, or null if things are balanced enough.
+         */
+        Move choose(List<Load> loads);
+    }
+
+    /**
+     * Sampled load of one manager and its channels.
+     */
+    public static final class Load {
+        private final AbstractChannelManager mManager;
+        private final List<IChannel> mChannels;
+        private final int[] mChannelLoads;
+        private final int mTotal;
+
+        Load(final AbstractChannelManager manager) {
+            mManager = manager;
+            mChannels = manager.getChannels();
+            mChannelLoads = new int[mChannels.size()];
+            int total = 0;
+            for (int i = 0; i < mChannelLoads.length; i++) {
+                mChannelLoads[i] = load(mChannels.get(i));
+                total += mChannelLoads[i];
+            }
+            mTotal = total;
+        }
+
+        public AbstractChannelManager getManager() {
+            return mManager;
+        }
+
+        public List<IChannel> getChannels() {
+            return Collections.unmodifiableList(mChannels);
+        }
+
+        public int getChannelLoad(final int index) {
+            return mChannelLoads[index];
+        }
+
+        public int getTotal() {
+            return mTotal;
+        }
+
+        private static int load(final IChannel channel) {
+            final SchedulerMetrics metrics = channel.getScheduler().getMetrics();
+            return metrics == null ? 0 : metrics.getQueueDepth() + metrics.getActiveThreads();
+        }
+    }
+
+    /**
+     * One channel migration.
+     */
+    public static final class Move {
+        final AbstractChannelManager from;
+        final AbstractChannelManager to;
+        final IChannel channel;
+
+        public Move(final AbstractChannelManager from, final AbstractChannelManager to, final IChannel channel) {
+            this.from = from;
+            this.to = to;
+            this.channel = channel;
+        }
+    }
+
+    /**
+     * Default {@link Policy}: when the busiest manager's load exceeds the
+     * idlest one's by more than the given ratio and margin, moves the
+     * busiest channel of the busiest manager that still fits in half the
+     * gap, so a move never just swaps which manager is overloaded.
+     */
+    public static final class ThresholdPolicy implements Policy {
+        private final double mRatio;
+        private final int mMargin;
+
+        /**
+         * @param ratio Busiest load must exceed {@code ratio} times the idlest.
+         * @param margin ...and the idlest plus this, so idle managers don't churn.
+         */
+        public ThresholdPolicy(final double ratio, final int margin) {
+            if (ratio < 1) {
+                throw new IllegalArgumentException("Ratio must be at least 1!");
+            }
+            mRatio = ratio;
+            mMargin = margin;
+        }
+
+        @Override
+        public Move choose(final List<Load> loads) {
+            Load busiest = null;
+            Load idlest = null;
+            for (Load l : loads) {
+                if (busiest == null || l.getTotal() > busiest.getTotal()) { busiest = l; }
+                if (idlest == null || l.getTotal() < idlest.getTotal()) { idlest = l; }
+            }
+            if (busiest == null || busiest == idlest) {
+                return null;
+            }
+            if (busiest.getTotal() <= idlest.getTotal() * mRatio || busiest.getTotal() <= idlest.getTotal() + mMargin) {
+                return null;
+            }
+            final int half = (busiest.getTotal() - idlest.getTotal()) / 2;
+            int best = -1;
+            for (int i = 0; i < busiest.getChannels().size(); i++) {
+                final int load = busiest.getChannelLoad(i);
+                if (load > 0 && load <= half && movable(busiest.getChannels().get(i))
+                        && (best < 0 || load > busiest.getChannelLoad(best))) {
+                    best = i;
+                }
+            }
+            return best < 0 ? null : new Move(busiest.getManager(), idlest.getManager(), busiest.getChannels().get(best));
+        }
+    }
+
+    /**
+     * @param managers Managers to balance between.
+     * @param policy {@link Policy} deciding the moves.
+     */
+    public ChannelRebalancer(final List<AbstractChannelManager> managers, final Policy policy) {
+        if (managers == null || policy == null) {
+            throw new NullPointerException("Managers and policy cannot be null!");
+        }
+        mManagers = new ArrayList<>(managers);
+        mPolicy = policy;
+    }
+
+    /**
+     * Runs one round: samples every manager and makes the moves the policy
+     * asks for.
+     * @return Number of channels moved.
+     */
+    public int rebalance() {
+        mRounds.increment();
+        int moved = 0;
+        while (moved < MAX_MOVES) {
+            final List<Load> loads = new ArrayList<>(mManagers.size());
+            for (AbstractChannelManager m : mManagers) {
+                loads.add(new Load(m));
+            }
+            final Move move = mPolicy.choose(loads);
+            // A channel can disappear between sampling and moving; that
+            // just ends the round.
+            if (move == null || !movable(move.channel) || !move.from.migrate(move.to, move.channel)) {
+                break;
+            }
+            moved++;
+            mMoves.increment();
+        }
+        return moved;
+    }
+
+    /**
+     * Starts rebalancing on a daemon thread every {@code period}.
+     * @param period Time between rounds.
+     * @param unit {@link TimeUnit} of the period.
+     */
+    public synchronized void start(final long period, final TimeUnit unit) {
+        if (mThread != null) {
+            throw new IllegalStateException("Already started!");
+        }
+        final long millis = Math.max(1, unit.toMillis(period));
+        mThread = new Thread(() -> {
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    rebalance();
+                    Thread.sleep(millis);
+                }
+            } catch (InterruptedException ex) {
+                // Stopped.
+            }
+        }, "channel-rebalancer");
+        mThread.setDaemon(true);
+        mThread.start();
+    }
+
+    /**
+     * Stops the rebalancing thread and waits for its current round.
+     */
+    public void stop() throws InterruptedException {
+        final Thread t;
+        synchronized (this) {
+            t = mThread;
+            mThread = null;
+        }
+        if (t != null) {
+            t.interrupt();
+            t.join();
+        }
+    }
+
+    public long getMoves() {
+        return mMoves.sum();
+    }
+
+    public long getRounds() {
+        return mRounds.sum();
+    }
+
+    private static boolean movable(final IChannel channel) {
+        return SharedChannelRegistry.holders(channel.getId()) == 0;
+    }
+}
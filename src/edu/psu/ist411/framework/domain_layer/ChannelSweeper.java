@@ -0,0 +1,171 @@
+/*
+ * Copyright 2018 Group 5.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.psu.ist411.framework.domain_layer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Reclaims channels that have sat idle for longer than a time-to-live.
+ *
+ * Managers are registered with {@link #watch}. A daemon thread sweeps
+ * them every quarter of the TTL; any channel that's evictable (see
+ * {@link ChannelImpl#isEvictable()}) and idle past the TTL is removed from
+ * its manager and has its scheduler stopped, releasing its threads. The
+ * next use of its ID creates a fresh channel.
+ *
+ * Shared channels, including every presenter's default channel, are never
+ * evicted. Managers are held weakly, so a manager nobody else references
+ * stops being swept.
+ *
+ * A channel is retired as it's removed (see
+ * {@link ChannelImpl#retireIfIdle}), so a use case scheduled through a
+ * reference taken before eviction goes to the channel now holding its ID,
+ * or is rejected, rather than restarting the stopped scheduler.
+ *
+ * @author Tyler Suehr
+ * @author Win Ton
+ * @author Steven Weber
+ * @author David Wong
+ */
+public final class ChannelSweeper {
+    /** System property with the shared sweeper's TTL in ms; 0 turns it off. */
+    public static final String TTL_PROPERTY = "ist411.channel.ttl";
+    /** TTL of the shared sweeper unless set by {@link #TTL_PROPERTY}. */
+    private static final long DEFAULT_TTL_MILLIS = 60_000;
+    /** Channel ID of the presenters' default channel. */
+    private static final byte DEFAULT_CHANNEL = (byte) 0;
+    /** Shortest time between sweeps. */
+    private static final long MIN_PERIOD_MILLIS = 10;
+
+    private final long mTtlNanos;
+    /** Stores the managers being swept, weakly. Guarded by this. */
+    private final Set<AbstractChannelManager> mManagers = Collections.newSetFromMap(new WeakHashMap<>());
+    private final LongAdder mEvicted = new LongAdder();
+    private Thread mThread;
+
+    /** Lazily creates the shared sweeper. */
+    private static final class Shared {
+        static final ChannelSweeper INSTANCE = new ChannelSweeper(
+                Long.getLong(TTL_PROPERTY, DEFAULT_TTL_MILLIS), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Gets the sweeper used by presenters for channels they create on
+     * demand. Its TTL is read from {@link #TTL_PROPERTY} when first used.
+     * @return {@link ChannelSweeper}
+     */
+    public static ChannelSweeper shared() {
+        return Shared.INSTANCE;
+    }
+
+    /**
+     * @param ttl How long a channel may be idle before it's evicted, or 0
+     *        to never evict.
+     * @param unit {@link TimeUnit} of the TTL.
+     */
+    public ChannelSweeper(final long ttl, final TimeUnit unit) {
+        if (ttl < 0) {
+            throw new IllegalArgumentException("TTL can't be negative!");
+        }
+        mTtlNanos = unit.toNanos(ttl);
+    }
+
+    /**
+     * Starts sweeping a manager, starting the sweeper thread if needed.
+     * Does nothing if this sweeper never evicts.
+     * @param manager {@link AbstractChannelManager}.
+     */
+    public synchronized void watch(final AbstractChannelManager manager) {
+        if (mTtlNanos == 0) {
+            return;
+        }
+        mManagers.add(manager);
+        if (mThread == null) {
+            mThread = new Thread(this::run, "channel-sweeper");
+            mThread.setDaemon(true);
+            mThread.start();
+        }
+    }
+
+    /**
+     * Stops sweeping a manager.
+     * @param manager {@link AbstractChannelManager}.
+     */
+    public synchronized void unwatch(final AbstractChannelManager manager) {
+        mManagers.remove(manager);
+    }
+
+    /**
+     * Sweeps every watched manager once.
+     * @return Number of channels evicted.
+     */
+    public int sweep() {
+        final List<AbstractChannelManager> managers;
+        synchronized (this) {
+            managers = new ArrayList<>(mManagers);
+        }
+        int evicted = 0;
+        for (AbstractChannelManager m : managers) {
+            for (IChannel channel : m.getChannels()) {
+                if (evict(m, channel)) {
+                    evicted++;
+                }
+            }
+        }
+        mEvicted.add(evicted);
+        return evicted;
+    }
+
+    public long getEvicted() {
+        return mEvicted.sum();
+    }
+
+    private boolean evict(final AbstractChannelManager m, final IChannel channel) {
+        if (!(channel instanceof ChannelImpl) || !((ChannelImpl) channel).isEvictable()
+                || channel.getId() == DEFAULT_CHANNEL || SharedChannelRegistry.holders(channel.getId()) > 0) {
+            return false;
+        }
+        final ChannelImpl c = (ChannelImpl) channel;
+        if (c.getIdleNanos() < mTtlNanos || !c.retireIfIdle(m, mTtlNanos)) {
+            return false;
+        }
+        final List<Runnable> leftover = c.getBackingScheduler().stopExecution();
+        if (leftover != null) {
+            // Retired idle there should be none, but run any rather than drop them.
+            leftover.forEach(Runnable::run);
+        }
+        return true;
+    }
+
+    private void run() {
+        final long period = Math.max(MIN_PERIOD_MILLIS, TimeUnit.NANOSECONDS.toMillis(mTtlNanos / 4));
+        try {
+            while (true) {
+                Thread.sleep(period);
+                sweep();
+            }
+        } catch (InterruptedException ex) {
+            // Daemon; only ends with the process.
+        }
+    }
+}
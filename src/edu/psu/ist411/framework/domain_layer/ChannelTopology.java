@@ -0,0 +1,203 @@
+/*
+ * Copyright 2018 Group 5.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.psu.ist411.framework.domain_layer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Saves which channels each {@link AbstractChannelManager} holds, and how
+ * their schedulers are configured, to a small binary file, and rebuilds
+ * them from it on the next start instead of replaying application logic.
+ *
+ * For every manager the file holds its name and, for every channel, the
+ * ID, whether it's evictable or memoizing, and the scheduler's kind and
+ * settings: a few bytes per channel. Restoring creates all managers and
+ * channels first and then prewarms every scheduler in parallel (see
+ * {@link IUseCaseScheduler#prewarm()}), so threads are up before the first
+ * use case arrives. Managers holding evictable channels are handed to
+ * {@link ChannelSweeper#shared()} as they would have been originally.
+ *
+ * Only {@link UseCaseSchedulerImpl}, {@link EventLoopScheduler} and
+ * {@link RingBufferScheduler} can be restored; channels with any other
+ * scheduler are left out, as are shared channels, which presenters
+ * acquire themselves.
+ *
+ * @author Tyler Suehr
+ * @author Win Ton
+ * @author Steven Weber
+ * @author David Wong
+ */
+public final class ChannelTopology {
+    /** First bytes of every topology file, "CHTP". */
+    private static final int MAGIC = 0x43485450;
+    private static final byte VERSION = 1;
+    /** Scheduler kinds as written to the file. */
+    private static final byte POOL = 0;
+    private static final byte LOOP = 1;
+    private static final byte RING = 2;
+    /** Channel flag for {@link ChannelImpl#isEvictable()}. */
+    private static final byte EVICTABLE = 1;
+    /** Channel flag for a scheduler wrapped in a {@link MemoizingScheduler}. */
+    private static final byte MEMOIZED = 2;
+
+    private ChannelTopology() {}
+
+    /**
+     * Writes the managers' channels to a file, replacing it in one step so
+     * a crash mid-write leaves the previous snapshot intact.
+     *
+     * @param managers Managers by name.
+     * @param file Path of the snapshot.
+     * @return Number of channels written.
+     * @throws IOException if the file can't be written.
+     */
+    public static int save(final Map<String, AbstractChannelManager> managers, final Path file)
+            throws IOException {
+        final Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        int written = 0;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeShort(managers.size());
+            for (Map.Entry<String, AbstractChannelManager> e : managers.entrySet()) {
+                final List<IChannel> channels = new ArrayList<>();
+                for (IChannel c : e.getValue().getChannels()) {
+                    if (restorable(c)) { channels.add(c); }
+                }
+                out.writeUTF(e.getKey());
+                out.writeShort(channels.size());
+                for (IChannel c : channels) {
+                    write(out, c);
+                }
+                written += channels.size();
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return written;
+    }
+
+    /**
+     * Rebuilds managers from a file written by {@link #save}, each created
+     * by {@link ChannelManagerFactory#newGoodThreadSafe()}, and prewarms
+     * every channel's scheduler in parallel before returning.
+     *
+     * @param file Path of the snapshot.
+     * @return Managers by name, in the order they were saved.
+     * @throws IOException if the file can't be read or isn't a snapshot.
+     */
+    public static Map<String, AbstractChannelManager> restore(final Path file) throws IOException {
+        final Map<String, AbstractChannelManager> managers = new LinkedHashMap<>();
+        final List<IChannel> all = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+                throw new IOException("Not a channel topology file: " + file);
+            }
+            final int count = in.readUnsignedShort();
+            for (int i = 0; i < count; i++) {
+                final AbstractChannelManager m = ChannelManagerFactory.newGoodThreadSafe();
+                managers.put(in.readUTF(), m);
+                final int channels = in.readUnsignedShort();
+                for (int j = 0; j < channels; j++) {
+                    final IChannel c = read(in);
+                    m.add(c);
+                    all.add(c);
+                    if (((ChannelImpl) c).isEvictable()) {
+                        ChannelSweeper.shared().watch(m);
+                    }
+                }
+            }
+        }
+        all.parallelStream().forEach(c -> c.getScheduler().prewarm());
+        return managers;
+    }
+
+    private static boolean restorable(final IChannel c) {
+        final Class<?> type = unwrap(backing(c)).getClass();
+        return (type == UseCaseSchedulerImpl.class || type == EventLoopScheduler.class
+                || type == RingBufferScheduler.class) && SharedChannelRegistry.holders(c.getId()) == 0;
+    }
+
+    private static void write(final DataOutputStream out, final IChannel c) throws IOException {
+        final IUseCaseScheduler scheduler = unwrap(backing(c));
+        out.writeByte(c.getId());
+        out.writeByte((c instanceof ChannelImpl && ((ChannelImpl) c).isEvictable() ? EVICTABLE : 0)
+                | (backing(c) instanceof MemoizingScheduler ? MEMOIZED : 0));
+        if (scheduler instanceof UseCaseSchedulerImpl) {
+            out.writeByte(POOL);
+            out.writeByte(((UseCaseSchedulerImpl) scheduler).getNestedPolicy().ordinal());
+        } else if (scheduler instanceof EventLoopScheduler) {
+            out.writeByte(LOOP);
+            out.writeByte(((EventLoopScheduler) scheduler).getWaitStrategy().ordinal());
+        } else {
+            final RingBufferScheduler ring = (RingBufferScheduler) scheduler;
+            out.writeByte(RING);
+            out.writeByte(ring.getWaitStrategy().ordinal());
+            // Capacity is a power of two, so its exponent fits in a byte.
+            out.writeByte(Integer.numberOfTrailingZeros(ring.getCapacity()));
+        }
+    }
+
+    private static IChannel read(final DataInputStream in) throws IOException {
+        final byte id = in.readByte();
+        final byte flags = in.readByte();
+        final byte kind = in.readByte();
+        final int setting = in.readUnsignedByte();
+        IUseCaseScheduler scheduler;
+        try {
+            switch (kind) {
+                case POOL:
+                    scheduler = new UseCaseSchedulerImpl(id, UseCaseSchedulerImpl.NestedPolicy.values()[setting]);
+                    break;
+                case LOOP:
+                    scheduler = new EventLoopScheduler(id, EventLoopScheduler.WaitStrategy.values()[setting]);
+                    break;
+                case RING:
+                    scheduler = new RingBufferScheduler(id, 1 << in.readUnsignedByte(),
+                            EventLoopScheduler.WaitStrategy.values()[setting]);
+                    break;
+                default:
+                    throw new IOException("Unknown scheduler kind " + kind + " for channel " + id);
+            }
+        } catch (ArrayIndexOutOfBoundsException ex) {
+            throw new IOException("Unknown setting " + setting + " for channel " + id, ex);
+        }
+        if ((flags & MEMOIZED) != 0) {
+            scheduler = new MemoizingScheduler(scheduler);
+        }
+        return new ChannelImpl(id, scheduler, (flags & EVICTABLE) != 0);
+    }
+
+    /** Gets the scheduler without the guard of an evictable channel. */
+    private static IUseCaseScheduler backing(final IChannel c) {
+        return c instanceof ChannelImpl ? ((ChannelImpl) c).getBackingScheduler() : c.getScheduler();
+    }
+
+    private static IUseCaseScheduler unwrap(final IUseCaseScheduler scheduler) {
+        return scheduler instanceof MemoizingScheduler ? ((MemoizingScheduler) scheduler).getDelegate() : scheduler;
+    }
+}
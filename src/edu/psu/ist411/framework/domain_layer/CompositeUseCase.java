@@ -0,0 +1,454 @@
+/*
+ * Copyright 2018 Group 5.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.psu.ist411.framework.domain_layer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.Function;
+
+/**
+ * Use case made of other use cases that depend on each other's results,
+ * e.g. loading a user, their permissions and their preferences, then
+ * combining them for a screen.
+ *
+ * Nodes are declared with a {@link Builder}, each with the nodes whose
+ * results it needs. A node can only depend on nodes added before it, so
+ * the graph can't have cycles. When executed, every node without
+ * dependencies is executed on the scheduler given to the builder, and
+ * each other node is executed as soon as the last of its inputs is ready,
+ * so independent nodes run in parallel.
+ *
+ * The composite passes with the result of the node given to
+ * {@link Builder#build} once every node has passed, or fails with the
+ * first node that fails; dependents of a failed node never run.
+ *
+ * Each execution records a {@link Timing} of every node, marking the
+ * critical path: the chain of nodes that decided how long it took.
+ *
+ * Node use cases are reused by every execution of the composite, so a
+ * composite shouldn't be executed again before it has completed.
+ *
+ * @param <V> UseCase response.
+ *
+ * @author Tyler Suehr
+ * @author Win Ton
+ * @author Steven Weber
+ * @author David Wong
+ */
+public final class CompositeUseCase<V> extends UseCase<Void, V> {
+    private final IUseCaseScheduler mScheduler;
+    private final List<Node<?>> mNodes;
+    private final Node<V> mResult;
+    /** Stores the timing of the last completed execution. */
+    private volatile Timing mTiming;
+
+    private CompositeUseCase(final IUseCaseScheduler scheduler, final List<Node<?>> nodes,
+            final Node<V> result) {
+        mScheduler = scheduler;
+        mNodes = nodes;
+        mResult = result;
+    }
+
+    /**
+     * Starts declaring a composite use case.
+     * @return {@link Builder}
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    protected void onExecute() {
+        final Execution execution = new Execution();
+        for (Node<?> node : mNodes) {
+            if (node.mDependsOn.length == 0) {
+                execution.start(node);
+            }
+        }
+    }
+
+    /**
+     * Gets the timing of the last execution that completed.
+     * @return {@link Timing}, or null if none has.
+     */
+    public Timing getTiming() {
+        return mTiming;
+    }
+
+    /**
+     * Declares the nodes of a {@link CompositeUseCase}.
+     */
+    public static final class Builder {
+        private final List<Node<?>> mNodes = new ArrayList<>();
+        private final Set<String> mNames = new HashSet<>();
+
+        private Builder() {}
+
+        /**
+         * Adds a node with a fixed request and no dependencies.
+         *
+         * @param <T> UseCase request.
+         * @param <R> UseCase response.
+         *
+         * @param name Unique name, used in the {@link Timing}.
+         * @param useCase {@link UseCase} of the node.
+         * @param request Request of the use case.
+         * @return {@link Node} to depend on or to build with.
+         */
+        public <T, R> Node<R> add(final String name, final UseCase<T, R> useCase, final T request) {
+            final Function<Inputs, T> fixed = inputs -> request;
+            return add(name, useCase, fixed, new Node<?>[0]);
+        }
+
+        /**
+         * Adds a node whose request is made from the results of others.
+         *
+         * @param <T> UseCase request.
+         * @param <R> UseCase response.
+         *
+         * @param name Unique name, used in the {@link Timing}.
+         * @param useCase {@link UseCase} of the node.
+         * @param request Makes the request once every input is ready.
+         * @param dependsOn Nodes whose results it needs.
+         * @return {@link Node} to depend on or to build with.
+         */
+        public <T, R> Node<R> add(final String name, final UseCase<T, R> useCase,
+                final Function<Inputs, T> request, final Node<?>... dependsOn) {
+            if (!mNames.add(name)) {
+                throw new IllegalArgumentException("Node already added: " + name);
+            }
+            for (Node<?> input : dependsOn) {
+                if (input.mIndex >= mNodes.size() || mNodes.get(input.mIndex) != input) {
+                    throw new IllegalArgumentException("Not a node of this builder: " + input);
+                }
+            }
+            final Node<R> node = new Node<>(name, mNodes.size(), useCase, request, dependsOn.clone());
+            for (Node<?> input : dependsOn) {
+                input.mDependents.add(node);
+            }
+            mNodes.add(node);
+            return node;
+        }
+
+        /**
+         * Creates the composite use case.
+         *
+         * @param <V> UseCase response.
+         *
+         * @param scheduler {@link IUseCaseScheduler} to execute nodes on.
+         * @param result Node whose response is the composite's response.
+         * @return {@link CompositeUseCase}
+         */
+        public <V> CompositeUseCase<V> build(final IUseCaseScheduler scheduler, final Node<V> result) {
+            if (result.mIndex >= mNodes.size() || mNodes.get(result.mIndex) != result) {
+                throw new IllegalArgumentException("Not a node of this builder: " + result);
+            }
+            return new CompositeUseCase<>(scheduler, new ArrayList<>(mNodes), result);
+        }
+    }
+
+    /**
+     * One use case in the graph.
+     * @param <R> UseCase response.
+     */
+    public static final class Node<R> {
+        private final String mName;
+        private final int mIndex;
+        private final UseCase<Object, R> mUseCase;
+        private final Function<Inputs, ?> mRequest;
+        private final Node<?>[] mDependsOn;
+        private final List<Node<?>> mDependents = new ArrayList<>();
+
+        @SuppressWarnings("unchecked")
+        private Node(final String name, final int index, final UseCase<?, R> useCase,
+                final Function<Inputs, ?> request, final Node<?>[] dependsOn) {
+            mName = name;
+            mIndex = index;
+            mUseCase = (UseCase<Object, R>) useCase;
+            mRequest = request;
+            mDependsOn = dependsOn;
+        }
+
+        public String getName() {
+            return mName;
+        }
+
+        @Override
+        public String toString() {
+            return "Node(" + mName + ")";
+        }
+    }
+
+    /**
+     * Results of the nodes a request is being made from.
+     */
+    public interface Inputs {
+        /**
+         * Gets the response of a node.
+         * @param <R> UseCase response.
+         * @param node One of the nodes depended on.
+         * @return Its response.
+         */
+        <R> R get(Node<R> node);
+    }
+
+    /**
+     * State of one execution of the composite.
+     */
+    private final class Execution implements Inputs {
+        private final long mStart = System.nanoTime();
+        private final Object[] mResults = new Object[mNodes.size()];
+        private final long[] mReady = new long[mNodes.size()];
+        private final long[] mStarted = new long[mNodes.size()];
+        private final long[] mFinished = new long[mNodes.size()];
+        /** Stores the number of inputs each node is still waiting for. */
+        private final AtomicIntegerArray mWaiting = new AtomicIntegerArray(mNodes.size());
+        private final AtomicInteger mRemaining = new AtomicInteger(mNodes.size());
+        private final AtomicBoolean mFailed = new AtomicBoolean();
+
+        Execution() {
+            for (Node<?> node : mNodes) {
+                mWaiting.set(node.mIndex, node.mDependsOn.length);
+            }
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <R> R get(final Node<R> node) {
+            return (R) mResults[node.mIndex];
+        }
+
+        void start(final Node<?> node) {
+            if (mFailed.get()) {
+                return;
+            }
+            mReady[node.mIndex] = System.nanoTime();
+            final NodeRunner runner = new NodeRunner(this, node);
+            try {
+                mScheduler.execute(runner, node.mRequest.apply(this), runner.mDone);
+            } catch (RejectedExecutionException ex) {
+                failed(node, ex);
+            } catch (RuntimeException ex) {
+                // Making the request threw.
+                failed(node, ex);
+            }
+        }
+
+        void passed(final Node<?> node, final Object response) {
+            mFinished[node.mIndex] = System.nanoTime();
+            mResults[node.mIndex] = response;
+            for (Node<?> dependent : node.mDependents) {
+                if (mWaiting.decrementAndGet(dependent.mIndex) == 0) {
+                    start(dependent);
+                }
+            }
+            if (mRemaining.decrementAndGet() == 0 && !mFailed.get()) {
+                mTiming = new Timing(this);
+                pass(get(mResult));
+            }
+        }
+
+        void failed(final Node<?> node, final Exception ex) {
+            mFinished[node.mIndex] = System.nanoTime();
+            if (mFailed.compareAndSet(false, true)) {
+                mTiming = new Timing(this);
+                fail(ex);
+            }
+        }
+    }
+
+    /**
+     * Executes one node's use case on the scheduler, so the scheduler's
+     * metrics and events see it, and records when it actually started.
+     */
+    private final class NodeRunner extends UseCase<Object, Object> {
+        private final Execution mExecution;
+        private final Node<?> mNode;
+        /** Forwards the node's completion to its runner. */
+        private final UseCase.Callback<Object> mForward = new UseCase.Callback<Object>() {
+            @Override
+            public void onSuccess(final Object response) {
+                pass(response);
+            }
+
+            @Override
+            public void onFailure(final Exception ex) {
+                fail(ex);
+            }
+        };
+        /** Callback of the runner itself. */
+        final UseCase.Callback<Object> mDone = new UseCase.Callback<Object>() {
+            @Override
+            public void onSuccess(final Object response) {
+                mExecution.passed(mNode, response);
+            }
+
+            @Override
+            public void onFailure(final Exception ex) {
+                mExecution.failed(mNode, ex);
+            }
+        };
+
+        NodeRunner(final Execution execution, final Node<?> node) {
+            mExecution = execution;
+            mNode = node;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        protected void onExecute() {
+            mExecution.mStarted[mNode.mIndex] = System.nanoTime();
+            final UseCase<Object, Object> useCase = (UseCase<Object, Object>) mNode.mUseCase;
+            useCase.setRequest(getRequest());
+            useCase.setCallback(mForward);
+            try {
+                useCase.onExecute();
+            } catch (RuntimeException ex) {
+                fail(ex);
+            }
+        }
+    }
+
+    /**
+     * When each node of one execution was ready, started and finished,
+     * relative to the start of the execution. Nodes that never ran have
+     * all three at -1.
+     */
+    public final class Timing {
+        private final List<NodeTiming> mNodeTimings;
+        private final List<String> mCriticalPath;
+        private final long mTotalNanos;
+
+        private Timing(final Execution execution) {
+            final int n = mNodes.size();
+            final boolean[] critical = new boolean[n];
+            final List<String> path = new ArrayList<>();
+            // Walk back from the node that finished last through whichever
+            // input finished last; that chain set the total time.
+            Node<?> node = null;
+            for (Node<?> candidate : mNodes) {
+                if (node == null || execution.mFinished[candidate.mIndex] > execution.mFinished[node.mIndex]) {
+                    node = candidate;
+                }
+            }
+            while (node != null && execution.mFinished[node.mIndex] != 0) {
+                critical[node.mIndex] = true;
+                path.add(0, node.mName);
+                Node<?> latest = null;
+                for (Node<?> input : node.mDependsOn) {
+                    if (latest == null || execution.mFinished[input.mIndex] > execution.mFinished[latest.mIndex]) {
+                        latest = input;
+                    }
+                }
+                node = latest;
+            }
+
+            final List<NodeTiming> timings = new ArrayList<>(n);
+            long end = execution.mStart;
+            for (Node<?> each : mNodes) {
+                final int i = each.mIndex;
+                end = Math.max(end, execution.mFinished[i]);
+                timings.add(new NodeTiming(each.mName,
+                        relative(execution, execution.mReady[i]),
+                        relative(execution, execution.mStarted[i]),
+                        relative(execution, execution.mFinished[i]), critical[i]));
+            }
+            mNodeTimings = Collections.unmodifiableList(timings);
+            mCriticalPath = Collections.unmodifiableList(path);
+            mTotalNanos = end - execution.mStart;
+        }
+
+        private long relative(final Execution execution, final long time) {
+            return time == 0 ? -1 : time - execution.mStart;
+        }
+
+        public List<NodeTiming> getNodes() {
+            return mNodeTimings;
+        }
+
+        /** @return Names of the nodes on the critical path, in order. */
+        public List<String> getCriticalPath() {
+            return mCriticalPath;
+        }
+
+        public long getTotalNanos() {
+            return mTotalNanos;
+        }
+
+        @Override
+        public String toString() {
+            final StringBuilder sb = new StringBuilder();
+            sb.append(String.format("total=%,dns critical=%s%n", mTotalNanos, mCriticalPath));
+            for (NodeTiming t : mNodeTimings) {
+                sb.append(String.format("  %s %-16s ready=%,dns wait=%,dns run=%,dns%n",
+                        t.isCritical() ? "*" : " ", t.getName(), t.getReadyNanos(),
+                        t.getWaitNanos(), t.getRunNanos()));
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Timing of one node.
+     */
+    public static final class NodeTiming {
+        private final String mName;
+        private final long mReady;
+        private final long mStarted;
+        private final long mFinished;
+        private final boolean mCritical;
+
+        private NodeTiming(final String name, final long ready, final long started,
+                final long finished, final boolean critical) {
+            mName = name;
+            mReady = ready;
+            mStarted = started;
+            mFinished = finished;
+            mCritical = critical;
+        }
+
+        public String getName() {
+            return mName;
+        }
+
+        /** @return When its inputs were all ready. */
+        public long getReadyNanos() {
+            return mReady;
+        }
+
+        /** @return Time from ready to starting on a worker. */
+        public long getWaitNanos() {
+            return mStarted < 0 ? -1 : mStarted - mReady;
+        }
+
+        /** @return Time from starting to completing. */
+        public long getRunNanos() {
+            return mFinished < 0 || mStarted < 0 ? -1 : mFinished - mStarted;
+        }
+
+        public boolean isCritical() {
+            return mCritical;
+        }
+    }
+}
@@ -0,0 +1,271 @@
+/*
+ * Copyright 2018 Group 5.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.psu.ist411.framework.domain_layer;
+
+import edu.psu.ist411.framework.metrics.SchedulerMetrics;
+import edu.psu.ist411.framework.metrics.TraceContext;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Implementation of {@link IUseCaseScheduler} that runs every use case on
+ * one dedicated thread, strictly in the order they were scheduled.
+ *
+ * Scheduling a use case is a single atomic exchange on a lock-free
+ * {@link MpscQueue}; the loop thread drains it. What the loop thread does
+ * when the queue is empty is set by the {@link WaitStrategy}, trading CPU
+ * for wakeup latency.
+ *
+ * A use case is bound to its request and callback only when the loop
+ * thread is about to run it, so the same instance may be scheduled again
+ * while an earlier scheduling of it is still queued.
+ *
+ * The loop thread is a daemon started on first use. A use case that
+ * throws is reported to the thread's uncaught exception handler and the
+ * loop carries on with the next one.
+ *
+ * @author Tyler Suehr
+ * @author Win Ton
+ * @author Steven Weber
+ * @author David Wong
+ */
+public class EventLoopScheduler implements IUseCaseScheduler {
+    /** Empty polls spun before yielding or parking. */
+    private static final int SPINS = 100;
+    /** Yields before parking. */
+    private static final int YIELDS = 10;
+
+    /**
+     * Defines what the loop thread does while it has nothing to run.
+     */
+    public enum WaitStrategy {
+        /** Spins briefly, then parks until woken. Uses no CPU while idle. */
+        PARK,
+        /** Spins briefly, then yields. Lower latency, burns CPU when idle. */
+        YIELD,
+        /** Never stops polling. Lowest latency, uses a whole core. */
+        BUSY_SPIN
+    }
+
+    /** Stores the ID of the channel this scheduler serves, or -1. */
+    private final byte mChannelId;
+    /** Stores the wait strategy of the loop thread. */
+    private final WaitStrategy mWait;
+    /** Stores this scheduler's metrics. */
+    private final SchedulerMetrics mMetrics;
+    /** Stores use cases waiting to run. */
+    private final MpscQueue<Task> mQueue = new MpscQueue<>();
+    /** Stores the loop thread, once started. */
+    private volatile Thread mThread;
+    /** True while the loop thread is parked, or about to be. */
+    private volatile boolean mParked;
+    /** True while the loop thread is running a use case. */
+    private volatile boolean mBusy;
+    /** True once {@link #stopExecution()} has been called. */
+    private volatile boolean mStopped;
+
+    public EventLoopScheduler() {
+        this((byte) -1, WaitStrategy.PARK);
+    }
+
+    /** Create for a channel with the given wait strategy. */
+    public EventLoopScheduler(final byte channelId, final WaitStrategy wait) {
+        mChannelId = channelId;
+        mWait = wait;
+        mMetrics = new SchedulerMetrics(
+                this::queueDepth,
+                () -> mBusy ? 1 : 0,
+                () -> mThread != null && !mStopped ? 1 : 0);
+    }
+
+    @Override
+    public <T, V> void execute(final UseCase<T, V> useCase, T request, UseCase.Callback<V> callback) {
+        mMetrics.onSubmitted();
+        if (mStopped) {
+            mMetrics.onRejected();
+            throw new RejectedExecutionException("Use case rejected from stopped " + this);
+        }
+        mQueue.offer(new Task(useCase, request, callback));
+        final Thread thread = getThread();
+        if (mParked) {
+            mParked = false;
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * Stops the loop thread after the use case it's running, if any,
+     * returns. Called from another thread this waits for that to happen.
+     *
+     * Use cases scheduled at the same time as this may be dropped.
+     *
+     * @return Use cases that never ran, in order, as {@link Runnable}.
+     */
+    @Override
+    public List<Runnable> stopExecution() {
+        mStopped = true;
+        final Thread thread = mThread;
+        final List<Runnable> pending = new ArrayList<>();
+        if (thread != null && thread != Thread.currentThread()) {
+            thread.interrupt();
+            LockSupport.unpark(thread);
+            boolean interrupted = false;
+            while (thread.isAlive()) {
+                try {
+                    thread.join();
+                } catch (InterruptedException ex) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        // The loop thread is gone (or is us), so we're the consumer now.
+        Task task;
+        while ((task = mQueue.poll()) != null) {
+            pending.add(task);
+        }
+        return pending;
+    }
+
+    @Override
+    public void prewarm() {
+        if (!mStopped) {
+            getThread();
+        }
+    }
+
+    public WaitStrategy getWaitStrategy() {
+        return mWait;
+    }
+
+    @Override
+    public SchedulerMetrics getMetrics() {
+        return mMetrics;
+    }
+
+    @Override
+    public String toString() {
+        return "EventLoopScheduler[channel=" + mChannelId + ", wait=" + mWait + "]";
+    }
+
+    /** Derives the queue depth from the counters, since the queue has no size. */
+    private int queueDepth() {
+        return (int) Math.max(0, mMetrics.getSubmitted() - mMetrics.getRejected()
+                - mMetrics.getCompleted() - (mBusy ? 1 : 0));
+    }
+
+    /**
+     * Lazy-loads the loop thread.
+     * @return {@link Thread}
+     */
+    private Thread getThread() {
+        Thread thread = mThread;
+        if (thread == null) {
+            synchronized (this) {
+                thread = mThread;
+                if (thread == null) {
+                    thread = new Thread(this::loop, "channel-" + mChannelId + "-loop");
+                    thread.setDaemon(true);
+                    thread.start();
+                    mThread = thread;
+                }
+            }
+        }
+        return thread;
+    }
+
+    private void loop() {
+        int idle = 0;
+        while (!mStopped) {
+            final Task task = mQueue.poll();
+            if (task != null) {
+                idle = 0;
+                run(task);
+            } else {
+                idle = idle(idle);
+            }
+        }
+    }
+
+    private void run(final Task task) {
+        final long start = System.nanoTime();
+        mBusy = true;
+        try {
+            task.run();
+        } catch (RuntimeException ex) {
+            mMetrics.onError();
+            final Thread thread = Thread.currentThread();
+            thread.getUncaughtExceptionHandler().uncaughtException(thread, ex);
+        } finally {
+            mBusy = false;
+            mMetrics.onCompleted(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Waits a little for more work according to the wait strategy.
+     * @param idle Number of empty polls so far.
+     * @return Number of empty polls including this one.
+     */
+    private int idle(final int idle) {
+        if (mWait == WaitStrategy.BUSY_SPIN || idle < SPINS) {
+            return idle + 1;
+        }
+        if (mWait == WaitStrategy.YIELD || idle < SPINS + YIELDS) {
+            Thread.yield();
+            return idle + 1;
+        }
+        // Announce the park before the last look, so a producer that
+        // offers after that look is sure to see the flag and unpark us.
+        mParked = true;
+        if (mQueue.isEmpty() && !mStopped) {
+            LockSupport.park(this);
+        }
+        mParked = false;
+        return 0;
+    }
+
+    /**
+     * One queued use case with what it was scheduled with.
+     */
+    private static final class Task implements Runnable {
+        final UseCase<Object, Object> useCase;
+        final Object request;
+        final UseCase.Callback<Object> callback;
+        final TraceContext.Handoff trace = TraceContext.capture();
+
+        @SuppressWarnings("unchecked")
+        Task(final UseCase<?, ?> useCase, final Object request, final UseCase.Callback<?> callback) {
+            this.useCase = (UseCase<Object, Object>) useCase;
+            this.request = request;
+            this.callback = (UseCase.Callback<Object>) callback;
+        }
+
+        /** Binds the use case to this scheduling of it and runs it. */
+        @Override
+        public void run() {
+            useCase.setRequest(request);
+            useCase.setCallback(callback);
+            useCase.setTrace(trace);
+            useCase.run();
+        }
+    }
+}
@@ -0,0 +1,377 @@
+/*
+ * Copyright 2018 Group 5.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.psu.ist411.framework.domain_layer;
+
+import edu.psu.ist411.framework.metrics.FairShareMetrics;
+import edu.psu.ist411.framework.metrics.TraceContext;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Pool of worker threads shared by several channels, each served in
+ * proportion to its weight so a channel with a deep backlog can't
+ * monopolize the workers.
+ *
+ * Every channel gets its own {@link IUseCaseScheduler} from
+ * {@link #scheduler(byte, int)}, with its own queue. Workers pick queues
+ * by deficit round-robin: channels with queued work take turns, and each
+ * turn adds {@code weight * QUANTUM_NANOS} to the channel's deficit. A
+ * channel is served while its deficit is positive and is charged the
+ * actual run time of each use case, so the pool's busy time splits by
+ * weight no matter how long individual use cases take. Channels that
+ * are idle don't accumulate credit.
+ *
+ * Workers are daemon threads started on first use.
+ *
+ * @author Tyler Suehr
+ * @author Win Ton
+ * @author Steven Weber
+ * @author David Wong
+ */
+public class FairSharePool {
+    /** Run time credited per unit of weight each turn. */
+    private static final long QUANTUM_NANOS = 100_000;
+    /** Most use cases a channel may have queued. */
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    /** Stores the number of workers. */
+    private final int mSize;
+    /** Guards every lane's queue and deficit, and the turn order. */
+    private final ReentrantLock mLock = new ReentrantLock();
+    /** Signalled when a lane gets work. */
+    private final Condition mNotEmpty = mLock.newCondition();
+    /** Stores lanes with queued work in turn order; first is served. */
+    private final ArrayDeque<Lane> mTurns = new ArrayDeque<>();
+    /** Stores every lane that hasn't been stopped. */
+    private final List<Lane> mLanes = new ArrayList<>();
+    /** Stores time spent running use cases of any lane. */
+    private final LongAdder mBusyNanos = new LongAdder();
+    /** Stores the sum of the weights of all lanes. */
+    private int mTotalWeight;
+    /** Stores the workers, once started. */
+    private Thread[] mWorkers;
+    private boolean mShutdown;
+
+    /**
+     * @param size Number of worker threads.
+     */
+    public FairSharePool(final int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Size must be at least 1!");
+        }
+        mSize = size;
+    }
+
+    /**
+     * Creates the scheduler of a channel served by this pool.
+     * @param channelId ID of the channel.
+     * @param weight Relative share of the pool, at least 1.
+     * @return {@link IUseCaseScheduler} for the channel.
+     */
+    public IUseCaseScheduler scheduler(final byte channelId, final int weight) {
+        return scheduler(channelId, weight, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates the scheduler of a channel served by this pool.
+     * @param channelId ID of the channel.
+     * @param weight Relative share of the pool, at least 1.
+     * @param capacity Most use cases it may have queued.
+     * @return {@link IUseCaseScheduler} for the channel.
+     */
+    public IUseCaseScheduler scheduler(final byte channelId, final int weight, final int capacity) {
+        if (weight < 1) {
+            throw new IllegalArgumentException("Weight must be at least 1!");
+        }
+        final Lane lane = new Lane(channelId, weight, capacity);
+        mLock.lock();
+        try {
+            mLanes.add(lane);
+            mTotalWeight += weight;
+        } finally {
+            mLock.unlock();
+        }
+        return lane;
+    }
+
+    /**
+     * Stops the workers. Queued use cases of every channel never run;
+     * their callbacks fail with {@link RejectedExecutionException}.
+     */
+    public void shutdown() {
+        final List<Item> dropped = new ArrayList<>();
+        mLock.lock();
+        try {
+            mShutdown = true;
+            for (Lane lane : mLanes) {
+                dropped.addAll(lane.mQueue);
+                lane.mQueue.clear();
+            }
+            mTurns.clear();
+            mNotEmpty.signalAll();
+        } finally {
+            mLock.unlock();
+        }
+        // Called back outside the lock, callbacks may schedule again.
+        for (Item item : dropped) {
+            item.callback.onFailure(new RejectedExecutionException("Use case dropped by shutdown of " + this));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "FairSharePool[size=" + mSize + "]";
+    }
+
+    private void enqueue(final Lane lane, final Item item) {
+        mLock.lock();
+        try {
+            if (mShutdown || lane.mStopped) {
+                throw new RejectedExecutionException("Use case rejected from stopped " + lane);
+            }
+            if (lane.mQueue.size() >= lane.mCapacity) {
+                throw new RejectedExecutionException("Use case rejected from full " + lane);
+            }
+            lane.mQueue.addLast(item);
+            if (!lane.mWaiting) {
+                lane.mWaiting = true;
+                mTurns.addLast(lane);
+            }
+            if (mWorkers == null) {
+                startWorkers();
+            }
+            mNotEmpty.signal();
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    /** Must hold {@link #mLock}. */
+    private void startWorkers() {
+        mWorkers = new Thread[mSize];
+        for (int i = 0; i < mSize; i++) {
+            mWorkers[i] = new Thread(this::work, "fair-share-" + i);
+            mWorkers[i].setDaemon(true);
+            mWorkers[i].start();
+        }
+    }
+
+    private void work() {
+        Lane charged = null;
+        long cost = 0;
+        while (true) {
+            final Item item;
+            mLock.lock();
+            try {
+                if (charged != null) {
+                    charged.mDeficit -= cost;
+                    charged.mRunning--;
+                }
+                item = next();
+            } finally {
+                mLock.unlock();
+            }
+            if (item == null) {
+                return;
+            }
+            charged = item.lane;
+            cost = item.execute();
+            mBusyNanos.add(cost);
+        }
+    }
+
+    /**
+     * Takes the next use case by deficit round-robin, waiting for one if
+     * needed. Must hold {@link #mLock}.
+     * @return Next {@link Item}, or null once shut down.
+     */
+    private Item next() {
+        while (true) {
+            if (mShutdown) {
+                return null;
+            }
+            final Lane lane = mTurns.peekFirst();
+            if (lane == null) {
+                mNotEmpty.awaitUninterruptibly();
+                continue;
+            }
+            if (lane.mDeficit <= 0) {
+                // Turn over; top up and go to the back.
+                lane.mDeficit += lane.mWeight * QUANTUM_NANOS;
+                mTurns.addLast(mTurns.pollFirst());
+                continue;
+            }
+            final Item item = lane.mQueue.pollFirst();
+            if (lane.mQueue.isEmpty()) {
+                // No credit is kept while idle, but debt is.
+                mTurns.pollFirst();
+                lane.mWaiting = false;
+                lane.mDeficit = Math.min(lane.mDeficit, 0);
+            }
+            lane.mRunning++;
+            return item;
+        }
+    }
+
+    /**
+     * One channel's queue, and its scheduler.
+     */
+    private final class Lane implements IUseCaseScheduler {
+        private final byte mChannelId;
+        private final int mWeight;
+        private final int mCapacity;
+        private final FairShareMetrics mMetrics;
+        /** Guarded by {@link #mLock} like everything below; running is only read without it. */
+        private final ArrayDeque<Item> mQueue = new ArrayDeque<>();
+        private long mDeficit;
+        private boolean mWaiting;
+        private boolean mStopped;
+        private volatile int mRunning;
+
+        Lane(final byte channelId, final int weight, final int capacity) {
+            mChannelId = channelId;
+            mWeight = weight;
+            mCapacity = capacity;
+            mMetrics = new FairShareMetrics(weight, this::targetShare, mBusyNanos::sum,
+                    this::queueDepth, () -> mRunning, () -> mSize);
+        }
+
+        @Override
+        public <T, V> void execute(final UseCase<T, V> useCase, T request, UseCase.Callback<V> callback) {
+            mMetrics.onSubmitted();
+            try {
+                enqueue(this, new Item(this, useCase, request, callback));
+            } catch (RejectedExecutionException ex) {
+                mMetrics.onRejected();
+                throw ex;
+            }
+        }
+
+        /**
+         * Removes this channel from the pool; the pool keeps running for
+         * the others.
+         * @return Use cases that never ran, as {@link Runnable} that run
+         *         them with the request and callback they were
+         *         scheduled with.
+         */
+        @Override
+        public List<Runnable> stopExecution() {
+            final List<Runnable> pending = new ArrayList<>();
+            mLock.lock();
+            try {
+                if (mStopped) {
+                    return pending;
+                }
+                mStopped = true;
+                mLanes.remove(this);
+                mTotalWeight -= mWeight;
+                mTurns.remove(this);
+                mWaiting = false;
+                pending.addAll(mQueue);
+                mQueue.clear();
+            } finally {
+                mLock.unlock();
+            }
+            return pending;
+        }
+
+        @Override
+        public FairShareMetrics getMetrics() {
+            return mMetrics;
+        }
+
+        @Override
+        public String toString() {
+            return "FairSharePool.Lane[channel=" + mChannelId + ", weight=" + mWeight + "]";
+        }
+
+        private double targetShare() {
+            mLock.lock();
+            try {
+                return mStopped || mTotalWeight == 0 ? 0 : (double) mWeight / mTotalWeight;
+            } finally {
+                mLock.unlock();
+            }
+        }
+
+        private int queueDepth() {
+            mLock.lock();
+            try {
+                return mQueue.size();
+            } finally {
+                mLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * One queued use case with what it was scheduled with.
+     */
+    private static final class Item implements Runnable {
+        final Lane lane;
+        final UseCase<Object, Object> useCase;
+        final Object request;
+        final UseCase.Callback<Object> callback;
+        final TraceContext.Handoff trace = TraceContext.capture();
+        final long enqueued = System.nanoTime();
+
+        @SuppressWarnings("unchecked")
+        Item(final Lane lane, final UseCase<?, ?> useCase, final Object request,
+                final UseCase.Callback<?> callback) {
+            this.lane = lane;
+            this.useCase = (UseCase<Object, Object>) useCase;
+            this.request = request;
+            this.callback = (UseCase.Callback<Object>) callback;
+        }
+
+        /**
+         * Runs the use case, bound to this scheduling of it, on a thread
+         * that took it from a stopped lane.
+         */
+        @Override
+        public void run() {
+            execute();
+        }
+
+        /**
+         * Runs the use case on the calling worker.
+         * @return Time spent in {@code onExecute}.
+         */
+        long execute() {
+            final long start = System.nanoTime();
+            lane.mMetrics.onStarted(start - enqueued);
+            useCase.setRequest(request);
+            useCase.setCallback(callback);
+            useCase.setTrace(trace);
+            try {
+                useCase.run();
+            } catch (RuntimeException ex) {
+                lane.mMetrics.onError();
+                final Thread thread = Thread.currentThread();
+                thread.getUncaughtExceptionHandler().uncaughtException(thread, ex);
+            }
+            final long runNanos = System.nanoTime() - start;
+            lane.mMetrics.onCompleted(runNanos);
+            return runNanos;
+        }
+    }
+}
@@ -0,0 +1,297 @@
+/*
+ * Copyright 2018 Group 5.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.psu.ist411.framework.domain_layer;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hashed timer wheel behind delayed and periodic use case scheduling.
+ *
+ * Time is cut into ticks of {@link #TICK_NANOS}. A timer goes in the
+ * bucket its deadline tick hashes to, along with how many turns of the
+ * wheel remain before it's due, so adding and cancelling are O(1) however
+ * many timers there are. One daemon ticker thread, shared by every
+ * scheduler, wakes once per tick and expires the current bucket.
+ *
+ * Threads that add or cancel timers never touch the buckets. They hand
+ * the timer over through a lock-free {@link MpscQueue} that the ticker
+ * drains at the start of each tick.
+ *
+ * An expired timer doesn't run its use case on the ticker. One of
+ * {@link #DISPATCH_THREADS} dispatch threads passes it to the use case's
+ * scheduler with {@link IUseCaseScheduler#execute}, so timers are only as
+ * precise as a tick plus that scheduler's queue. Anything that calls back
+ * within {@code execute}, like a rejection or a memoized response,
+ * therefore doesn't hold up the ticker. If {@link #DISPATCH_QUEUE} expired
+ * timers are already waiting, the ticker dispatches the next itself,
+ * delaying the following tick rather than dropping a timer.
+ *
+ * @author Tyler Suehr
+ * @author Win Ton
+ * @author Steven Weber
+ * @author David Wong
+ */
+final class HashedTimerWheel {
+    /** Length of one tick. */
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    /** Number of buckets; one turn of the wheel is about 5 seconds. */
+    private static final int WHEEL_SIZE = 512;
+    /** Most new timers placed per tick, so a flood can't stall expiry. */
+    private static final int MAX_ADDS_PER_TICK = 100_000;
+    /** Threads handing expired timers to their schedulers. */
+    private static final int DISPATCH_THREADS = 2;
+    /** Most expired timers waiting for a dispatch thread. */
+    private static final int DISPATCH_QUEUE = 4096;
+    /** Wheel shared by every scheduler. */
+    private static final HashedTimerWheel SHARED = new HashedTimerWheel();
+
+    /** Stores the first timer of each bucket. */
+    private final Timeout[] mBuckets = new Timeout[WHEEL_SIZE];
+    /** Stores timers added but not placed in a bucket yet. */
+    private final MpscQueue<Timeout> mAdded = new MpscQueue<>();
+    /** Stores cancelled timers not yet taken out of their bucket. */
+    private final MpscQueue<Timeout> mCancelled = new MpscQueue<>();
+    /** Stores when tick 0 began; deadlines are relative to it. */
+    private final long mStart = System.nanoTime();
+    private final AtomicBoolean mStarted = new AtomicBoolean();
+    /** Hands expired timers to their schedulers, off the ticker. */
+    private final ThreadPoolExecutor mDispatch = new ThreadPoolExecutor(
+            DISPATCH_THREADS, DISPATCH_THREADS, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(DISPATCH_QUEUE), r -> {
+                final Thread t = new Thread(r, "use-case-timer-dispatch");
+                t.setDaemon(true);
+                return t;
+            }, new ThreadPoolExecutor.CallerRunsPolicy());
+    /** Stores the current tick; touched by the ticker only. */
+    private long mTick;
+
+    private HashedTimerWheel() {}
+
+    /**
+     * Gets the wheel shared by every scheduler.
+     * @return {@link HashedTimerWheel}
+     */
+    static HashedTimerWheel shared() {
+        return SHARED;
+    }
+
+    /**
+     * Adds a timer that executes the use case on the scheduler once due.
+     *
+     * @param scheduler {@link IUseCaseScheduler} to execute on.
+     * @param useCase {@link UseCase} to execute.
+     * @param request Request of the use case.
+     * @param callback {@link UseCase.Callback}.
+     * @param delay Time until the first execution.
+     * @param period Time between executions, or 0 to execute once.
+     * @param unit Unit of the delay and period.
+     * @return {@link Timeout} whose cancel removes the timer.
+     */
+    <T, V> Timeout add(final IUseCaseScheduler scheduler, final UseCase<T, V> useCase,
+            final T request, final UseCase.Callback<V> callback,
+            final long delay, final long period, final TimeUnit unit) {
+        if (delay < 0 || period < 0) {
+            throw new IllegalArgumentException("Delay and period can't be negative!");
+        }
+        if (mStarted.compareAndSet(false, true)) {
+            final Thread ticker = new Thread(this::tick, "use-case-timer");
+            ticker.setDaemon(true);
+            ticker.start();
+        }
+        final long deadline = System.nanoTime() - mStart + unit.toNanos(delay);
+        final Timeout timeout = new Timeout(scheduler, useCase, request, callback,
+                deadline, unit.toNanos(period));
+        mAdded.offer(timeout);
+        return timeout;
+    }
+
+    private void tick() {
+        while (true) {
+            // Sleep until this tick is over.
+            final long end = mStart + (mTick + 1) * TICK_NANOS;
+            long now;
+            while ((now = System.nanoTime()) < end) {
+                LockSupport.parkNanos(end - now);
+            }
+            placeAdded();
+            removeCancelled();
+            expire(mBuckets[(int) (mTick & (WHEEL_SIZE - 1))], now - mStart);
+            mTick++;
+        }
+    }
+
+    private void placeAdded() {
+        Timeout timeout;
+        for (int i = 0; i < MAX_ADDS_PER_TICK && (timeout = mAdded.poll()) != null; i++) {
+            if (!timeout.isCancelled()) {
+                place(timeout);
+            }
+        }
+    }
+
+    private void removeCancelled() {
+        Timeout timeout;
+        while ((timeout = mCancelled.poll()) != null) {
+            if (timeout.mBucket >= 0) {
+                unlink(timeout);
+            }
+        }
+    }
+
+    private void place(final Timeout timeout) {
+        final long due = timeout.mDeadline / TICK_NANOS;
+        // Overdue timers go in the current bucket, not one already passed.
+        final long tick = Math.max(due, mTick);
+        timeout.mRounds = (due - mTick) / WHEEL_SIZE;
+        timeout.mBucket = (int) (tick & (WHEEL_SIZE - 1));
+        timeout.mPrev = null;
+        timeout.mNext = mBuckets[timeout.mBucket];
+        if (timeout.mNext != null) {
+            timeout.mNext.mPrev = timeout;
+        }
+        mBuckets[timeout.mBucket] = timeout;
+    }
+
+    private void unlink(final Timeout timeout) {
+        if (timeout.mPrev != null) {
+            timeout.mPrev.mNext = timeout.mNext;
+        } else {
+            mBuckets[timeout.mBucket] = timeout.mNext;
+        }
+        if (timeout.mNext != null) {
+            timeout.mNext.mPrev = timeout.mPrev;
+        }
+        timeout.mPrev = null;
+        timeout.mNext = null;
+        timeout.mBucket = -1;
+    }
+
+    private void expire(Timeout timeout, final long now) {
+        while (timeout != null) {
+            final Timeout next = timeout.mNext;
+            if (timeout.mRounds > 0) {
+                timeout.mRounds--;
+            } else if (timeout.mDeadline <= now) {
+                unlink(timeout);
+                mDispatch.execute(timeout);
+                if (timeout.mPeriod > 0 && !timeout.isCancelled()) {
+                    // Fixed rate: next deadline from the last one, not from
+                    // now, skipping any that have already passed.
+                    timeout.mDeadline += timeout.mPeriod;
+                    if (timeout.mDeadline <= now) {
+                        timeout.mDeadline += ((now - timeout.mDeadline) / timeout.mPeriod + 1) * timeout.mPeriod;
+                    }
+                    // Placed next tick; this bucket is being walked.
+                    mAdded.offer(timeout);
+                }
+            }
+            timeout = next;
+        }
+    }
+
+    /**
+     * One timer. Cancelling it stops any executions that haven't been
+     * handed to the scheduler yet; one already handed over still runs.
+     */
+    final class Timeout extends FutureTask<Void> implements UseCase.Callback<Object> {
+        private final IUseCaseScheduler mScheduler;
+        private final UseCase<Object, Object> mUseCase;
+        private final Object mRequest;
+        private final UseCase.Callback<Object> mCallback;
+        private final long mPeriod;
+        /** True while a periodic execution hasn't called back yet. */
+        private final AtomicBoolean mBusy = new AtomicBoolean();
+        /** Deadline relative to {@link #mStart}. Ticker only, like below. */
+        private long mDeadline;
+        private long mRounds;
+        private int mBucket = -1;
+        private Timeout mPrev;
+        private Timeout mNext;
+
+        @SuppressWarnings("unchecked")
+        Timeout(final IUseCaseScheduler scheduler, final UseCase<?, ?> useCase, final Object request,
+                final UseCase.Callback<?> callback, final long deadline, final long period) {
+            super(() -> {}, null);
+            mScheduler = scheduler;
+            mUseCase = (UseCase<Object, Object>) useCase;
+            mRequest = request;
+            mCallback = (UseCase.Callback<Object>) callback;
+            mDeadline = deadline;
+            mPeriod = period;
+        }
+
+        @Override
+        public boolean cancel(final boolean mayInterruptIfRunning) {
+            // Never interrupt: the "runner" would be the ticker.
+            if (!super.cancel(false)) {
+                return false;
+            }
+            mCancelled.offer(this);
+            return true;
+        }
+
+        /**
+         * Hands the use case to its scheduler. Called on a dispatch thread,
+         * or the ticker if the dispatch queue is full.
+         */
+        @Override
+        public void run() {
+            if (mPeriod == 0) {
+                dispatch(mCallback);
+                // Done either way; a rejection was reported to the callback.
+                super.run();
+                return;
+            }
+            // A periodic use case still running skips this turn rather
+            // than running twice at once.
+            if (mBusy.compareAndSet(false, true) && !dispatch(this)) {
+                mBusy.set(false);
+            }
+        }
+
+        private boolean dispatch(final UseCase.Callback<Object> callback) {
+            if (isCancelled()) {
+                return false;
+            }
+            try {
+                mScheduler.execute(mUseCase, mRequest, callback);
+                return true;
+            } catch (RejectedExecutionException ex) {
+                mCallback.onFailure(ex);
+                return false;
+            }
+        }
+
+        @Override
+        public void onSuccess(final Object response) {
+            mBusy.set(false);
+            mCallback.onSuccess(response);
+        }
+
+        @Override
+        public void onFailure(final Exception ex) {
+            mBusy.set(false);
+            mCallback.onFailure(ex);
+        }
+    }
+}
@@ -16,7 +16,11 @@
 
 package edu.psu.ist411.framework.domain_layer;
 
+import edu.psu.ist411.framework.metrics.SchedulerMetrics;
 import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 /**
  * Defines the scheduler that will schedule use case executions.
@@ -38,9 +42,116 @@ public interface IUseCaseScheduler {
      */
     <T, V> void execute(UseCase<T, V> useCase, T request, UseCase.Callback<V> callback);
 
+    /**
+     * Schedules execution of use case like {@link #execute}, returning a
+     * handle that can cancel it.
+     *
+     * Cancelling a use case that hasn't started yet keeps it from ever
+     * running. Cancelling with interruption also interrupts one that is
+     * already running.
+     *
+     * @param <T> UseCase request.
+     * @param <V> UseCase response.
+     *
+     * @param useCase {@link UseCase} to execute.
+     * @param request Request of the use case.
+     * @param callback {@link UseCase.Callback}.
+     * @return {@link Future} for cancelling, or null if this scheduler
+     *         doesn't support cancellation.
+     */
+    default <T, V> Future<?> submit(UseCase<T, V> useCase, T request, UseCase.Callback<V> callback) {
+        execute(useCase, request, callback);
+        return null;
+    }
+
+    /**
+     * Schedules execution of a use case over many requests in one go.
+     * Requests are split into chunks of {@code chunkSize}, worked through
+     * by at most {@code parallelism} use cases executed on this scheduler,
+     * so the scheduler hands off once per worker used rather than once per
+     * request.
+     *
+     * A use case only holds one request at a time, so each worker gets
+     * its own instance from {@code useCases}.
+     *
+     * @param <T> UseCase request.
+     * @param <V> UseCase response.
+     *
+     * @param useCases Creates a {@link UseCase} for each worker.
+     * @param requests Requests to run the use case with.
+     * @param chunkSize Requests a worker claims at a time.
+     * @param parallelism Most workers to use.
+     * @param callback {@link UseCase.BatchCallback}, completed once every
+     *        request has succeeded or failed.
+     */
+    default <T, V> void executeAll(Supplier<? extends UseCase<T, V>> useCases, List<T> requests,
+            int chunkSize, int parallelism, UseCase.BatchCallback<T, V> callback) {
+        new BatchRunner<>(useCases, requests, chunkSize, parallelism, callback).execute(this);
+    }
+
+    /**
+     * Schedules execution of use case after a delay, using the timer
+     * wheel shared by every scheduler. Once due it's executed like
+     * {@link #execute}, and a rejection is reported to the callback.
+     *
+     * @param <T> UseCase request.
+     * @param <V> UseCase response.
+     *
+     * @param useCase {@link UseCase} to execute.
+     * @param request Request of the use case.
+     * @param callback {@link UseCase.Callback}.
+     * @param delay Time to wait first.
+     * @param unit Unit of the delay.
+     * @return {@link Future} that cancels the timer.
+     */
+    default <T, V> Future<?> scheduleDelayed(UseCase<T, V> useCase, T request,
+            UseCase.Callback<V> callback, long delay, TimeUnit unit) {
+        return HashedTimerWheel.shared().add(this, useCase, request, callback, delay, 0, unit);
+    }
+
+    /**
+     * Schedules execution of use case every period after an initial
+     * delay, using the timer wheel shared by every scheduler. Deadlines
+     * are fixed: each is one period after the last, not after the use case
+     * finished. If the use case hasn't called back by its next deadline,
+     * that execution is skipped rather than run alongside.
+     *
+     * @param <T> UseCase request.
+     * @param <V> UseCase response.
+     *
+     * @param useCase {@link UseCase} to execute.
+     * @param request Request of the use case.
+     * @param callback {@link UseCase.Callback}, called for every execution.
+     * @param initialDelay Time until the first execution.
+     * @param period Time between executions, more than 0.
+     * @param unit Unit of the delay and period.
+     * @return {@link Future} that cancels the timer.
+     */
+    default <T, V> Future<?> scheduleAtFixedRate(UseCase<T, V> useCase, T request,
+            UseCase.Callback<V> callback, long initialDelay, long period, TimeUnit unit) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("Period must be more than 0!");
+        }
+        return HashedTimerWheel.shared().add(this, useCase, request, callback, initialDelay, period, unit);
+    }
+
     /**
      * Attempts to stop execution of all active and pending use cases.
      * @return List of {@link Runnable}.
      */
     List<Runnable> stopExecution();
+
+    /**
+     * Starts this scheduler's threads ahead of its first use case, so
+     * that use case doesn't pay for them. Does nothing by default.
+     */
+    default void prewarm() {}
+
+    /**
+     * Gets the metrics of this scheduler.
+     * @return {@link SchedulerMetrics}, or null if it isn't metered.
+     */
+    default SchedulerMetrics getMetrics() {
+        return null;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2018 Group 5.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.psu.ist411.framework.domain_layer;
+
+import edu.psu.ist411.framework.metrics.SchedulerMetrics;
+import java.util.List;
+import java.util.concurrent.Future;
+
+/**
+ * Scheduler that serves {@link UseCase.Memoizable} use cases from a
+ * {@link UseCaseCache} before handing anything to the scheduler it wraps.
+ *
+ * On a hit the callback is called straight away on the scheduling thread
+ * and the use case never runs, so there's no thread hop; {@link #submit}
+ * returns null then, as there's nothing left to cancel. Misses, and every
+ * use case that isn't memoizable, go to the wrapped scheduler as usual,
+ * so its metrics count only use cases that actually ran.
+ *
+ * @author Tyler Suehr
+ * @author Win Ton
+ * @author Steven Weber
+ * @author David Wong
+ */
+public final class MemoizingScheduler implements IUseCaseScheduler {
+    private final IUseCaseScheduler mDelegate;
+    private final UseCaseCache mCache;
+
+    /** Wraps a scheduler using {@link UseCaseCache#shared()}. */
+    public MemoizingScheduler(final IUseCaseScheduler delegate) {
+        this(delegate, UseCaseCache.shared());
+    }
+
+    public MemoizingScheduler(final IUseCaseScheduler delegate, final UseCaseCache cache) {
+        mDelegate = delegate;
+        mCache = cache;
+    }
+
+    @Override
+    public <T, V> void execute(UseCase<T, V> useCase, T request, UseCase.Callback<V> callback) {
+        if (!(useCase instanceof UseCase.Memoizable)) {
+            mDelegate.execute(useCase, request, callback);
+        } else if (!mCache.serve(useCase, request, callback)) {
+            mDelegate.execute(useCase, request, mCache.recording(useCase, request, callback));
+        }
+    }
+
+    @Override
+    public <T, V> Future<?> submit(UseCase<T, V> useCase, T request, UseCase.Callback<V> callback) {
+        if (!(useCase instanceof UseCase.Memoizable)) {
+            return mDelegate.submit(useCase, request, callback);
+        }
+        if (mCache.serve(useCase, request, callback)) {
+            return null;
+        }
+        return mDelegate.submit(useCase, request, mCache.recording(useCase, request, callback));
+    }
+
+    @Override
+    public List<Runnable> stopExecution() {
+        return mDelegate.stopExecution();
+    }
+
+    @Override
+    public void prewarm() {
+        mDelegate.prewarm();
+    }
+
+    @Override
+    public SchedulerMetrics getMetrics() {
+        return mDelegate.getMetrics();
+    }
+
+    /**
+     * Gets the scheduler use cases actually run on.
+     * @return {@link IUseCaseScheduler}
+     */
+    public IUseCaseScheduler getDelegate() {
+        return mDelegate;
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2018 Group 5.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.psu.ist411.framework.domain_layer;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * Unbounded lock-free queue for many producers and a single consumer.
+ *
+ * Producers swap themselves in as the new tail with one atomic exchange
+ * and then link the previous tail to their node, so they never retry or
+ * block each other. Only one thread may call {@link #poll()}.
+ *
+ * Between a producer's exchange and its link the queue may briefly look
+ * empty to the consumer; the element shows up on a later poll.
+ *
+ * @param <E> Element type.
+ *
+ * @author Tyler Suehr
+ * @author Win Ton
+ * @author Steven Weber
+ * @author David Wong
+ */
+final class MpscQueue<E> {
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<Node, Node> NEXT =
+            AtomicReferenceFieldUpdater.newUpdater(Node.class, Node.class, "next");
+
+    /** Most recently added node; producers contend here only. */
+    private final AtomicReference<Node<E>> mTail;
+    /** Node before the first element; touched by the consumer only. */
+    private Node<E> mHead;
+
+    MpscQueue() {
+        mHead = new Node<>(null);
+        mTail = new AtomicReference<>(mHead);
+    }
+
+    /**
+     * Adds an element at the tail. Safe from any thread.
+     * @param e Element, not null.
+     */
+    @SuppressWarnings("unchecked")
+    void offer(final E e) {
+        final Node<E> node = new Node<>(e);
+        final Node<E> prev = mTail.getAndSet(node);
+        NEXT.lazySet(prev, node);
+    }
+
+    /**
+     * Takes the element at the head. Consumer thread only.
+     * @return Element, or null if none is visible yet.
+     */
+    E poll() {
+        final Node<E> next = mHead.next;
+        if (next == null) {
+            return null;
+        }
+        final E e = next.value;
+        // The taken node becomes the new stub.
+        next.value = null;
+        mHead = next;
+        return e;
+    }
+
+    /**
+     * Checks if nothing has been added that wasn't polled. Consumer
+     * thread only.
+     * @return True if empty.
+     */
+    boolean isEmpty() {
+        return mHead == mTail.get();
+    }
+
+    private static final class Node<E> {
+        volatile Node<E> next;
+        E value;
+
+        Node(final E value) {
+            this.value = value;
+        }
+    }
+}
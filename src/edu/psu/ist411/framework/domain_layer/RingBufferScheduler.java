@@ -0,0 +1,424 @@
+/*
+ * Copyright 2018 Group 5.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.psu.ist411.framework.domain_layer;
+
+import edu.psu.ist411.framework.metrics.SchedulerMetrics;
+import edu.psu.ist411.framework.metrics.TraceContext;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Implementation of {@link IUseCaseScheduler} for high rates of small use
+ * cases, built on a preallocated ring of slots in the style of a disruptor.
+ *
+ * <b>Producers</b> claim the next sequence number with a CAS, fill in the
+ * slot it maps to and publish it by writing the slot's lap number. When
+ * every slot is still in use the use case is rejected, so memory stays
+ * bounded by the ring size.
+ *
+ * <b>The consumer</b> is one thread that drains every published slot in
+ * sequence order, up to {@link #MAX_BATCH} at a time. Each use case
+ * completes into its slot rather than calling back directly; once the
+ * batch has run the callbacks are invoked together, in order, and the
+ * slots are released with one write. A use case that completes later on
+ * another thread gets its slot detached and calls back directly when it
+ * does, so asynchronous use cases still work, at the cost of one
+ * replacement slot. A use case that throws completes as a failure with
+ * what it threw, so its slot is never left waiting.
+ *
+ * Like {@link EventLoopScheduler}, use cases run one at a time in
+ * scheduling order, and the consumer thread is a daemon started on first
+ * use.
+ *
+ * @author Tyler Suehr
+ * @author Win Ton
+ * @author Steven Weber
+ * @author David Wong
+ */
+public class RingBufferScheduler implements IUseCaseScheduler {
+    /** Default number of slots. */
+    private static final int DEFAULT_SIZE = 1024;
+    /** Most use cases run before their callbacks are invoked. */
+    private static final int MAX_BATCH = 64;
+    /** Empty polls spun before yielding or parking. */
+    private static final int SPINS = 100;
+    /** Yields before parking. */
+    private static final int YIELDS = 10;
+
+    /** Stores the ID of the channel this scheduler serves, or -1. */
+    private final byte mChannelId;
+    /** Stores the wait strategy of the consumer thread. */
+    private final EventLoopScheduler.WaitStrategy mWait;
+    /** Stores this scheduler's metrics. */
+    private final SchedulerMetrics mMetrics;
+    /** Stores the slots; an entry is replaced when its slot is detached. */
+    private final Slot[] mSlots;
+    /** Stores the lap each slot was last published in. */
+    private final AtomicIntegerArray mPublished;
+    private final int mMask;
+    private final int mShift;
+    /** Stores the next sequence to be claimed by a producer. */
+    private final AtomicLong mClaimed = new AtomicLong();
+    /** Stores the first sequence not yet released by the consumer. */
+    private final AtomicLong mReleased = new AtomicLong();
+    /** Stores the consumer thread, once started. */
+    private volatile Thread mThread;
+    /** True while the consumer thread is parked, or about to be. */
+    private volatile boolean mParked;
+    /** True once {@link #stopExecution()} has been called. */
+    private volatile boolean mStopped;
+
+    public RingBufferScheduler() {
+        this((byte) -1, DEFAULT_SIZE, EventLoopScheduler.WaitStrategy.PARK);
+    }
+
+    /**
+     * Create for a channel.
+     * @param channelId ID of the channel, or -1.
+     * @param size Number of slots, a power of two.
+     * @param wait What the consumer does while there's nothing to run.
+     */
+    public RingBufferScheduler(final byte channelId, final int size,
+            final EventLoopScheduler.WaitStrategy wait) {
+        if (size < 1 || Integer.bitCount(size) != 1) {
+            throw new IllegalArgumentException("Size must be a power of two!");
+        }
+        mChannelId = channelId;
+        mWait = wait;
+        mSlots = new Slot[size];
+        mPublished = new AtomicIntegerArray(size);
+        for (int i = 0; i < size; i++) {
+            mSlots[i] = new Slot();
+            mPublished.set(i, -1);
+        }
+        mMask = size - 1;
+        mShift = Integer.numberOfTrailingZeros(size);
+        mMetrics = new SchedulerMetrics(
+                () -> (int) (mClaimed.get() - mReleased.get()),
+                () -> 0,
+                () -> mThread != null && !mStopped ? 1 : 0);
+    }
+
+    @Override
+    public <T, V> void execute(final UseCase<T, V> useCase, T request, UseCase.Callback<V> callback) {
+        mMetrics.onSubmitted();
+        final long seq = claim();
+        final int index = (int) seq & mMask;
+        final Slot slot = mSlots[index];
+        slot.useCase = useCase;
+        slot.request = request;
+        slot.callback = callback;
+        slot.trace = TraceContext.capture();
+        mPublished.lazySet(index, (int) (seq >>> mShift));
+
+        final Thread thread = getThread();
+        if (mParked) {
+            mParked = false;
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * Stops the consumer thread after the batch it's running, if any,
+     * completes. Called from another thread this waits for that to happen.
+     *
+     * Use cases scheduled at the same time as this may be dropped.
+     *
+     * @return Use cases that never ran, in order, as {@link Runnable}
+     *         that run them with the request, callback and trace they
+     *         were scheduled with.
+     */
+    @Override
+    public List<Runnable> stopExecution() {
+        mStopped = true;
+        final Thread thread = mThread;
+        final List<Runnable> pending = new ArrayList<>();
+        if (thread == Thread.currentThread()) {
+            // Called by a use case; the loop stops after this batch.
+            return pending;
+        }
+        if (thread != null) {
+            thread.interrupt();
+            LockSupport.unpark(thread);
+            boolean interrupted = false;
+            while (thread.isAlive()) {
+                try {
+                    thread.join();
+                } catch (InterruptedException ex) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        for (long seq = mReleased.get(); isPublished(seq); seq++) {
+            final Slot slot = mSlots[(int) seq & mMask];
+            pending.add(new Leftover(slot));
+            slot.clear();
+        }
+        return pending;
+    }
+
+    @Override
+    public void prewarm() {
+        if (!mStopped) {
+            getThread();
+        }
+    }
+
+    public int getCapacity() {
+        return mSlots.length;
+    }
+
+    public EventLoopScheduler.WaitStrategy getWaitStrategy() {
+        return mWait;
+    }
+
+    @Override
+    public SchedulerMetrics getMetrics() {
+        return mMetrics;
+    }
+
+    @Override
+    public String toString() {
+        return "RingBufferScheduler[channel=" + mChannelId + ", size=" + mSlots.length + "]";
+    }
+
+    /**
+     * Claims the next sequence, or rejects if the ring is full.
+     * @return Claimed sequence.
+     */
+    private long claim() {
+        while (true) {
+            if (mStopped) {
+                mMetrics.onRejected();
+                throw new RejectedExecutionException("Use case rejected from stopped " + this);
+            }
+            final long seq = mClaimed.get();
+            if (seq - mReleased.get() >= mSlots.length) {
+                mMetrics.onRejected();
+                throw new RejectedExecutionException("Use case rejected from full " + this);
+            }
+            if (mClaimed.compareAndSet(seq, seq + 1)) {
+                return seq;
+            }
+        }
+    }
+
+    private boolean isPublished(final long seq) {
+        return mPublished.get((int) seq & mMask) == (int) (seq >>> mShift);
+    }
+
+    /**
+     * Lazy-loads the consumer thread.
+     * @return {@link Thread}
+     */
+    private Thread getThread() {
+        Thread thread = mThread;
+        if (thread == null) {
+            synchronized (this) {
+                thread = mThread;
+                if (thread == null) {
+                    thread = new Thread(this::loop, "channel-" + mChannelId + "-ring");
+                    thread.setDaemon(true);
+                    thread.start();
+                    mThread = thread;
+                }
+            }
+        }
+        return thread;
+    }
+
+    private void loop() {
+        long next = mReleased.get();
+        int idle = 0;
+        while (!mStopped) {
+            int batch = 0;
+            while (batch < MAX_BATCH && isPublished(next + batch)) {
+                run(mSlots[(int) (next + batch) & mMask]);
+                batch++;
+            }
+            if (batch == 0) {
+                idle = idle(idle, next);
+                continue;
+            }
+            idle = 0;
+            for (int i = 0; i < batch; i++) {
+                final int index = (int) (next + i) & mMask;
+                if (!mSlots[index].deliver()) {
+                    // Still running elsewhere; it keeps the old slot.
+                    mSlots[index] = new Slot();
+                }
+            }
+            next += batch;
+            mReleased.lazySet(next);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void run(final Slot slot) {
+        final UseCase<Object, Object> useCase = (UseCase<Object, Object>) slot.useCase;
+        useCase.setRequest(slot.request);
+        useCase.setCallback(slot);
+        useCase.setTrace(slot.trace);
+        final long start = System.nanoTime();
+        try {
+            useCase.run();
+        } catch (RuntimeException ex) {
+            mMetrics.onError();
+            // Otherwise the slot stays pending and the ring stalls on it.
+            slot.onFailure(ex);
+        } finally {
+            mMetrics.onCompleted(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Waits a little for more work according to the wait strategy.
+     * @param idle Number of empty polls so far.
+     * @param next Next sequence the consumer expects.
+     * @return Number of empty polls including this one.
+     */
+    private int idle(final int idle, final long next) {
+        if (mWait == EventLoopScheduler.WaitStrategy.BUSY_SPIN || idle < SPINS) {
+            return idle + 1;
+        }
+        if (mWait == EventLoopScheduler.WaitStrategy.YIELD || idle < SPINS + YIELDS) {
+            Thread.yield();
+            return idle + 1;
+        }
+        // Announce the park before the last look, so a producer that
+        // publishes after that look is sure to see the flag and unpark us.
+        mParked = true;
+        if (!isPublished(next) && !mStopped) {
+            LockSupport.park(this);
+        }
+        mParked = false;
+        return 0;
+    }
+
+    /** A use case taken out of the ring unrun, with what it was scheduled with. */
+    private static final class Leftover implements Runnable {
+        private final UseCase<Object, Object> mUseCase;
+        private final Object mRequest;
+        private final UseCase.Callback<Object> mCallback;
+        private final TraceContext.Handoff mTrace;
+
+        @SuppressWarnings("unchecked")
+        Leftover(final Slot slot) {
+            mUseCase = (UseCase<Object, Object>) slot.useCase;
+            mRequest = slot.request;
+            mCallback = slot.callback();
+            mTrace = slot.trace;
+        }
+
+        /** Binds the use case to this scheduling of it and runs it. */
+        @Override
+        public void run() {
+            mUseCase.setRequest(mRequest);
+            mUseCase.setCallback(mCallback);
+            mUseCase.setTrace(mTrace);
+            mUseCase.run();
+        }
+    }
+
+    /**
+     * One ring entry. Also the callback its use case completes into, so
+     * the consumer can invoke callbacks after the batch.
+     */
+    private static final class Slot implements UseCase.Callback<Object> {
+        private static final int PENDING = 0;
+        private static final int SUCCEEDED = 1;
+        private static final int FAILED = 2;
+        private static final int DETACHED = 3;
+
+        UseCase<?, ?> useCase;
+        Object request;
+        UseCase.Callback<?> callback;
+        TraceContext.Handoff trace;
+        private Object mResponse;
+        private Exception mError;
+        private final AtomicInteger mState = new AtomicInteger();
+
+        @Override
+        public void onSuccess(final Object response) {
+            mResponse = response;
+            if (!mState.compareAndSet(PENDING, SUCCEEDED) && mState.get() == DETACHED) {
+                callback().onSuccess(response);
+            }
+        }
+
+        @Override
+        public void onFailure(final Exception ex) {
+            mError = ex;
+            if (!mState.compareAndSet(PENDING, FAILED) && mState.get() == DETACHED) {
+                callback().onFailure(ex);
+            }
+        }
+
+        /**
+         * Invokes the callback if the use case has completed, then
+         * readies the slot for reuse.
+         * @return False if the use case hasn't completed and the slot now
+         *         belongs to it alone.
+         */
+        boolean deliver() {
+            if (mState.compareAndSet(PENDING, DETACHED)) {
+                return false;
+            }
+            final UseCase.Callback<Object> callback = callback();
+            final int state = mState.get();
+            final Object response = mResponse;
+            final Exception error = mError;
+            final TraceContext.Handoff trace = this.trace;
+            clear();
+            // Delivered after the batch, so put the request's trace back.
+            final TraceContext previous = trace == null ? null : TraceContext.set(trace.getTrace());
+            try {
+                if (state == SUCCEEDED) {
+                    callback.onSuccess(response);
+                } else {
+                    callback.onFailure(error);
+                }
+            } finally {
+                if (trace != null) { TraceContext.set(previous); }
+            }
+            return true;
+        }
+
+        void clear() {
+            useCase = null;
+            request = null;
+            callback = null;
+            trace = null;
+            mResponse = null;
+            mError = null;
+            mState.lazySet(PENDING);
+        }
+
+        @SuppressWarnings("unchecked")
+        private UseCase.Callback<Object> callback() {
+            return (UseCase.Callback<Object>) callback;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2018 Group 5.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.psu.ist411.framework.domain_layer;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Process-wide registry of channels shared between presenters.
+ *
+ * The first {@link #acquire(byte)} of a channel ID creates the channel;
+ * later calls return the same one. Each acquire must be matched by one
+ * {@link #release(IChannel)}, and when the last holder releases it the
+ * channel's scheduler is stopped and the channel forgotten. Acquiring the
+ * ID again after that creates a fresh channel.
+ *
+ * Shared channels serve {@link UseCase.Memoizable} use cases through a
+ * {@link MemoizingScheduler}.
+ *
+ * @author Tyler Suehr
+ * @author Win Ton
+ * @author Steven Weber
+ * @author David Wong
+ */
+public final class SharedChannelRegistry {
+    /** Stores shared channels and their holder counts by channel ID. */
+    private static final Map<Byte, Entry> CHANNELS = new HashMap<>();
+
+    private SharedChannelRegistry() {}
+
+    /**
+     * Gets the shared channel with the given ID, creating it if needed.
+     * @param channelId ID of the channel.
+     * @return Shared {@link IChannel}.
+     */
+    public static synchronized IChannel acquire(final byte channelId) {
+        Entry entry = CHANNELS.get(channelId);
+        if (entry == null) {
+            // Every presenter's use cases share it, so some will schedule
+            // nested ones and wait; keep those off the bounded pool.
+            entry = new Entry(new ChannelImpl(channelId, new MemoizingScheduler(
+                    new UseCaseSchedulerImpl(channelId, UseCaseSchedulerImpl.NestedPolicy.COMPENSATE))));
+            CHANNELS.put(channelId, entry);
+        }
+        entry.holders++;
+        return entry.channel;
+    }
+
+    /**
+     * Gives up one hold on a shared channel.
+     * @param channel {@link IChannel} returned by {@link #acquire(byte)}.
+     * @return True if this was the last holder and the channel was stopped.
+     */
+    public static synchronized boolean release(final IChannel channel) {
+        final Entry entry = CHANNELS.get(channel.getId());
+        if (entry == null || entry.channel != channel) {
+            throw new IllegalArgumentException("Not a shared channel: " + channel);
+        }
+        if (--entry.holders > 0) {
+            return false;
+        }
+        CHANNELS.remove(channel.getId());
+        channel.getScheduler().stopExecution();
+        return true;
+    }
+
+    /**
+     * Gets how many holders a shared channel has.
+     * @param channelId ID of the channel.
+     * @return Number of holders, 0 if it isn't shared.
+     */
+    public static synchronized int holders(final byte channelId) {
+        final Entry entry = CHANNELS.get(channelId);
+        return entry == null ? 0 : entry.holders;
+    }
+
+    private static final class Entry {
+        final IChannel channel;
+        int holders;
+
+        Entry(final IChannel channel) {
+            this.channel = channel;
+        }
+    }
+}
@@ -16,6 +16,10 @@
 
 package edu.psu.ist411.framework.domain_layer;
 
+import edu.psu.ist411.framework.data_layer.IRepoCallbacks;
+import edu.psu.ist411.framework.metrics.TraceContext;
+import java.util.List;
+
 /**
  * Single executable task that takes a request and produces a response,
  * which allows for total abstraction of all business logic in the program.
@@ -39,10 +43,15 @@ package edu.psu.ist411.framework.domain_layer;
  * @author David Wong
  */
 public abstract class UseCase<T, V> {
+    /** Set system property {@code ist411.usecase.log=false} to stop logging completions. */
+    private static final boolean LOG = !"false".equals(System.getProperty("ist411.usecase.log"));
+
     /** Stores reference to callback. */
     private Callback<V> mCallback;
     /** Stores reference to request. */
     private T mRequest;
+    /** Stores the trace captured when scheduled, null if not sampled. */
+    private TraceContext.Handoff mTrace;
 
     public UseCase() {}
 
@@ -54,8 +63,10 @@ public abstract class UseCase<T, V> {
      * @param response UseCase response.
      */
     protected final void pass(final V response) {
-        System.out.println(getClass().getSimpleName()
-                .toUpperCase() + ": Success!");
+        if (LOG) {
+            System.out.println(getClass().getSimpleName()
+                    .toUpperCase() + ": Success!");
+        }
         mCallback.onSuccess(response);
     }
 
@@ -64,15 +75,101 @@ public abstract class UseCase<T, V> {
      * @param ex Reason why it failed.
      */
     protected final void fail(final Exception ex) {
-        System.out.println(getClass().getSimpleName()
-                .toUpperCase() + ": Failed!");
+        if (LOG) {
+            System.out.println(getClass().getSimpleName()
+                    .toUpperCase() + ": Failed!");
+        }
         mCallback.onFailure(ex);
     }
 
+    /**
+     * Convenience method for publishing a partial response before the
+     * use case completes. Ignored unless the callback is a
+     * {@link ProgressCallback}.
+     *
+     * @param partial Partial UseCase response.
+     */
+    protected final void publish(final V partial) {
+        if (mCallback instanceof ProgressCallback) {
+            ((ProgressCallback<V>) mCallback).onProgress(partial);
+        }
+    }
+
+    /**
+     * Convenience method for consuming a streamed repository result in
+     * constant memory. At most {@code window} chunks are requested ahead
+     * of the consumer; each chunk handled requests one more.
+     *
+     * The use case passes with {@link StreamConsumer#onComplete()} once
+     * the stream completes, or fails if it is not available.
+     *
+     * @param <E> Element type of the stream.
+     * @param window Number of chunks to keep requested.
+     * @param consumer {@link StreamConsumer}.
+     * @return {@link IRepoCallbacks.IStream} to hand to the repository.
+     */
+    protected final <E> IRepoCallbacks.IStream<E> consume(final int window, final StreamConsumer<E, V> consumer) {
+        return new IRepoCallbacks.IStream<E>() {
+            private IRepoCallbacks.ISubscription mSubscription;
+
+            @Override
+            public void onSubscribe(IRepoCallbacks.ISubscription subscription) {
+                mSubscription = subscription;
+                subscription.request(window);
+            }
+
+            @Override
+            public void onNext(List<E> chunk) {
+                consumer.onChunk(chunk);
+                mSubscription.request(1);
+            }
+
+            @Override
+            public void onComplete() {
+                pass(consumer.onComplete());
+            }
+
+            @Override
+            public void onNotAvailable(Exception ex) {
+                fail(ex);
+            }
+        };
+    }
+
     public final void setCallback(final Callback<V> callback) {
         mCallback = callback;
     }
 
+    /**
+     * Sets the trace to resume when the use case runs. Schedulers set it
+     * from {@link TraceContext#capture()} on the scheduling thread.
+     * @param trace {@link TraceContext.Handoff}, or null if not sampled.
+     */
+    final void setTrace(final TraceContext.Handoff trace) {
+        mTrace = trace;
+    }
+
+    /**
+     * Runs {@link #onExecute()} with the request's trace current, recording
+     * how long it was queued and how long it ran. Without a trace this is
+     * just {@link #onExecute()}.
+     */
+    final void run() {
+        final TraceContext.Handoff trace = mTrace;
+        if (trace == null) {
+            onExecute();
+            return;
+        }
+        final TraceContext previous = trace.resume();
+        final long start = System.nanoTime();
+        try {
+            onExecute();
+        } finally {
+            trace.getTrace().record(getClass().getSimpleName(), start, System.nanoTime());
+            TraceContext.set(previous);
+        }
+    }
+
     public final void setRequest(final T request) {
         mRequest = request;
     }
@@ -82,11 +179,63 @@ public abstract class UseCase<T, V> {
     }
 
     /**
-     * Defines completion events for the use case.
+     * Defines completion events for the use case. While these run,
+     * {@link TraceContext#current()} is the request's trace if it's sampled.
      * @param <V> UseCase response.
      */
     public interface Callback<V> {
         void onSuccess(V response);
         void onFailure(Exception ex);
     }
+
+    /**
+     * Marks a use case whose response depends only on its request and on
+     * data whose changes are reported to {@link UseCaseCache}. A
+     * {@link MemoizingScheduler} then serves repeat requests from the
+     * cache.
+     *
+     * Every caller gets its own copy of a cached response from
+     * {@link #copyResponse(Object)}; a use case with a mutable response
+     * must override it so one caller can't change what the next is served.
+     */
+    public interface Memoizable<V> {
+        /**
+         * Copies a response that is cached or served from the cache.
+         * @param response Response to copy.
+         * @return The copy, or the response itself if it is immutable.
+         */
+        default V copyResponse(final V response) {
+            return response;
+        }
+    }
+
+    /**
+     * Callback that also receives partial responses.
+     * @param <V> UseCase response.
+     */
+    public interface ProgressCallback<V> extends Callback<V> {
+        void onProgress(V partial);
+    }
+
+    /**
+     * Receives the results of one use case run over many requests. The
+     * per-request methods may be called from several threads at once.
+     * @param <T> UseCase request.
+     * @param <V> UseCase response.
+     */
+    public interface BatchCallback<T, V> {
+        default void onItem(T request, V response) {}
+        default void onItemFailure(T request, Exception ex) {}
+        void onComplete(BatchResult<T, V> result);
+    }
+
+    /**
+     * Handles chunks of a streamed repository result.
+     * @param <E> Element type of the stream.
+     * @param <V> UseCase response.
+     */
+    public interface StreamConsumer<E, V> {
+        void onChunk(List<E> chunk);
+        V onComplete();
+    }
 }
\ No newline at end of file
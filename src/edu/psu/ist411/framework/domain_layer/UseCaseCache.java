@@ -0,0 +1,263 @@
+/*
+ * Copyright 2018 Group 5.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.psu.ist411.framework.domain_layer;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of {@link UseCase.Memoizable} responses, keyed by use case
+ * class and request.
+ *
+ * Entries expire after a time-to-live and the least recently used entry is
+ * dropped once the cache is full. Only successful responses are cached,
+ * and each is copied on the way in and out, so no caller shares it.
+ *
+ * Whatever changes the data behind a memoized use case must invalidate
+ * it; repositories report their {@code save} and {@code delete} through
+ * an invalidation listener wired to {@link #invalidate(Object)}. A
+ * response from a use case that started before an invalidation isn't
+ * cached, since it may have read the old data.
+ *
+ * @author Tyler Suehr
+ * @author Win Ton
+ * @author Steven Weber
+ * @author David Wong
+ */
+public final class UseCaseCache {
+    /** System property with the shared cache's maximum entries. */
+    public static final String SIZE_PROPERTY = "ist411.memo.size";
+    /** System property with the shared cache's TTL in ms. */
+    public static final String TTL_PROPERTY = "ist411.memo.ttl";
+    private static final int DEFAULT_SIZE = 1024;
+    private static final long DEFAULT_TTL_MILLIS = 30_000;
+
+    private final int mMaxSize;
+    private final long mTtlNanos;
+    /** Stores entries in access order, guarded by this. */
+    private final LinkedHashMap<Key, CachedResponse> mEntries;
+    /** Counts invalidations, guarded by this. */
+    private long mGeneration;
+    private final LongAdder mHits = new LongAdder();
+    private final LongAdder mMisses = new LongAdder();
+
+    /** Lazily creates the shared cache. */
+    private static final class Shared {
+        static final UseCaseCache INSTANCE = new UseCaseCache(
+                Integer.getInteger(SIZE_PROPERTY, DEFAULT_SIZE),
+                Long.getLong(TTL_PROPERTY, DEFAULT_TTL_MILLIS), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Gets the cache used by the framework's schedulers. Its size and TTL
+     * are read from {@link #SIZE_PROPERTY} and {@link #TTL_PROPERTY} when
+     * first used.
+     * @return {@link UseCaseCache}
+     */
+    public static UseCaseCache shared() {
+        return Shared.INSTANCE;
+    }
+
+    /**
+     * @param maxSize Most entries kept.
+     * @param ttl How long an entry is served.
+     * @param unit {@link TimeUnit} of the TTL.
+     */
+    public UseCaseCache(final int maxSize, final long ttl, final TimeUnit unit) {
+        if (maxSize < 1 || ttl < 0) {
+            throw new IllegalArgumentException("Size must be positive and TTL not negative!");
+        }
+        mMaxSize = maxSize;
+        mTtlNanos = unit.toNanos(ttl);
+        mEntries = new LinkedHashMap<Key, CachedResponse>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, CachedResponse> eldest) {
+                return size() > mMaxSize;
+            }
+        };
+    }
+
+    /**
+     * Calls back with the cached response, if there is a live one, on the
+     * calling thread.
+     * @return True if the callback was called.
+     */
+    <V> boolean serve(final UseCase<?, V> useCase, final Object request, final UseCase.Callback<V> callback) {
+        final CachedResponse entry;
+        synchronized (this) {
+            final Key key = new Key(useCase.getClass(), request);
+            final CachedResponse found = mEntries.get(key);
+            if (found != null && System.nanoTime() - found.created > mTtlNanos) {
+                mEntries.remove(key);
+                entry = null;
+            } else {
+                entry = found;
+            }
+        }
+        if (entry == null) {
+            mMisses.increment();
+            return false;
+        }
+        mHits.increment();
+        @SuppressWarnings("unchecked")
+        final V response = (V) entry.response;
+        callback.onSuccess(copy(useCase, response));
+        return true;
+    }
+
+    /**
+     * Wraps a callback so a successful response is cached on its way
+     * through.
+     */
+    <V> UseCase.Callback<V> recording(final UseCase<?, V> useCase, final Object request,
+            final UseCase.Callback<V> callback) {
+        final long generation;
+        synchronized (this) {
+            generation = mGeneration;
+        }
+        return new Recording<>(useCase, new Key(useCase.getClass(), request), generation, callback);
+    }
+
+    /**
+     * Drops every entry whose request equals the given one, whatever the
+     * use case, e.g. the ID of a user that was saved.
+     * @param request Request to drop.
+     */
+    public synchronized void invalidate(final Object request) {
+        mGeneration++;
+        for (Iterator<Key> it = mEntries.keySet().iterator(); it.hasNext();) {
+            if (Objects.equals(it.next().request, request)) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Drops every entry of a use case class.
+     * @param type Class of the use case.
+     */
+    public synchronized void invalidate(final Class<?> type) {
+        mGeneration++;
+        mEntries.keySet().removeIf(key -> key.type == type);
+    }
+
+    /** Drops every entry. */
+    public synchronized void invalidateAll() {
+        mGeneration++;
+        mEntries.clear();
+    }
+
+    public synchronized int size() {
+        return mEntries.size();
+    }
+
+    public long getHits() {
+        return mHits.sum();
+    }
+
+    public long getMisses() {
+        return mMisses.sum();
+    }
+
+    private synchronized void put(final Key key, final long generation, final Object response) {
+        if (generation == mGeneration) {
+            mEntries.put(key, new CachedResponse(response));
+        }
+    }
+
+    private static final class Key {
+        final Class<?> type;
+        final Object request;
+
+        Key(final Class<?> type, final Object request) {
+            this.type = type;
+            this.request = request;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) o;
+            return type == other.type && Objects.equals(request, other.request);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * type.hashCode() + Objects.hashCode(request);
+        }
+    }
+
+    /**
+     * Copies a response with the use case's
+     * {@link UseCase.Memoizable#copyResponse(Object)}.
+     */
+    @SuppressWarnings("unchecked")
+    private static <V> V copy(final UseCase<?, V> useCase, final V response) {
+        return useCase instanceof UseCase.Memoizable
+                ? ((UseCase.Memoizable<V>) useCase).copyResponse(response)
+                : response;
+    }
+
+    private static final class CachedResponse {
+        final Object response;
+        final long created = System.nanoTime();
+
+        CachedResponse(final Object response) {
+            this.response = response;
+        }
+    }
+
+    /** Caches the response, then passes everything on. */
+    private final class Recording<V> implements UseCase.ProgressCallback<V> {
+        private final UseCase<?, V> useCase;
+        private final Key key;
+        private final long generation;
+        private final UseCase.Callback<V> callback;
+
+        Recording(final UseCase<?, V> useCase, final Key key, final long generation,
+                final UseCase.Callback<V> callback) {
+            this.useCase = useCase;
+            this.key = key;
+            this.generation = generation;
+            this.callback = callback;
+        }
+
+        @Override
+        public void onSuccess(V response) {
+            put(key, generation, copy(useCase, response));
+            callback.onSuccess(response);
+        }
+
+        @Override
+        public void onFailure(Exception ex) {
+            callback.onFailure(ex);
+        }
+
+        @Override
+        public void onProgress(V partial) {
+            if (callback instanceof UseCase.ProgressCallback) {
+                ((UseCase.ProgressCallback<V>) callback).onProgress(partial);
+            }
+        }
+    }
+}
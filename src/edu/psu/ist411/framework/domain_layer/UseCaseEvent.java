@@ -0,0 +1,57 @@
+/*
+ * Copyright 2018 Group 5.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.psu.ist411.framework.domain_layer;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight Recorder event for one use case execution.
+ *
+ * The event's duration runs from the moment a worker starts the use case
+ * until it passes or fails, and {@link #queueWait} holds how long it sat
+ * in the scheduler's queue before that.
+ *
+ * @author Tyler Suehr
+ * @author Win Ton
+ * @author Steven Weber
+ * @author David Wong
+ */
+@Name("edu.psu.ist411.UseCaseExecution")
+@Label("Use Case Execution")
+@Category({"IST 411", "Framework"})
+@Description("Use case enqueued on a channel, then started and completed by a worker")
+final class UseCaseEvent extends Event {
+    @Label("Use Case")
+    String useCase;
+
+    @Label("Channel ID")
+    @Description("-1 if the scheduler wasn't created for a channel")
+    byte channelId;
+
+    @Label("Queue Wait")
+    @Timespan(Timespan.NANOSECONDS)
+    long queueWait;
+
+    @Label("Outcome")
+    @Description("success, failure or exception")
+    String outcome;
+}
@@ -16,40 +16,211 @@
 
 package edu.psu.ist411.framework.domain_layer;
 
+import edu.psu.ist411.framework.metrics.SchedulerMetrics;
+import edu.psu.ist411.framework.metrics.TraceContext;
 import java.util.List;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.ToIntFunction;
 
 /**
  * Basic implementation of {@link IUseCaseScheduler} that uses a thread-pool
  * executor {@link ThreadPoolExecutor} for scheduling use case executions.
  *
+ * The pool is small, so a use case that schedules another on the same
+ * scheduler and waits for it could leave every worker waiting on work
+ * stuck in the queue. What happens to such nested use cases is set by
+ * the {@link NestedPolicy}. By default they are queued like any other use
+ * case; schedulers whose use cases wait on nested ones should choose
+ * another policy.
+ *
  * @author Tyler Suehr
  * @author Win Ton
  * @author Steven Weber
  * @author David Wong
  */
 public class UseCaseSchedulerImpl implements IUseCaseScheduler {
+    /** Free envelopes kept; covers max threads plus queue capacity. */
+    private static final int RING_SIZE = 16;
+    /** Most helper threads running nested use cases at once. */
+    private static final int MAX_HELPERS = 4;
+
+    /**
+     * Defines what happens to a use case scheduled from one of this
+     * scheduler's own workers.
+     */
+    public enum NestedPolicy {
+        /** Queue it like any other. Can starve the pool if the parent waits. */
+        QUEUE,
+        /** Run it on the calling worker before returning. */
+        INLINE,
+        /**
+         * Run it on a helper thread, so the parent can wait for it without
+         * holding up the pool; runs inline if every helper is busy.
+         */
+        COMPENSATE,
+        /** Reject it with a {@link RejectedExecutionException}. */
+        FAIL_FAST
+    }
+
+    /** Stores the ID of the channel this scheduler serves, or -1. */
+    private final byte mChannelId;
+    /** Stores this scheduler's metrics. */
+    private final SchedulerMetrics mMetrics;
+    /** Stores envelopes free for reuse by {@link #execute}. */
+    private final EnvelopeRing mEnvelopes = new EnvelopeRing(RING_SIZE);
+    /** Stores what to do with nested use cases. */
+    private final NestedPolicy mNested;
+    /** Stores the number of threads created, for naming them. */
+    private final AtomicInteger mThreads = new AtomicInteger();
     /** Stores reference to this scheduler's thread-pool executor. */
-    private ThreadPoolExecutor mExecutor;
+    private volatile ThreadPoolExecutor mExecutor;
+    /** Stores reference to the executor of nested use cases. */
+    private volatile ThreadPoolExecutor mHelpers;
 
+    public UseCaseSchedulerImpl() {
+        this((byte) -1);
+    }
+
+    /** Create for a channel, so recorded events can name it. */
+    public UseCaseSchedulerImpl(final byte channelId) {
+        this(channelId, NestedPolicy.QUEUE);
+    }
+
+    /** Create for a channel with the given policy for nested use cases. */
+    public UseCaseSchedulerImpl(final byte channelId, final NestedPolicy nested) {
+        mChannelId = channelId;
+        mNested = nested;
+        mMetrics = new SchedulerMetrics(
+                () -> gauge(e -> e.getQueue().size()),
+                () -> gauge(ThreadPoolExecutor::getActiveCount),
+                () -> gauge(ThreadPoolExecutor::getPoolSize));
+    }
+
+    /**
+     * Schedules the use case without a cancellation handle. In steady
+     * state this allocates nothing: the {@link Runnable} handed to the
+     * executor is an {@link Envelope} recycled through {@link #mEnvelopes},
+     * and the executor's {@link ArrayBlockingQueue} has no per-entry nodes.
+     */
     @Override
     public <T, V> void execute(final UseCase<T, V> useCase, T request, UseCase.Callback<V> callback) {
+        Envelope envelope = mEnvelopes.poll();
+        if (envelope == null) {
+            // Only when more are in flight than the ring holds.
+            envelope = new Envelope();
+        }
+        prepare(envelope, useCase, request, callback);
+        mMetrics.onSubmitted();
+        if (mNested != NestedPolicy.QUEUE && isWorker()) {
+            if (mNested == NestedPolicy.FAIL_FAST) {
+                envelope.clear();
+                mEnvelopes.offer(envelope);
+            }
+            runNested(envelope);
+            return;
+        }
+        try {
+            getExecutor().execute(envelope);
+        } catch (RejectedExecutionException ex) {
+            envelope.clear();
+            mEnvelopes.offer(envelope);
+            throw ex;
+        }
+    }
+
+    /**
+     * Schedules the use case with a cancellation handle. Each call
+     * allocates an envelope and the {@link Task} returned, which can't be
+     * recycled while a caller may still hold it.
+     */
+    @Override
+    public <T, V> Future<?> submit(final UseCase<T, V> useCase, T request, UseCase.Callback<V> callback) {
+        final Envelope envelope = new Envelope();
+        prepare(envelope, useCase, request, callback);
+        final Task task = new Task(envelope::runOnce);
+        mMetrics.onSubmitted();
+        if (mNested != NestedPolicy.QUEUE && isWorker()) {
+            runNested(task);
+        } else {
+            getExecutor().execute(task);
+        }
+        return task;
+    }
+
+    /**
+     * Checks if the calling thread is one of this scheduler's workers or
+     * helpers, i.e. a use case is scheduling another one.
+     * @return True if so.
+     */
+    private boolean isWorker() {
+        final Thread thread = Thread.currentThread();
+        return thread instanceof Worker && ((Worker) thread).owner() == this;
+    }
+
+    /**
+     * Runs a use case scheduled from one of our own threads according to
+     * {@link #mNested}. Inline use cases that throw, throw to the caller.
+     * @param runnable Runs the use case.
+     */
+    private void runNested(final Runnable runnable) {
+        switch (mNested) {
+            case FAIL_FAST:
+                mMetrics.onRejected();
+                throw new RejectedExecutionException("Nested use case could starve " + this);
+            case COMPENSATE:
+                try {
+                    getHelpers().execute(runnable);
+                    return;
+                } catch (RejectedExecutionException ex) {
+                    // Every helper is busy; the caller does it.
+                }
+                runnable.run();
+                return;
+            default:
+                runnable.run();
+        }
+    }
+
+    /** Sets up the use case and fills in the envelope that will run it. */
+    private <T, V> void prepare(final Envelope envelope, final UseCase<T, V> useCase,
+            final T request, final UseCase.Callback<V> callback) {
         // Set the properties of the use case.
         useCase.setRequest(request);
-        useCase.setCallback(callback);
+        useCase.setTrace(TraceContext.capture());
+        envelope.useCase = useCase;
 
-        // Use the executor to execute the use case.
-        getExecutor().execute(() -> {
-            useCase.onExecute();
-        });
+        // Only pay for timing when Flight Recorder wants the event.
+        final UseCaseEvent event = new UseCaseEvent();
+        if (event.isEnabled()) {
+            final EventCallback<V> recorded = new EventCallback<>(event, useCase, callback);
+            envelope.event = event;
+            envelope.recorded = recorded;
+            envelope.enqueued = System.nanoTime();
+            useCase.setCallback(recorded);
+        } else {
+            useCase.setCallback(callback);
+        }
     }
 
     @Override
     public List<Runnable> stopExecution() {
         // The executor could be null. It's handled by simply
         // returning null.
+        final ThreadPoolExecutor helpers = mHelpers;
+        if (helpers != null) {
+            helpers.shutdownNow();
+            mHelpers = null;
+        }
         if (mExecutor != null) {
             final List<Runnable> tasks = mExecutor.shutdownNow();
             mExecutor = null;
@@ -58,19 +229,269 @@ public class UseCaseSchedulerImpl implements IUseCaseScheduler {
         return null;
     }
 
+    @Override
+    public void prewarm() {
+        getExecutor().prestartAllCoreThreads();
+    }
+
+    public NestedPolicy getNestedPolicy() {
+        return mNested;
+    }
+
+    @Override
+    public SchedulerMetrics getMetrics() {
+        return mMetrics;
+    }
+
+    /** Reads a gauge from the executor, or 0 if there isn't one. */
+    private int gauge(final ToIntFunction<ThreadPoolExecutor> reader) {
+        final ThreadPoolExecutor executor = mExecutor;
+        return executor == null ? 0 : reader.applyAsInt(executor);
+    }
+
     /**
      * Lazily load the {@link #mExecutor}.
      * @return {@link ThreadPoolExecutor}.
      */
     private ThreadPoolExecutor getExecutor() {
-        if (mExecutor == null) {
-            // Setup using standard properties.
-            final int SIZE = 2;
-            final int MAX = 4;
-            final int TIMEOUT = 30;
-            mExecutor = new ThreadPoolExecutor(SIZE, MAX, TIMEOUT,
-                    TimeUnit.SECONDS, new ArrayBlockingQueue<>(MAX));
-        }
-        return mExecutor;
+        ThreadPoolExecutor executor = mExecutor;
+        if (executor == null) {
+            synchronized (this) {
+                // Two threads racing here would otherwise each create a
+                // pool, and the one that loses would never be shut down.
+                executor = mExecutor;
+                if (executor == null) {
+                    // Setup using standard properties.
+                    final int SIZE = 2;
+                    final int MAX = 4;
+                    final int TIMEOUT = 30;
+                    executor = new ThreadPoolExecutor(SIZE, MAX, TIMEOUT,
+                            TimeUnit.SECONDS, new ArrayBlockingQueue<>(MAX),
+                            r -> new Worker(r, "worker"), (r, e) -> {
+                                // Same as the default abort policy, but counted.
+                                mMetrics.onRejected();
+                                throw new RejectedExecutionException("Use case rejected from " + e);
+                            });
+                    mExecutor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * Lazily load the {@link #mHelpers}. Helpers aren't kept around once
+     * idle, and none are queued for: a nested use case either gets a
+     * helper straight away or runs inline.
+     * @return {@link ThreadPoolExecutor}.
+     */
+    private ThreadPoolExecutor getHelpers() {
+        ThreadPoolExecutor helpers = mHelpers;
+        if (helpers == null) {
+            synchronized (this) {
+                helpers = mHelpers;
+                if (helpers == null) {
+                    helpers = new ThreadPoolExecutor(0, MAX_HELPERS, 1, TimeUnit.SECONDS,
+                            new SynchronousQueue<>(), r -> new Worker(r, "helper"));
+                    mHelpers = helpers;
+                }
+            }
+        }
+        return helpers;
+    }
+
+    /**
+     * Thread of this scheduler's pool or helpers, so nested scheduling
+     * can be recognized without a thread-local lookup.
+     */
+    private final class Worker extends Thread {
+        Worker(final Runnable runnable, final String kind) {
+            super(runnable, "channel-" + mChannelId + "-" + kind + "-" + mThreads.incrementAndGet());
+        }
+
+        UseCaseSchedulerImpl owner() {
+            return UseCaseSchedulerImpl.this;
+        }
+    }
+
+    /**
+     * Carries one use case execution to a worker. Envelopes used by
+     * {@link #execute} are put back in {@link #mEnvelopes} as soon as
+     * {@code onExecute} returns.
+     */
+    private final class Envelope implements Runnable {
+        UseCase<?, ?> useCase;
+        UseCaseEvent event;
+        EventCallback<?> recorded;
+        long enqueued;
+
+        @Override
+        public void run() {
+            try {
+                runOnce();
+            } finally {
+                clear();
+                mEnvelopes.offer(this);
+            }
+        }
+
+        void runOnce() {
+            final long start = System.nanoTime();
+            if (recorded != null) {
+                event.queueWait = start - enqueued;
+                event.begin();
+            }
+            try {
+                useCase.run();
+            } catch (RuntimeException ex) {
+                mMetrics.onError();
+                if (recorded != null) { recorded.complete("exception"); }
+                throw ex;
+            } finally {
+                mMetrics.onCompleted(System.nanoTime() - start);
+            }
+        }
+
+        void clear() {
+            useCase = null;
+            event = null;
+            recorded = null;
+        }
+    }
+
+    /**
+     * Bounded lock-free multi-producer/multi-consumer ring of free
+     * envelopes. Each slot carries a sequence number that says whether
+     * it's ready to be filled or drained in the current lap, so neither
+     * side ever allocates or blocks.
+     */
+    private final class EnvelopeRing {
+        private final Envelope[] mSlots;
+        private final AtomicLongArray mSequence;
+        private final AtomicLong mHead = new AtomicLong();
+        private final AtomicLong mTail = new AtomicLong();
+        private final int mMask;
+
+        EnvelopeRing(final int size) {
+            mSlots = new Envelope[size];
+            mSequence = new AtomicLongArray(size);
+            mMask = size - 1;
+            for (int i = 0; i < size; i++) {
+                mSlots[i] = new Envelope();
+                mSequence.set(i, i + 1);
+            }
+            mTail.set(size);
+        }
+
+        /** @return A free envelope, or null if none are left. */
+        Envelope poll() {
+            while (true) {
+                final long head = mHead.get();
+                final int slot = (int) head & mMask;
+                final long seq = mSequence.get(slot);
+                if (seq < head + 1) { return null; }
+                if (seq == head + 1 && mHead.compareAndSet(head, head + 1)) {
+                    final Envelope e = mSlots[slot];
+                    mSlots[slot] = null;
+                    mSequence.lazySet(slot, head + mSlots.length);
+                    return e;
+                }
+            }
+        }
+
+        /** Returns an envelope, dropping it if the ring is full. */
+        void offer(final Envelope envelope) {
+            while (true) {
+                final long tail = mTail.get();
+                final int slot = (int) tail & mMask;
+                final long seq = mSequence.get(slot);
+                if (seq < tail) { return; }
+                if (seq == tail && mTail.compareAndSet(tail, tail + 1)) {
+                    mSlots[slot] = envelope;
+                    mSequence.set(slot, tail + 1);
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Use case execution that can be cancelled. Cancelling one that's
+     * still queued also takes it out of the executor's queue, freeing the
+     * slot for other work.
+     */
+    private final class Task extends FutureTask<Void> {
+        private volatile boolean mStarted;
+
+        Task(final Runnable runnable) {
+            super(runnable, null);
+        }
+
+        @Override
+        public void run() {
+            mStarted = true;
+            super.run();
+        }
+
+        @Override
+        public boolean cancel(final boolean mayInterruptIfRunning) {
+            if (!super.cancel(mayInterruptIfRunning)) {
+                return false;
+            }
+            mMetrics.onCancelled(mStarted);
+            final ThreadPoolExecutor executor = mExecutor;
+            if (!mStarted && executor != null) {
+                executor.remove(this);
+            }
+            return true;
+        }
+
+        @Override
+        protected void setException(final Throwable t) {
+            // Report it like an uncaught exception in the worker, same
+            // as before use cases were wrapped in a future.
+            super.setException(t);
+            final Thread thread = Thread.currentThread();
+            thread.getUncaughtExceptionHandler().uncaughtException(thread, t);
+        }
+    }
+
+    /**
+     * Commits the {@link UseCaseEvent} when the use case passes or fails,
+     * which may be after {@code onExecute} has returned.
+     */
+    private final class EventCallback<V> implements UseCase.Callback<V> {
+        private final UseCaseEvent event;
+        private final UseCase<?, V> useCase;
+        private final UseCase.Callback<V> callback;
+        private final AtomicBoolean done = new AtomicBoolean();
+
+        EventCallback(final UseCaseEvent event, final UseCase<?, V> useCase, final UseCase.Callback<V> callback) {
+            this.event = event;
+            this.useCase = useCase;
+            this.callback = callback;
+        }
+
+        @Override
+        public void onSuccess(V response) {
+            complete("success");
+            callback.onSuccess(response);
+        }
+
+        @Override
+        public void onFailure(Exception ex) {
+            complete("failure");
+            callback.onFailure(ex);
+        }
+
+        void complete(final String outcome) {
+            if (done.compareAndSet(false, true)) {
+                event.end();
+                event.useCase = useCase.getClass().getName();
+                event.channelId = mChannelId;
+                event.outcome = outcome;
+                event.commit();
+            }
+        }
     }
 }
\ No newline at end of file
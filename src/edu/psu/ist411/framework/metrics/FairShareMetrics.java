@@ -0,0 +1,109 @@
+/*
+ * Copyright 2018 Group 5.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.psu.ist411.framework.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * {@link SchedulerMetrics} for one channel of a pool shared by weight,
+ * adding what's needed to check the channel gets its fair share: the
+ * share of busy time it was given and how long its use cases waited.
+ *
+ * @author Tyler Suehr
+ * @author Win Ton
+ * @author Steven Weber
+ * @author David Wong
+ */
+public class FairShareMetrics extends SchedulerMetrics implements FairShareMetricsMBean {
+    private final int mWeight;
+    private final DoubleSupplier mTargetShare;
+    private final LongSupplier mPoolBusyNanos;
+    private final LongAdder mBusyNanos = new LongAdder();
+    private final Histogram mQueueWait = new Histogram();
+
+    /**
+     * @param weight Weight of the channel.
+     * @param targetShare Reads the channel's share of the total weight.
+     * @param poolBusyNanos Reads the time the pool has spent running
+     *        use cases of any channel.
+     * @param queueDepth Reads the number of queued use cases.
+     * @param activeThreads Reads the number of threads running use cases.
+     * @param poolSize Reads the number of threads in the pool.
+     */
+    public FairShareMetrics(final int weight, final DoubleSupplier targetShare,
+            final LongSupplier poolBusyNanos, final IntSupplier queueDepth,
+            final IntSupplier activeThreads, final IntSupplier poolSize) {
+        super(queueDepth, activeThreads, poolSize);
+        mWeight = weight;
+        mTargetShare = targetShare;
+        mPoolBusyNanos = poolBusyNanos;
+    }
+
+    /**
+     * Records a use case leaving the queue to run.
+     * @param waitNanos Time it spent queued.
+     */
+    public void onStarted(final long waitNanos) {
+        mQueueWait.record(waitNanos);
+    }
+
+    @Override
+    public void onCompleted(final long runNanos) {
+        super.onCompleted(runNanos);
+        mBusyNanos.add(runNanos);
+    }
+
+    @Override
+    public int getWeight() {
+        return mWeight;
+    }
+
+    @Override
+    public double getTargetShare() {
+        return mTargetShare.getAsDouble();
+    }
+
+    @Override
+    public double getActualShare() {
+        final long total = mPoolBusyNanos.getAsLong();
+        return total == 0 ? 0 : (double) mBusyNanos.sum() / total;
+    }
+
+    @Override
+    public long getQueueWaitP50Nanos() {
+        return mQueueWait.percentile(50);
+    }
+
+    @Override
+    public long getQueueWaitP99Nanos() {
+        return mQueueWait.percentile(99);
+    }
+
+    @Override
+    public long getQueueWaitMaxNanos() {
+        return mQueueWait.max();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s weight=%d share=%.3f/%.3f wait[%s]", super.toString(),
+                mWeight, getActualShare(), getTargetShare(), mQueueWait.summary());
+    }
+}
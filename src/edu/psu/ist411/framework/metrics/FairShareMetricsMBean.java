@@ -0,0 +1,36 @@
+/*
+ * Copyright 2018 Group 5.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.psu.ist411.framework.metrics;
+
+/**
+ * JMX view of {@link FairShareMetrics}.
+ *
+ * @author Tyler Suehr
+ * @author Win Ton
+ * @author Steven Weber
+ * @author David Wong
+ */
+public interface FairShareMetricsMBean extends SchedulerMetricsMBean {
+    int getWeight();
+    /** Weight over the sum of the weights of every channel in the pool. */
+    double getTargetShare();
+    /** Fraction of the pool's busy time spent on this channel. */
+    double getActualShare();
+    long getQueueWaitP50Nanos();
+    long getQueueWaitP99Nanos();
+    long getQueueWaitMaxNanos();
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2018 Group 5.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.psu.ist411.framework.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free, high-dynamic-range latency histogram.
+ *
+ * Values are bucketed log-linearly: every power of two is split into 64
+ * sub-buckets, so any recorded value is reported within about 1.5% of its
+ * true value, from 1 ns up to {@link Long#MAX_VALUE}, in a fixed 30 KB.
+ *
+ * @author Tyler Suehr
+ * @author Win Ton
+ * @author Steven Weber
+ * @author David Wong
+ */
+public final class Histogram {
+    /** Values below this are counted exactly. */
+    private static final int LINEAR = 128;
+    private static final int SUB = LINEAR / 2;
+    private static final int SUB_BITS = 7;
+
+    private final AtomicLongArray mCounts = new AtomicLongArray(LINEAR + (64 - SUB_BITS) * SUB);
+    private final AtomicLong mTotal = new AtomicLong();
+    private final AtomicLong mMax = new AtomicLong();
+
+    /**
+     * Records a single value.
+     * @param value Non-negative value, usually nanoseconds.
+     */
+    public void record(final long value) {
+        final long v = Math.max(value, 0);
+        mCounts.incrementAndGet(indexOf(v));
+        mTotal.incrementAndGet();
+        long max;
+        while (v > (max = mMax.get()) && !mMax.compareAndSet(max, v)) {
+            // Retry until we either win or someone records a larger value.
+        }
+    }
+
+    public long count() {
+        return mTotal.get();
+    }
+
+    public long max() {
+        return mMax.get();
+    }
+
+    /**
+     * Gets the value at the given percentile.
+     * @param percentile Percentile in [0, 100].
+     * @return Upper bound of the bucket holding that rank, or 0 if empty.
+     */
+    public long percentile(final double percentile) {
+        final long total = count();
+        if (total == 0) { return 0; }
+        final long rank = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < mCounts.length(); i++) {
+            seen += mCounts.get(i);
+            if (seen >= rank) {
+                return Math.min(upperBound(i), max());
+            }
+        }
+        return max();
+    }
+
+    /**
+     * Adds every value recorded by another histogram into this one.
+     * @param other {@link Histogram}.
+     */
+    public void add(final Histogram other) {
+        for (int i = 0; i < mCounts.length(); i++) {
+            final long c = other.mCounts.get(i);
+            if (c != 0) { mCounts.addAndGet(i, c); }
+        }
+        mTotal.addAndGet(other.mTotal.get());
+        long max;
+        final long v = other.max();
+        while (v > (max = mMax.get()) && !mMax.compareAndSet(max, v)) {
+            // Same as record().
+        }
+    }
+
+    public void reset() {
+        for (int i = 0; i < mCounts.length(); i++) {
+            mCounts.set(i, 0);
+        }
+        mTotal.set(0);
+        mMax.set(0);
+    }
+
+    /**
+     * Formats the usual percentiles on one line.
+     * @return p50, p99, p99.9 and max in nanoseconds.
+     */
+    public String summary() {
+        return String.format("n=%d p50=%,dns p99=%,dns p99.9=%,dns max=%,dns",
+                count(), percentile(50), percentile(99), percentile(99.9), max());
+    }
+
+    private static int indexOf(final long v) {
+        if (v < LINEAR) { return (int) v; }
+        final int shift = 64 - Long.numberOfLeadingZeros(v) - SUB_BITS;
+        return LINEAR + (shift - 1) * SUB + (int) (v >>> shift) - SUB;
+    }
+
+    private static long upperBound(final int index) {
+        if (index < LINEAR) { return index; }
+        final int shift = (index - LINEAR) / SUB + 1;
+        final long sub = (index - LINEAR) % SUB + SUB;
+        return ((sub + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright 2018 Group 5.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.psu.ist411.framework.metrics;
+
+import edu.psu.ist411.framework.domain_layer.AbstractChannelManager;
+import edu.psu.ist411.framework.domain_layer.IChannel;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+/**
+ * Publishes scheduler metrics over JMX, keyed by presenter and channel.
+ *
+ * Each registered manager gets an MBean named
+ * {@code edu.psu.ist411:type=ChannelManager,presenter="<name>"} with totals
+ * across its channels, and each metered channel it holds gets
+ * {@code edu.psu.ist411:type=Channel,presenter="<name>",channel=<id>}.
+ * Presenter names are quoted with {@link ObjectName#quote}, so they may
+ * contain characters such as ',', '=' or ':'.
+ *
+ * Channels move between managers, so channel MBeans are brought up to
+ * date by {@link #refresh()}, which runs whenever a manager MBean is read
+ * or {@link #dump()} is called.
+ *
+ * @author Tyler Suehr
+ * @author Win Ton
+ * @author Steven Weber
+ * @author David Wong
+ */
+public final class MetricsRegistry {
+    private static final String DOMAIN = "edu.psu.ist411";
+    /** Registered managers by presenter name. */
+    private static final Map<String, AbstractChannelManager> MANAGERS = new TreeMap<>();
+    /** Channel MBeans currently registered, by presenter name. */
+    private static final Map<String, Set<ObjectName>> CHANNELS = new TreeMap<>();
+
+    private MetricsRegistry() {}
+
+    /**
+     * Registers a manager and its channels.
+     *
+     * @param presenter Unique name of the presenter owning the manager.
+     * @param manager {@link AbstractChannelManager}.
+     *
+     * @throws IllegalStateException if JMX registration fails.
+     */
+    public static synchronized void register(final String presenter, final AbstractChannelManager manager) {
+        unregister(presenter);
+        try {
+            server().registerMBean(new StandardMBean(new ManagerMetrics(presenter, manager),
+                    ManagerMetricsMBean.class), managerName(presenter));
+        } catch (JMException ex) {
+            throw new IllegalStateException(ex);
+        }
+        MANAGERS.put(presenter, manager);
+        refresh(presenter);
+    }
+
+    /**
+     * Unregisters a manager and its channels, if registered.
+     * @param presenter Name given to {@link #register}.
+     */
+    public static synchronized void unregister(final String presenter) {
+        if (MANAGERS.remove(presenter) == null) { return; }
+        final Set<ObjectName> names = CHANNELS.remove(presenter);
+        if (names != null) {
+            names.forEach(MetricsRegistry::unregisterQuietly);
+        }
+        unregisterQuietly(managerName(presenter));
+    }
+
+    /** Brings channel MBeans up to date for every manager. */
+    public static synchronized void refresh() {
+        MANAGERS.keySet().forEach(MetricsRegistry::refresh);
+    }
+
+    /**
+     * Formats every registered channel's metrics, one line each.
+     * @return Text suitable for a log.
+     */
+    public static synchronized String dump() {
+        refresh();
+        final StringBuilder sb = new StringBuilder();
+        MANAGERS.forEach((presenter, manager) -> {
+            for (IChannel channel : manager.getChannels()) {
+                final SchedulerMetrics m = channel.getScheduler().getMetrics();
+                if (m != null) {
+                    sb.append(presenter).append(" channel ").append(channel.getId())
+                            .append(": ").append(m).append(System.lineSeparator());
+                }
+            }
+        });
+        return sb.toString();
+    }
+
+    private static void refresh(final String presenter) {
+        final Set<ObjectName> now = new HashSet<>();
+        final MBeanServer server = server();
+        for (IChannel channel : MANAGERS.get(presenter).getChannels()) {
+            final SchedulerMetrics m = channel.getScheduler().getMetrics();
+            if (m == null) { continue; }
+            final ObjectName name = channelName(presenter, channel.getId());
+            now.add(name);
+            try {
+                if (!server.isRegistered(name)) {
+                    server.registerMBean(m, name);
+                }
+            } catch (JMException ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
+        final Set<ObjectName> before = CHANNELS.put(presenter, now);
+        if (before != null) {
+            before.removeAll(now);
+            before.forEach(MetricsRegistry::unregisterQuietly);
+        }
+    }
+
+    private static void unregisterQuietly(final ObjectName name) {
+        try {
+            server().unregisterMBean(name);
+        } catch (JMException ex) {
+            // Already gone, nothing to do.
+        }
+    }
+
+    private static MBeanServer server() {
+        return ManagementFactory.getPlatformMBeanServer();
+    }
+
+    private static ObjectName managerName(final String presenter) {
+        return name("type=ChannelManager,presenter=" + ObjectName.quote(presenter));
+    }
+
+    private static ObjectName channelName(final String presenter, final byte channelId) {
+        return name("type=Channel,presenter=" + ObjectName.quote(presenter) + ",channel=" + channelId);
+    }
+
+    private static ObjectName name(final String properties) {
+        try {
+            return new ObjectName(DOMAIN + ":" + properties);
+        } catch (JMException ex) {
+            throw new IllegalArgumentException(ex);
+        }
+    }
+
+    /** Totals across the channels of one manager. */
+    private static final class ManagerMetrics implements ManagerMetricsMBean {
+        private final String mPresenter;
+        private final AbstractChannelManager mManager;
+
+        ManagerMetrics(final String presenter, final AbstractChannelManager manager) {
+            mPresenter = presenter;
+            mManager = manager;
+        }
+
+        @Override
+        public int getChannelCount() {
+            refresh();
+            return mManager.getChannels().size();
+        }
+
+        @Override
+        public int getQueueDepth() {
+            int sum = 0;
+            for (SchedulerMetrics m : metrics()) { sum += m.getQueueDepth(); }
+            return sum;
+        }
+
+        @Override
+        public int getActiveThreads() {
+            int sum = 0;
+            for (SchedulerMetrics m : metrics()) { sum += m.getActiveThreads(); }
+            return sum;
+        }
+
+        @Override
+        public long getCompleted() {
+            long sum = 0;
+            for (SchedulerMetrics m : metrics()) { sum += m.getCompleted(); }
+            return sum;
+        }
+
+        @Override
+        public long getRejected() {
+            long sum = 0;
+            for (SchedulerMetrics m : metrics()) { sum += m.getRejected(); }
+            return sum;
+        }
+
+        @Override
+        public void refresh() {
+            synchronized (MetricsRegistry.class) {
+                if (MANAGERS.get(mPresenter) == mManager) {
+                    MetricsRegistry.refresh(mPresenter);
+                }
+            }
+        }
+
+        private List<SchedulerMetrics> metrics() {
+            final List<SchedulerMetrics> list = new ArrayList<>();
+            for (IChannel channel : mManager.getChannels()) {
+                final SchedulerMetrics m = channel.getScheduler().getMetrics();
+                if (m != null) { list.add(m); }
+            }
+            return list;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2018 Group 5.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.psu.ist411.framework.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * Counters, gauges and a run time histogram for one use case scheduler.
+ *
+ * Counters are updated by the scheduler as use cases are submitted,
+ * rejected and completed. Gauges are read from the scheduler on demand,
+ * so they cost nothing until someone looks.
+ *
+ * @author Tyler Suehr
+ * @author Win Ton
+ * @author Steven Weber
+ * @author David Wong
+ */
+public class SchedulerMetrics implements SchedulerMetricsMBean {
+    private final LongAdder mSubmitted = new LongAdder();
+    private final LongAdder mCompleted = new LongAdder();
+    private final LongAdder mRejected = new LongAdder();
+    private final LongAdder mErrors = new LongAdder();
+    private final LongAdder mCancelledQueued = new LongAdder();
+    private final LongAdder mCancelledRunning = new LongAdder();
+    private final Histogram mRunTime = new Histogram();
+    private final IntSupplier mQueueDepth;
+    private final IntSupplier mActiveThreads;
+    private final IntSupplier mPoolSize;
+
+    /**
+     * @param queueDepth Reads the number of queued use cases.
+     * @param activeThreads Reads the number of threads running use cases.
+     * @param poolSize Reads the number of threads in the pool.
+     */
+    public SchedulerMetrics(final IntSupplier queueDepth, final IntSupplier activeThreads,
+            final IntSupplier poolSize) {
+        mQueueDepth = queueDepth;
+        mActiveThreads = activeThreads;
+        mPoolSize = poolSize;
+    }
+
+    public void onSubmitted() {
+        mSubmitted.increment();
+    }
+
+    public void onRejected() {
+        mRejected.increment();
+    }
+
+    public void onError() {
+        mErrors.increment();
+    }
+
+    /**
+     * Records a cancelled use case.
+     * @param running True if it had already started.
+     */
+    public void onCancelled(final boolean running) {
+        (running ? mCancelledRunning : mCancelledQueued).increment();
+    }
+
+    /**
+     * Records a use case whose {@code onExecute} has returned.
+     * @param runNanos Time spent in {@code onExecute}.
+     */
+    public void onCompleted(final long runNanos) {
+        mCompleted.increment();
+        mRunTime.record(runNanos);
+    }
+
+    @Override
+    public long getSubmitted() {
+        return mSubmitted.sum();
+    }
+
+    @Override
+    public long getCompleted() {
+        return mCompleted.sum();
+    }
+
+    @Override
+    public long getRejected() {
+        return mRejected.sum();
+    }
+
+    @Override
+    public long getErrors() {
+        return mErrors.sum();
+    }
+
+    @Override
+    public long getCancelledQueued() {
+        return mCancelledQueued.sum();
+    }
+
+    @Override
+    public long getCancelledRunning() {
+        return mCancelledRunning.sum();
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return mQueueDepth.getAsInt();
+    }
+
+    @Override
+    public int getActiveThreads() {
+        return mActiveThreads.getAsInt();
+    }
+
+    @Override
+    public int getPoolSize() {
+        return mPoolSize.getAsInt();
+    }
+
+    @Override
+    public long getRunTimeP50Nanos() {
+        return mRunTime.percentile(50);
+    }
+
+    @Override
+    public long getRunTimeP99Nanos() {
+        return mRunTime.percentile(99);
+    }
+
+    @Override
+    public long getRunTimeP999Nanos() {
+        return mRunTime.percentile(99.9);
+    }
+
+    @Override
+    public long getRunTimeMaxNanos() {
+        return mRunTime.max();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("submitted=%d completed=%d rejected=%d errors=%d cancelled=%d/%d queue=%d active=%d pool=%d run[%s]",
+                getSubmitted(), getCompleted(), getRejected(), getErrors(),
+                getCancelledQueued(), getCancelledRunning(),
+                getQueueDepth(), getActiveThreads(), getPoolSize(), mRunTime.summary());
+    }
+}
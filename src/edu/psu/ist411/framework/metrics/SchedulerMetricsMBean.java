@@ -0,0 +1,43 @@
+/*
+ * Copyright 2018 Group 5.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.psu.ist411.framework.metrics;
+
+/**
+ * JMX view of {@link SchedulerMetrics}.
+ *
+ * @author Tyler Suehr
+ * @author Win Ton
+ * @author Steven Weber
+ * @author David Wong
+ */
+public interface SchedulerMetricsMBean {
+    long getSubmitted();
+    long getCompleted();
+    long getRejected();
+    long getErrors();
+    /** Use cases cancelled before they started, i.e. work saved. */
+    long getCancelledQueued();
+    /** Use cases cancelled (interrupted) while running. */
+    long getCancelledRunning();
+    int getQueueDepth();
+    int getActiveThreads();
+    int getPoolSize();
+    long getRunTimeP50Nanos();
+    long getRunTimeP99Nanos();
+    long getRunTimeP999Nanos();
+    long getRunTimeMaxNanos();
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright 2018 Group 5.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.psu.ist411.framework.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Lightweight trace of one request as it crosses threads: the presenter
+ * that schedules it, the worker that runs the use case, the thread a
+ * repository calls back on, and back.
+ *
+ * A trace is started when a presenter schedules a use case with no trace
+ * current, but only for a sampled fraction of them (see
+ * {@link #RATE_PROPERTY}). Every hop captures the current trace with
+ * {@link #capture()} and resumes it on the other thread with
+ * {@link Handoff#resume()}, recording a {@link Span} for the wait in
+ * between and for the work done after. Code on any of those threads,
+ * including {@code UseCase.Callback}s, can get the trace with
+ * {@link #current()}.
+ *
+ * Unsampled requests have no trace: {@link #current()} and
+ * {@link #capture()} return null and nothing is allocated. Each span of a
+ * sampled trace is handed to the {@link Exporter} as soon as it ends, and
+ * to Flight Recorder when its trace span event is enabled.
+ *
+ * @author Tyler Suehr
+ * @author Win Ton
+ * @author Steven Weber
+ * @author David Wong
+ */
+public final class TraceContext {
+    /** System property with the fraction of requests traced, 0 to 1. */
+    public static final String RATE_PROPERTY = "ist411.trace.rate";
+
+    private static final ThreadLocal<TraceContext> CURRENT = new ThreadLocal<>();
+    private static volatile double sRate = Double.parseDouble(System.getProperty(RATE_PROPERTY, "0"));
+    private static volatile Exporter sExporter;
+
+    private final long mTraceId;
+    private final Class<?> mOrigin;
+    /** Stores ended spans, guarded by this. */
+    private final List<Span> mSpans = new ArrayList<>();
+
+    /**
+     * Receives every span of a sampled trace as it ends. Called on the
+     * thread that ended it.
+     */
+    public interface Exporter {
+        void export(TraceContext trace, Span span);
+    }
+
+    /**
+     * One timed step of a trace.
+     */
+    public static final class Span {
+        private final String mName;
+        private final String mThread;
+        private final long mStartNanos;
+        private final long mDurationNanos;
+
+        Span(final String name, final long startNanos, final long endNanos) {
+            mName = name;
+            mThread = Thread.currentThread().getName();
+            mStartNanos = startNanos;
+            mDurationNanos = endNanos - startNanos;
+        }
+
+        public String getName() {
+            return mName;
+        }
+
+        /** Gets the name of the thread that ended the span. */
+        public String getThread() {
+            return mThread;
+        }
+
+        /** Gets when the span started, in {@link System#nanoTime()} terms. */
+        public long getStartNanos() {
+            return mStartNanos;
+        }
+
+        public long getDurationNanos() {
+            return mDurationNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s on %s: %,dns", mName, mThread, mDurationNanos);
+        }
+    }
+
+    /**
+     * A trace on its way from one thread to another.
+     */
+    public static final class Handoff {
+        private final TraceContext mTrace;
+        private final long mCaptured = System.nanoTime();
+
+        Handoff(final TraceContext trace) {
+            mTrace = trace;
+        }
+
+        public TraceContext getTrace() {
+            return mTrace;
+        }
+
+        /**
+         * Makes the trace current on this thread and records a span named
+         * "queued" for the time since it was captured.
+         * @return Trace that was current before, to pass to {@link #set}
+         *         once done.
+         */
+        public TraceContext resume() {
+            return resume("queued");
+        }
+
+        /**
+         * Makes the trace current on this thread and records a span for
+         * the time since it was captured.
+         * @param span Name of the span.
+         * @return Trace that was current before, to pass to {@link #set}
+         *         once done.
+         */
+        public TraceContext resume(final String span) {
+            mTrace.record(span, mCaptured, System.nanoTime());
+            return set(mTrace);
+        }
+    }
+
+    private TraceContext(final Class<?> origin) {
+        mTraceId = ThreadLocalRandom.current().nextLong();
+        mOrigin = origin;
+    }
+
+    /**
+     * Starts a new trace if this request is sampled. Doesn't make it
+     * current; see {@link #set}.
+     * @param origin What the request is, e.g. the first use case's class.
+     * @return New trace, or null if not sampled.
+     */
+    public static TraceContext sample(final Class<?> origin) {
+        final double rate = sRate;
+        if (rate <= 0 || (rate < 1 && ThreadLocalRandom.current().nextDouble() >= rate)) {
+            return null;
+        }
+        return new TraceContext(origin);
+    }
+
+    /**
+     * Gets the trace of the request this thread is working on.
+     * @return {@link TraceContext}, or null if there's none or it isn't sampled.
+     */
+    public static TraceContext current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Makes a trace current on this thread.
+     * @param trace {@link TraceContext}, or null for none.
+     * @return Trace that was current before.
+     */
+    public static TraceContext set(final TraceContext trace) {
+        final TraceContext previous = CURRENT.get();
+        if (previous != trace) {
+            CURRENT.set(trace);
+        }
+        return previous;
+    }
+
+    /**
+     * Captures the current trace to resume on another thread.
+     * @return {@link Handoff}, or null if there's no current trace.
+     */
+    public static Handoff capture() {
+        final TraceContext trace = CURRENT.get();
+        return trace == null ? null : new Handoff(trace);
+    }
+
+    /**
+     * Sets the fraction of requests traced.
+     * @param rate From 0 for none to 1 for all.
+     */
+    public static void setSampleRate(final double rate) {
+        if (rate < 0 || rate > 1) {
+            throw new IllegalArgumentException("Rate must be from 0 to 1!");
+        }
+        sRate = rate;
+    }
+
+    /**
+     * Sets where spans are exported.
+     * @param exporter {@link Exporter}, or null for none.
+     */
+    public static void setExporter(final Exporter exporter) {
+        sExporter = exporter;
+    }
+
+    /**
+     * Records a span of this trace and exports it.
+     * @param name Name of the span.
+     * @param startNanos When it started, from {@link System#nanoTime()}.
+     * @param endNanos When it ended.
+     */
+    public void record(final String name, final long startNanos, final long endNanos) {
+        final Span span = new Span(name, startNanos, endNanos);
+        synchronized (this) {
+            mSpans.add(span);
+        }
+        final Exporter exporter = sExporter;
+        if (exporter != null) {
+            exporter.export(this, span);
+        }
+        final TraceSpanEvent event = new TraceSpanEvent();
+        if (event.isEnabled()) {
+            event.traceId = mTraceId;
+            event.span = name;
+            event.spanDuration = span.getDurationNanos();
+            event.commit();
+        }
+    }
+
+    public long getTraceId() {
+        return mTraceId;
+    }
+
+    /** Gets the simple name of what started the trace. */
+    public String getName() {
+        return mOrigin.getSimpleName();
+    }
+
+    /**
+     * Gets the spans ended so far, in the order they ended.
+     * @return Copy of the spans.
+     */
+    public synchronized List<Span> getSpans() {
+        return new ArrayList<>(mSpans);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Trace %016x (%s)", mTraceId, getName());
+    }
+}
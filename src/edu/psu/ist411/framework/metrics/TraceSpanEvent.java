@@ -0,0 +1,51 @@
+/*
+ * Copyright 2018 Group 5.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.psu.ist411.framework.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight Recorder event for one span of a sampled {@link TraceContext}.
+ *
+ * Committed when the span ends, on the thread that ended it; spans with
+ * the same {@link #traceId} belong to one request.
+ *
+ * @author Tyler Suehr
+ * @author Win Ton
+ * @author Steven Weber
+ * @author David Wong
+ */
+@Name("edu.psu.ist411.TraceSpan")
+@Label("Trace Span")
+@Category({"IST 411", "Framework"})
+@Description("Timed step of a sampled request, from scheduling to its callback")
+final class TraceSpanEvent extends Event {
+    @Label("Trace ID")
+    long traceId;
+
+    @Label("Span")
+    String span;
+
+    @Label("Span Duration")
+    @Timespan(Timespan.NANOSECONDS)
+    long spanDuration;
+}
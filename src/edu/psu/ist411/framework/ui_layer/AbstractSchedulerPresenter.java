@@ -16,13 +16,29 @@
 
 package edu.psu.ist411.framework.ui_layer;
 
+import edu.psu.ist411.framework.data_layer.IRepoCallbacks;
 import edu.psu.ist411.framework.domain_layer.AbstractChannelManager;
+import edu.psu.ist411.framework.domain_layer.BatchResult;
 import edu.psu.ist411.framework.domain_layer.ChannelImpl;
 import edu.psu.ist411.framework.domain_layer.ChannelManagerFactory;
+import edu.psu.ist411.framework.domain_layer.ChannelSweeper;
 import edu.psu.ist411.framework.domain_layer.IChannel;
 import edu.psu.ist411.framework.domain_layer.IUseCaseScheduler;
+import edu.psu.ist411.framework.domain_layer.MemoizingScheduler;
+import edu.psu.ist411.framework.domain_layer.SharedChannelRegistry;
 import edu.psu.ist411.framework.domain_layer.UseCase;
 import edu.psu.ist411.framework.domain_layer.UseCaseSchedulerImpl;
+import edu.psu.ist411.framework.metrics.TraceContext;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
 /**
  * Implementation of {@link IPresenter} that allows use case scheduling.
@@ -34,8 +50,13 @@ import edu.psu.ist411.framework.domain_layer.UseCaseSchedulerImpl;
  * that may need to be stopped while other particular channels can still be
  * running and finishing their respective tasks.
  *
- * Constructing this object creates a default channel per instance for
- * use case scheduling with the ID of {@link #DEFAULT_CHANEL}.
+ * Constructing this object acquires the process-wide default channel from
+ * {@link SharedChannelRegistry}, with the ID of {@link #DEFAULT_CHANNEL},
+ * so presenters share one thread pool instead of creating one each. Call
+ * {@link #release()} when the presenter is no longer needed so the pool
+ * can be stopped once every presenter has let go of it. Presenters may
+ * share a channel manager; the default channel stays in it until the last
+ * of them is released.
  *
  * Note:
  * (1) Abstract to prevent direct instantiation.
@@ -49,10 +70,24 @@ import edu.psu.ist411.framework.domain_layer.UseCaseSchedulerImpl;
 public abstract class AbstractSchedulerPresenter<T extends IView> implements IPresenter<T> {
     /** Constant for default channel ID. */
     private static final byte DEFAULT_CHANNEL = (byte) 0;
+    /** Requests per chunk for {@link #scheduleAll}. */
+    private static final int BATCH_CHUNK = 32;
+    /** Workers used by {@link #scheduleAll}; the default pool's core size. */
+    private static final int BATCH_PARALLELISM = 2;
+    /** Counts presenters holding the default channel in each manager. */
+    private static final Map<AbstractChannelManager, Integer> DEFAULT_HOLDERS = new WeakHashMap<>();
     /** Stores reference to channel manager for this presenter. */
     private AbstractChannelManager mChannelManager;
     /** Stores reference to the view for this presenter. */
     private T mView;
+    /** Stores reference to the shared default channel, null once released. */
+    private IChannel mDefaultChannel;
+    /** Stores callbacks of use cases scheduled but not yet completed. */
+    private final Set<NullCheckWrapper<?>> mInFlight = ConcurrentHashMap.newKeySet();
+    /** Counts use cases cancelled by {@link #detach()}. */
+    private final AtomicLong mCancelled = new AtomicLong();
+    /** True to also interrupt running use cases on detach. */
+    private volatile boolean mInterruptOnDetach;
 
     /** Create with default channel manager. */
     public AbstractSchedulerPresenter() {
@@ -71,9 +106,39 @@ public abstract class AbstractSchedulerPresenter<T extends IView> implements IPr
         mView = view;
     }
 
+    /**
+     * Detaches the view and cancels every use case this presenter
+     * scheduled that hasn't completed. Queued ones never run; running
+     * ones are interrupted only if {@link #setInterruptOnDetach(boolean)}
+     * was turned on. Their results would be thrown away anyway.
+     */
     @Override
     public void detach() {
         mView = null;
+        for (NullCheckWrapper<?> wrapper : mInFlight) {
+            final Future<?> future = wrapper.future;
+            if (future != null && future.cancel(mInterruptOnDetach)) {
+                mCancelled.incrementAndGet();
+            }
+            mInFlight.remove(wrapper);
+        }
+    }
+
+    /**
+     * Sets whether {@link #detach()} interrupts running use cases as well
+     * as cancelling queued ones. Off by default.
+     * @param interrupt True to interrupt.
+     */
+    public void setInterruptOnDetach(final boolean interrupt) {
+        mInterruptOnDetach = interrupt;
+    }
+
+    /**
+     * Gets how many use cases {@link #detach()} has cancelled.
+     * @return Number of cancelled use cases.
+     */
+    public long getCancelledCount() {
+        return mCancelled.get();
     }
 
     @Override
@@ -81,6 +146,22 @@ public abstract class AbstractSchedulerPresenter<T extends IView> implements IPr
         return mView;
     }
 
+    /**
+     * Detaches the view and gives up this presenter's hold on the shared
+     * default channel. The channel is removed from the channel manager
+     * once no other presenter using that manager holds it. Scheduling on
+     * the default channel afterwards throws {@link IllegalStateException}.
+     * Calling this more than once does nothing.
+     */
+    public void release() {
+        detach();
+        if (mDefaultChannel != null) {
+            unholdDefaultChannel();
+            SharedChannelRegistry.release(mDefaultChannel);
+            mDefaultChannel = null;
+        }
+    }
+
     /**
      * Gets this presenter's channel manager.
      * @return {@link AbstractChannelManager}.
@@ -94,6 +175,9 @@ public abstract class AbstractSchedulerPresenter<T extends IView> implements IPr
      * @param manager {@link AbstractChannelManager}.
      */
     public void setChannelManager(final AbstractChannelManager manager) {
+        if (mDefaultChannel != null) {
+            unholdDefaultChannel();
+        }
         mChannelManager = manager;
         setupDefaultChannel();
     }
@@ -109,9 +193,7 @@ public abstract class AbstractSchedulerPresenter<T extends IView> implements IPr
      * @param callback {@link UseCase.Callback}.
      */
     protected final <V, K> void schedule(UseCase<V, K> useCase, V request, UseCase.Callback<K> callback) {
-        final IChannel channel = mChannelManager.get(DEFAULT_CHANNEL);
-        final IUseCaseScheduler scheduler = channel.getScheduler();
-        scheduler.execute(useCase, request, new NullCheckWrapper<>(callback));
+        submit(defaultScheduler(), useCase, request, callback);
     }
 
     /**
@@ -132,14 +214,16 @@ public abstract class AbstractSchedulerPresenter<T extends IView> implements IPr
         if (channel == null) {
             throw new NullPointerException("Channel does not exist! " + channelId);
         }
-        final IUseCaseScheduler scheduler = channel.getScheduler();
-        scheduler.execute(useCase, request, new NullCheckWrapper<>(callback));
+        submit(channel.getScheduler(), useCase, request, callback);
     }
 
     /**
      * Schedules execution of a given use case on a given channel.
      * Will create a new channel if the given channel ID does not
-     * exist.
+     * exist. Channels created here are evicted by
+     * {@link ChannelSweeper#shared()} once idle for its TTL, and serve
+     * {@link UseCase.Memoizable} use cases from the cache like the
+     * default channel does.
      *
      * @param <V> UseCase request.
      * @param <K> UseCase response.
@@ -150,25 +234,213 @@ public abstract class AbstractSchedulerPresenter<T extends IView> implements IPr
      * @param callback {@link UseCase.Callback}.
      */
     protected final <V, K> void scheduleOrCreateOn(byte channelId, UseCase<V, K> useCase, V request, UseCase.Callback<K> callback) {
-        IChannel channel = mChannelManager.get(channelId);
+        while (true) {
+            IChannel channel = mChannelManager.get(channelId);
+            if (channel == null) {
+                // Evictable: once idle the sweeper may drop it, and the next
+                // call here makes a new one.
+                final IChannel created = new ChannelImpl(
+                        channelId, new MemoizingScheduler(new UseCaseSchedulerImpl(channelId)), true);
+                channel = mChannelManager.addIfAbsent(created);
+                if (channel == created) {
+                    ChannelSweeper.shared().watch(mChannelManager);
+                }
+            }
+            try {
+                submit(channel.getScheduler(), useCase, request, callback);
+                return;
+            } catch (RejectedExecutionException ex) {
+                // Evicted since we looked it up; make a new one.
+                if (!(channel instanceof ChannelImpl) || !((ChannelImpl) channel).isRetired()) {
+                    throw ex;
+                }
+            }
+        }
+    }
+
+    /**
+     * Schedules execution of a use case over many requests on the default
+     * channel, e.g. loading a list of users by ID, with one callback for
+     * the whole batch. See {@link IUseCaseScheduler#executeAll}.
+     *
+     * @param <V> UseCase request.
+     * @param <K> UseCase response.
+     *
+     * @param useCases Creates a {@link UseCase} for each worker.
+     * @param requests Requests to run the use case with.
+     * @param callback {@link UseCase.BatchCallback}.
+     */
+    protected final <V, K> void scheduleAll(Supplier<? extends UseCase<V, K>> useCases,
+            List<V> requests, UseCase.BatchCallback<V, K> callback) {
+        final IUseCaseScheduler scheduler = defaultScheduler();
+        scheduler.executeAll(useCases, requests, BATCH_CHUNK, BATCH_PARALLELISM, new UseCase.BatchCallback<V, K>() {
+            @Override
+            public void onItem(V request, K response) {
+                if (mView != null) { callback.onItem(request, response); }
+            }
+
+            @Override
+            public void onItemFailure(V request, Exception ex) {
+                if (mView != null) { callback.onItemFailure(request, ex); }
+            }
+
+            @Override
+            public void onComplete(BatchResult<V, K> result) {
+                if (mView != null) { callback.onComplete(result); }
+            }
+        });
+    }
+
+    /**
+     * Schedules execution of a use case over many requests on the default
+     * channel, delivering the responses as one list in request order. If
+     * any request fails the callback gets a
+     * {@link BatchResult.PartialFailureException} instead, which holds
+     * the responses that did succeed.
+     *
+     * @param <V> UseCase request.
+     * @param <K> UseCase response.
+     *
+     * @param useCases Creates a {@link UseCase} for each worker.
+     * @param requests Requests to run the use case with.
+     * @param callback {@link IRepoCallbacks.IList}.
+     */
+    protected final <V, K> void scheduleAll(Supplier<? extends UseCase<V, K>> useCases,
+            List<V> requests, IRepoCallbacks.IList<K> callback) {
+        scheduleAll(useCases, requests, result -> {
+            if (result.hasFailures()) {
+                callback.onNotAvailable(new BatchResult.PartialFailureException(result));
+            } else {
+                callback.onAvailable(result.getSucceeded());
+            }
+        });
+    }
+
+    /**
+     * Schedules execution of a given use case on the default channel
+     * after a delay. {@link #detach()} cancels it if it's still waiting.
+     *
+     * @param <V> UseCase request.
+     * @param <K> UseCase response.
+     *
+     * @param useCase {@link UseCase} to schedule.
+     * @param request Request of the UseCase.
+     * @param callback {@link UseCase.Callback}.
+     * @param delay Time to wait first.
+     * @param unit Unit of the delay.
+     * @return {@link Future} that cancels it.
+     */
+    protected final <V, K> Future<?> scheduleDelayed(UseCase<V, K> useCase, V request,
+            UseCase.Callback<K> callback, long delay, TimeUnit unit) {
+        final IUseCaseScheduler scheduler = defaultScheduler();
+        final NullCheckWrapper<K> wrapper = new NullCheckWrapper<>(callback, false);
+        return track(wrapper, scheduler.scheduleDelayed(useCase, request, wrapper, delay, unit));
+    }
+
+    /**
+     * Schedules execution of a given use case on the default channel
+     * every period, e.g. to poll a repository. The callback is called for
+     * every execution. {@link #detach()} cancels it.
+     *
+     * @param <V> UseCase request.
+     * @param <K> UseCase response.
+     *
+     * @param useCase {@link UseCase} to schedule.
+     * @param request Request of the UseCase.
+     * @param callback {@link UseCase.Callback}.
+     * @param initialDelay Time until the first execution.
+     * @param period Time between executions.
+     * @param unit Unit of the delay and period.
+     * @return {@link Future} that cancels it.
+     */
+    protected final <V, K> Future<?> scheduleAtFixedRate(UseCase<V, K> useCase, V request,
+            UseCase.Callback<K> callback, long initialDelay, long period, TimeUnit unit) {
+        final IUseCaseScheduler scheduler = defaultScheduler();
+        final NullCheckWrapper<K> wrapper = new NullCheckWrapper<>(callback, true);
+        return track(wrapper, scheduler.scheduleAtFixedRate(useCase, request, wrapper, initialDelay, period, unit));
+    }
+
+    /** Tracks a timer until its use case completes, or forever if periodic. */
+    private Future<?> track(final NullCheckWrapper<?> wrapper, final Future<?> timer) {
+        wrapper.future = timer;
+        mInFlight.add(wrapper);
+        if (wrapper.done || timer.isDone()) {
+            // Fired, or even completed, before we got here.
+            mInFlight.remove(wrapper);
+        }
+        return timer;
+    }
+
+    /**
+     * Submits the use case and tracks it until it completes, so that
+     * {@link #detach()} can cancel it.
+     *
+     * Unlike {@link UseCaseSchedulerImpl#execute}, this isn't free of
+     * allocation: each call creates the callback wrapper, the scheduler's
+     * cancellable task and an {@link #mInFlight} entry. They can't be
+     * pooled, since a cancel arriving late would hit a recycled one.
+     */
+    private <V, K> void submit(final IUseCaseScheduler scheduler, final UseCase<V, K> useCase,
+            final V request, final UseCase.Callback<K> callback) {
+        final NullCheckWrapper<K> wrapper = new NullCheckWrapper<>(callback, false);
+        // Trace a sampled share of requests that aren't part of one yet.
+        final TraceContext root = TraceContext.current() == null ? TraceContext.sample(useCase.getClass()) : null;
+        final TraceContext previous = root == null ? null : TraceContext.set(root);
+        // Track before submitting, the use case may complete right away.
+        mInFlight.add(wrapper);
+        try {
+            wrapper.future = scheduler.submit(useCase, request, wrapper);
+        } catch (RuntimeException ex) {
+            mInFlight.remove(wrapper);
+            throw ex;
+        } finally {
+            if (root != null) { TraceContext.set(previous); }
+        }
+        if (wrapper.future == null) {
+            // Scheduler can't cancel, nothing worth tracking.
+            mInFlight.remove(wrapper);
+        }
+    }
+
+    /**
+     * Gets the scheduler of this presenter's default channel.
+     * @throws IllegalStateException if the presenter has been released.
+     */
+    private IUseCaseScheduler defaultScheduler() {
+        final IChannel channel = mDefaultChannel;
         if (channel == null) {
-            channel = new ChannelImpl(
-                    channelId, new UseCaseSchedulerImpl());
-            mChannelManager.add(channel);
+            throw new IllegalStateException("Presenter has been released!");
         }
-        final IUseCaseScheduler scheduler = channel.getScheduler();
-        scheduler.execute(useCase, request, new NullCheckWrapper<>(callback));
+        return channel.getScheduler();
     }
 
     /**
-     * Create a default channel for use case execution if
-     * it doesn't already exist.
+     * Add the shared default channel to the channel manager if it
+     * doesn't already have a default channel. The shared channel is
+     * acquired once per presenter, not once per manager.
      */
     private void setupDefaultChannel() {
-        if (mChannelManager.get(DEFAULT_CHANNEL) == null) {
-            // Use the default framework implementations.
-            mChannelManager.add(new ChannelImpl(
-                    DEFAULT_CHANNEL, new UseCaseSchedulerImpl()));
+        if (mDefaultChannel == null) {
+            mDefaultChannel = SharedChannelRegistry.acquire(DEFAULT_CHANNEL);
+        }
+        synchronized (DEFAULT_HOLDERS) {
+            DEFAULT_HOLDERS.merge(mChannelManager, 1, Integer::sum);
+            if (mChannelManager.get(DEFAULT_CHANNEL) == null) {
+                mChannelManager.add(mDefaultChannel);
+            }
+        }
+    }
+
+    /**
+     * Counts this presenter out of its manager's holders, and removes the
+     * default channel from the manager if it was the last.
+     */
+    private void unholdDefaultChannel() {
+        synchronized (DEFAULT_HOLDERS) {
+            final Integer left = DEFAULT_HOLDERS.computeIfPresent(mChannelManager, (m, n) -> n == 1 ? null : n - 1);
+            if (left == null && mChannelManager.get(DEFAULT_CHANNEL) == mDefaultChannel) {
+                mChannelManager.remove(mDefaultChannel);
+            }
         }
     }
 
@@ -179,21 +451,37 @@ public abstract class AbstractSchedulerPresenter<T extends IView> implements IPr
      *
      * Note: Safe nested inner-class... no memory leaks are caused by this.
      */
-    private final class NullCheckWrapper<V> implements UseCase.Callback<V> {
+    private final class NullCheckWrapper<V> implements UseCase.ProgressCallback<V> {
         private final UseCase.Callback<V> callback;
+        /** True if called back once per period, so never done. */
+        private final boolean periodic;
+        /** Handle to cancel the use case, set once it's submitted. */
+        volatile Future<?> future;
+        /** True once called back, unless periodic. */
+        volatile boolean done;
 
-        NullCheckWrapper(final UseCase.Callback<V> callback) {
+        NullCheckWrapper(final UseCase.Callback<V> callback, final boolean periodic) {
             this.callback = callback;
+            this.periodic = periodic;
         }
 
         @Override
         public void onSuccess(V response) {
+            if (!periodic) { done = true; mInFlight.remove(this); }
             if (mView != null) { callback.onSuccess(response); }
         }
 
         @Override
         public void onFailure(Exception ex) {
+            if (!periodic) { done = true; mInFlight.remove(this); }
             if (mView != null) { callback.onFailure(ex); }
         }
+
+        @Override
+        public void onProgress(V partial) {
+            if (mView != null && callback instanceof UseCase.ProgressCallback) {
+                ((UseCase.ProgressCallback<V>) callback).onProgress(partial);
+            }
+        }
     }
 }
\ No newline at end of file